@@ -9,15 +9,37 @@
  * 3. SpacecraftPanel     - Center: Displays the spacecraft in flight.
  * 4. TelemetryPanel      - Right-center: Shows real-time telemetry data.
  * 5. EngineSlidersPanel  - Far right: Allows adjusting engine thrust via sliders.
+ *
+ * Optional system properties:
+ *   -Dterrain.dir=<path>     Directory with DEM tiles (tile_<tx>_<ty>.dem); flat ground if unset.
+ *   -Dterrain.samples=<n>    Samples along each side of a tile (default 1024).
+ *   -Dterrain.spacing=<m>    Distance between samples in meters (default 10).
+ *   -Dterrain.cacheTiles=<n> Maximum number of tiles kept mapped (default 64).
+ *   -Dtelemetry.port=<port>  Stream binary telemetry on this loopback port; disabled if unset.
+ *   -Dtelemetry.transport=<udp|tcp> Telemetry transport (default udp).
+ *   -Dcontroller.shm=<path>  Use an external controller through this shared-memory channel file
+ *                            (free-running; lockstep runs headless with sim.LockstepRunner).
+ *   -Dfleet.size=<n>         Fly n more landers, each with its own PID controller (default 0).
+ *   -Dfleet.seed=<seed>      Seed for the initial states of the fleet (default 1).
  */
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import panels.EngineSlidersPanel;
 import panels.SpacecraftPanel;
 import panels.EngineVisualPanel;
 import panels.TelemetryPanel;
 import panels.LandingPanel;
+import panels.RenderLoop;
+import constants.SpacecraftConstants;
+import controllers.SharedMemoryChannel;
+import controllers.SharedMemoryController;
+import fleet.Fleet;
+import models.Spacecraft;
+import telemetry.TelemetryPublisher;
+import terrain.TerrainMap;
 
 public class Main extends JFrame {
     public Main() {
@@ -29,9 +51,34 @@ public class Main extends JFrame {
 
         EngineSlidersPanel slidersPanel = new EngineSlidersPanel();
         SpacecraftPanel spacecraftPanel = new SpacecraftPanel(slidersPanel);
+        TerrainMap terrain = loadTerrain();
+        spacecraftPanel.getSpacecraft().setTerrain(terrain);
+        spacecraftPanel.setTelemetryPublisher(openTelemetry());
         EngineVisualPanel visualPanel = new EngineVisualPanel(slidersPanel);
         TelemetryPanel telemetryPanel = new TelemetryPanel(spacecraftPanel, slidersPanel);
         LandingPanel landingPanel = new LandingPanel(spacecraftPanel);
+        SharedMemoryController external = openExternalController(spacecraftPanel.getSpacecraft());
+        if (external != null) {
+            telemetryPanel.setExternalController(external);
+        }
+        Fleet fleet = Fleet.create(spacecraftPanel.getSpacecraft(), Integer.getInteger("fleet.size", 0),
+                Long.getLong("fleet.seed", 1), terrain);
+        landingPanel.setFleet(fleet);
+        telemetryPanel.setFleet(fleet);
+
+        // A single loop steps the simulation and re-renders the panels whose state changed.
+        RenderLoop renderLoop = new RenderLoop((int) (SpacecraftConstants.DT * 1000));
+        renderLoop.setSimulationStep(() -> {
+            spacecraftPanel.step();
+            fleet.step();
+        });
+        renderLoop.add(spacecraftPanel);
+        renderLoop.add(visualPanel);
+        renderLoop.add(landingPanel);
+        renderLoop.add(telemetryPanel);
+        renderLoop.add(slidersPanel);
+        telemetryPanel.setRenderLoop(renderLoop);
+        renderLoop.start();
 
         // Order: LandingPanel, EngineVisualPanel, SpacecraftPanel, TelemetryPanel, EngineSlidersPanel
         add(landingPanel);
@@ -41,6 +88,57 @@ public class Main extends JFrame {
         add(slidersPanel);
     }
 
+    /**
+     * Opens the DEM given by the terrain.* system properties, or returns flat terrain.
+     */
+    private static TerrainMap loadTerrain() {
+        String dir = System.getProperty("terrain.dir");
+        if (dir == null) {
+            return TerrainMap.flat();
+        }
+        return TerrainMap.open(Paths.get(dir),
+                Integer.getInteger("terrain.samples", 1024),
+                Double.parseDouble(System.getProperty("terrain.spacing", "10")),
+                Integer.getInteger("terrain.cacheTiles", 64));
+    }
+
+    /**
+     * Opens the telemetry stream given by the telemetry.* system properties, or returns null.
+     */
+    private static TelemetryPublisher openTelemetry() {
+        Integer port = Integer.getInteger("telemetry.port");
+        if (port == null) {
+            return null;
+        }
+        TelemetryPublisher.Transport transport = TelemetryPublisher.Transport.valueOf(
+                System.getProperty("telemetry.transport", "udp").toUpperCase());
+        try {
+            return new TelemetryPublisher(transport, port);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Cannot open telemetry port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the shared-memory command channel given by the controller.* system properties, or returns null.
+     * The controller is free-running: the simulation steps on the Swing thread and must never wait for
+     * another process there.
+     */
+    private static SharedMemoryController openExternalController(Spacecraft spacecraft) {
+        String path = System.getProperty("controller.shm");
+        if (path == null) {
+            return null;
+        }
+        try {
+            SharedMemoryChannel channel = SharedMemoryChannel.create(Paths.get(path), 1024);
+            return new SharedMemoryController(channel, spacecraft, false, 0);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Cannot create command channel " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new Main().setVisible(true));
     }
@@ -0,0 +1,41 @@
+package archive;
+
+/**
+ * Channel.java
+ *
+ * The columns of a trajectory archive: one per recorded quantity, then one per engine thrust
+ * (in SpacecraftConstants.ENGINES order).
+ *
+ * Each channel has a default precision: the absolute resolution it is stored with. Values are
+ * rounded to a multiple of it and stored as delta-of-delta zigzag varints. A precision of 0
+ * (see TrajectoryArchiveWriter) stores the channel losslessly with XOR float compression instead,
+ * which suits channels that are mostly constant or exactly repeated.
+ */
+public enum Channel {
+    T(1e-6),          // flight time (s)
+    X(1e-3),          // horizontal position (m)
+    Y(1e-3),          // vertical position (m)
+    VX(1e-4),         // horizontal speed (m/s)
+    VY(1e-4),         // vertical speed (m/s, positive downward)
+    ANGLE(1e-5),      // attitude (deg)
+    FUEL(1e-5),       // remaining fuel (liters)
+    ALTITUDE(1e-3),   // altitude above the terrain (m)
+    MHT(1e-4), FR1(1e-4), FR2(1e-4), FL1(1e-4), FL2(1e-4), BL1(1e-4), BL2(1e-4), BR1(1e-4), BR2(1e-4);
+
+    public static final int COUNT = values().length;
+
+    public final double defaultPrecision;
+
+    Channel(double defaultPrecision) {
+        this.defaultPrecision = defaultPrecision;
+    }
+
+    /**
+     * Returns the thrust channel of an engine.
+     *
+     * @param engine Engine index (SpacecraftConstants.ENGINES order).
+     */
+    public static Channel thrust(int engine) {
+        return values()[MHT.ordinal() + engine];
+    }
+}
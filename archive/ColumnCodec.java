@@ -0,0 +1,249 @@
+package archive;
+
+import java.util.Arrays;
+
+/**
+ * ColumnCodec.java
+ *
+ * Encodes and decodes one column of one block.
+ *
+ * Quantized columns (precision > 0) are rounded to multiples of the precision and stored as the
+ * first value, the first delta and then the delta-of-deltas, each as a zigzag varint. Smooth
+ * motion gives delta-of-deltas of zero, which are collapsed into runs: a token with its low bit
+ * set is a run length of zeros, otherwise it is a zigzag value shifted left by one.
+ *
+ * Lossless columns (precision 0) use XOR float compression: each value is XORed with the previous
+ * one; a repeat costs one bit, otherwise only the meaningful bits of the XOR are stored.
+ *
+ * While encoding, the codec also computes the min/max statistics of the stored (decoded) values.
+ * An instance holds reusable buffers and is not thread-safe.
+ */
+final class ColumnCodec {
+    // Output buffer (encoding).
+    private byte[] out = new byte[8192];
+    private long outBits;
+    // Input cursor (decoding).
+    private byte[] in;
+    private long inBits;
+
+    private double min, max;
+
+    /** Starts a new encoded column. */
+    void reset() {
+        Arrays.fill(out, 0, byteLength(), (byte) 0);
+        outBits = 0;
+    }
+
+    int byteLength() { return (int) ((outBits + 7) >>> 3); }
+    byte[] bytes() { return out; }
+    double min() { return min; }
+    double max() { return max; }
+
+    /**
+     * Encodes values[from .. from+n) into the buffer (after reset()).
+     *
+     * @param precision Quantization step, or 0 for lossless.
+     */
+    void encode(double[] values, int from, int n, double precision) {
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        if (precision > 0) {
+            encodeQuantized(values, from, n, precision);
+        } else {
+            encodeXor(values, from, n);
+        }
+    }
+
+    private void encodeQuantized(double[] values, int from, int n, double precision) {
+        long prev = 0, prevDelta = 0;
+        long zeros = 0;
+        for (int i = 0; i < n; i++) {
+            long q = Math.round(values[from + i] / precision);
+            double stored = q * precision;
+            if (stored < min) min = stored;
+            if (stored > max) max = stored;
+            if (i == 0) {
+                writeVarint(zigzag(q));
+            } else if (i == 1) {
+                prevDelta = q - prev;
+                writeVarint(zigzag(prevDelta));
+            } else {
+                long delta = q - prev;
+                long dod = delta - prevDelta;
+                prevDelta = delta;
+                if (dod == 0) {
+                    zeros++;
+                } else {
+                    if (zeros > 0) {
+                        writeVarint((zeros << 1) | 1);
+                        zeros = 0;
+                    }
+                    writeVarint(zigzag(dod) << 1);
+                }
+            }
+            prev = q;
+        }
+        if (zeros > 0) {
+            writeVarint((zeros << 1) | 1);
+        }
+    }
+
+    private void encodeXor(double[] values, int from, int n) {
+        long prevBits = 0;
+        int prevLeading = -1, prevTrailing = 0;
+        for (int i = 0; i < n; i++) {
+            double v = values[from + i];
+            if (v < min) min = v;
+            if (v > max) max = v;
+            long bits = Double.doubleToRawLongBits(v);
+            if (i == 0) {
+                writeBits(bits, 64);
+            } else {
+                long xor = bits ^ prevBits;
+                if (xor == 0) {
+                    writeBits(0, 1);
+                } else {
+                    int leading = Long.numberOfLeadingZeros(xor);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                        // Fits in the previous window.
+                        writeBits(0b10, 2);
+                        writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int significant = 64 - leading - trailing;
+                        writeBits(0b11, 2);
+                        writeBits(leading, 6);
+                        writeBits(significant - 1, 6);
+                        writeBits(xor >>> trailing, significant);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+            prevBits = bits;
+        }
+    }
+
+    /**
+     * Decodes n values from src[offset ..] into dest[0 .. n).
+     *
+     * @param precision The precision the column was encoded with.
+     */
+    void decode(byte[] src, int offset, int n, double precision, double[] dest) {
+        in = src;
+        inBits = (long) offset << 3;
+        if (precision > 0) {
+            decodeQuantized(n, precision, dest);
+        } else {
+            decodeXor(n, dest);
+        }
+        in = null;
+    }
+
+    private void decodeQuantized(int n, double precision, double[] dest) {
+        long q = 0, delta = 0;
+        int i = 0;
+        if (n > 0) {
+            q = unzigzag(readVarint());
+            dest[i++] = q * precision;
+        }
+        if (n > 1) {
+            delta = unzigzag(readVarint());
+            q += delta;
+            dest[i++] = q * precision;
+        }
+        while (i < n) {
+            long token = readVarint();
+            if ((token & 1) != 0) {
+                for (long run = token >>> 1; run > 0; run--) {
+                    q += delta;
+                    dest[i++] = q * precision;
+                }
+            } else {
+                delta += unzigzag(token >>> 1);
+                q += delta;
+                dest[i++] = q * precision;
+            }
+        }
+    }
+
+    private void decodeXor(int n, double[] dest) {
+        long bits = 0;
+        int leading = 0, trailing = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                bits = readBits(64);
+            } else if (readBits(1) != 0) {
+                if (readBits(1) != 0) {
+                    leading = (int) readBits(6);
+                    trailing = 64 - leading - ((int) readBits(6) + 1);
+                }
+                bits ^= readBits(64 - leading - trailing) << trailing;
+            }
+            dest[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    // --- Bit and varint primitives (most significant bit first) ---
+
+    private void writeBits(long value, int n) {
+        int needed = (int) ((outBits + n + 7) >>> 3);
+        if (needed > out.length) {
+            out = Arrays.copyOf(out, Math.max(needed, out.length * 2));
+        }
+        while (n > 0) {
+            int index = (int) (outBits >>> 3);
+            int free = 8 - (int) (outBits & 7);
+            int take = Math.min(free, n);
+            int chunk = (int) ((value >>> (n - take)) & ((1L << take) - 1));
+            out[index] |= (byte) (chunk << (free - take));
+            outBits += take;
+            n -= take;
+        }
+    }
+
+    private long readBits(int n) {
+        long value = 0;
+        while (n > 0) {
+            int index = (int) (inBits >>> 3);
+            int avail = 8 - (int) (inBits & 7);
+            int take = Math.min(avail, n);
+            int chunk = ((in[index] & 0xFF) >>> (avail - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            inBits += take;
+            n -= take;
+        }
+        return value;
+    }
+
+    // Varints are only written at byte boundaries (quantized columns contain nothing else).
+    private void writeVarint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            writeBits((v & 0x7F) | 0x80, 8);
+            v >>>= 7;
+        }
+        writeBits(v, 8);
+    }
+
+    private long readVarint() {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            int b = in[(int) (inBits >>> 3)] & 0xFF;
+            inBits += 8;
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,329 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TrajectoryArchiveReader.java
+ *
+ * Reads and queries an archive written by TrajectoryArchiveWriter.
+ *
+ * Queries are conjunctions of per-tick conditions ("VY above 20 and ALTITUDE below 500") and
+ * return the runs that satisfy all conditions at one tick. Blocks whose min/max statistics rule
+ * a condition out are skipped without reading; of the remaining blocks only the channels named
+ * in the query are read and decoded.
+ *
+ * Command line:
+ *   java archive.TrajectoryArchiveReader &lt;archive&gt; [CHANNEL&gt;value | CHANNEL&lt;value] ...
+ */
+public class TrajectoryArchiveReader implements AutoCloseable {
+
+    /** A condition on one channel: low &lt; value &lt; high. */
+    public static final class Condition {
+        public final Channel channel;
+        public final double low, high;
+
+        public Condition(Channel channel, double low, double high) {
+            this.channel = channel;
+            this.low = low;
+            this.high = high;
+        }
+
+        public static Condition above(Channel channel, double value) {
+            return new Condition(channel, value, Double.POSITIVE_INFINITY);
+        }
+
+        public static Condition below(Channel channel, double value) {
+            return new Condition(channel, Double.NEGATIVE_INFINITY, value);
+        }
+
+        boolean matches(double v) {
+            return v > low && v < high;
+        }
+
+        // False if no value in [min, max] can match.
+        boolean mayMatch(double min, double max) {
+            return max > low && min < high;
+        }
+
+        @Override
+        public String toString() {
+            return low + " < " + channel + " < " + high;
+        }
+    }
+
+    private final FileChannel channel;
+    private final double[] precision;
+    private final int blockTicks;
+    private final int headerSize;
+    private final int entrySize;
+    private final ByteBuffer index;   // per block: offset + block header
+    private final int blockCount;
+    private final ColumnCodec codec = new ColumnCodec();
+    private byte[] columnBytes = new byte[1 << 16];
+    private long blocksRead, blocksSkipped;
+
+    /**
+     * Opens an archive.
+     *
+     * @param file The archive file.
+     * @throws IOException If the file cannot be read or is not an archive.
+     */
+    public TrajectoryArchiveReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = read(0, 16);
+        if (header.getInt() != TrajectoryArchiveWriter.MAGIC
+                || header.getInt() != TrajectoryArchiveWriter.FORMAT_VERSION) {
+            throw new IOException("Not a trajectory archive: " + file);
+        }
+        blockTicks = header.getInt();
+        int channels = header.getInt();
+        if (channels != Channel.COUNT) {
+            throw new IOException("Unsupported channel count " + channels);
+        }
+        precision = new double[channels];
+        ByteBuffer p = read(16, 8 * channels);
+        for (int c = 0; c < channels; c++) {
+            precision[c] = p.getDouble();
+        }
+        long dataStart = 16 + 8L * channels;
+        headerSize = TrajectoryArchiveWriter.blockHeaderSize(channels);
+        entrySize = 8 + headerSize;
+
+        ByteBuffer idx = readIndex();
+        if (idx == null) {
+            idx = scanBlocks(dataStart);
+        }
+        index = idx;
+        blockCount = index.limit() / entrySize;
+    }
+
+    // Maps the index written on close, or returns null if the archive has no valid trailer.
+    private ByteBuffer readIndex() throws IOException {
+        long size = channel.size();
+        if (size < TrajectoryArchiveWriter.TRAILER_SIZE) {
+            return null;
+        }
+        ByteBuffer trailer = read(size - TrajectoryArchiveWriter.TRAILER_SIZE, TrajectoryArchiveWriter.TRAILER_SIZE);
+        long indexOffset = trailer.getLong();
+        long blocks = trailer.getLong();
+        if (trailer.getInt() != TrajectoryArchiveWriter.TRAILER_MAGIC
+                || indexOffset + blocks * entrySize != size - TrajectoryArchiveWriter.TRAILER_SIZE) {
+            return null;
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, blocks * entrySize);
+    }
+
+    // Rebuilds the index from the block headers (archive not closed by its writer).
+    private ByteBuffer scanBlocks(long pos) throws IOException {
+        List<ByteBuffer> entries = new ArrayList<>();
+        long size = channel.size();
+        while (pos + headerSize <= size) {
+            ByteBuffer header = read(pos, headerSize);
+            if (header.getInt(0) != TrajectoryArchiveWriter.BLOCK_MAGIC) {
+                break;
+            }
+            long length = headerSize;
+            for (int c = 0; c < Channel.COUNT; c++) {
+                length += header.getInt(20 + c * 20 + 16);
+            }
+            if (pos + length > size) {
+                break;   // Truncated last block.
+            }
+            ByteBuffer entry = ByteBuffer.allocate(entrySize);
+            entry.putLong(pos).put(header).flip();
+            entries.add(entry);
+            pos += length;
+        }
+        ByteBuffer idx = ByteBuffer.allocate(entries.size() * entrySize);
+        for (ByteBuffer e : entries) {
+            idx.put(e);
+        }
+        idx.flip();
+        return idx;
+    }
+
+    // --- Index entry accessors ---
+
+    private long blockOffset(int b) { return index.getLong(b * entrySize); }
+    private long runId(int b) { return index.getLong(b * entrySize + 12); }
+    private int ticks(int b) { return index.getInt(b * entrySize + 24); }
+    private int firstTick(int b) { return index.getInt(b * entrySize + 20); }
+    private double blockMin(int b, int c) { return index.getDouble(b * entrySize + 28 + c * 20); }
+    private double blockMax(int b, int c) { return index.getDouble(b * entrySize + 28 + c * 20 + 8); }
+    private int columnLength(int b, int c) { return index.getInt(b * entrySize + 28 + c * 20 + 16); }
+
+    /** Number of blocks in the archive. */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /** Returns the ids of all runs, in archive order. */
+    public List<Long> getRunIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int b = 0; b < blockCount; b++) {
+            long id = runId(b);
+            if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the runs that satisfy all conditions at the same tick.
+     *
+     * @param conditions The conditions (at least one).
+     * @return Matching run ids, in archive order.
+     * @throws IOException If reading fails.
+     */
+    public List<Long> findRuns(Condition... conditions) throws IOException {
+        List<Long> matches = new ArrayList<>();
+        double[][] values = new double[conditions.length][blockTicks];
+        long matchedRun = 0;
+        boolean anyMatched = false;
+        for (int b = 0; b < blockCount; b++) {
+            long id = runId(b);
+            if (anyMatched && id == matchedRun) {
+                continue;   // Run already matched.
+            }
+            if (!mayMatch(b, conditions)) {
+                blocksSkipped++;
+                continue;
+            }
+            blocksRead++;
+            int ticks = ticks(b);
+            for (int k = 0; k < conditions.length; k++) {
+                readColumn(b, conditions[k].channel.ordinal(), values[k]);
+            }
+            for (int t = 0; t < ticks; t++) {
+                boolean all = true;
+                for (int k = 0; k < conditions.length && all; k++) {
+                    all = conditions[k].matches(values[k][t]);
+                }
+                if (all) {
+                    matches.add(id);
+                    matchedRun = id;
+                    anyMatched = true;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private boolean mayMatch(int b, Condition[] conditions) {
+        for (Condition cond : conditions) {
+            int c = cond.channel.ordinal();
+            if (!cond.mayMatch(blockMin(b, c), blockMax(b, c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads all channels of one run.
+     *
+     * @param runId The run.
+     * @return The columns, indexed [channel][tick], or null if the run is not in the archive.
+     * @throws IOException If reading fails.
+     */
+    public double[][] readRun(long runId) throws IOException {
+        int ticks = 0;
+        for (int b = 0; b < blockCount; b++) {
+            if (runId(b) == runId) {
+                ticks = Math.max(ticks, firstTick(b) + ticks(b));
+            }
+        }
+        if (ticks == 0) {
+            return null;
+        }
+        double[][] run = new double[Channel.COUNT][ticks];
+        double[] block = new double[blockTicks];
+        for (int b = 0; b < blockCount; b++) {
+            if (runId(b) != runId) {
+                continue;
+            }
+            for (int c = 0; c < Channel.COUNT; c++) {
+                readColumn(b, c, block);
+                System.arraycopy(block, 0, run[c], firstTick(b), ticks(b));
+            }
+        }
+        return run;
+    }
+
+    // Reads and decodes one column of one block.
+    private void readColumn(int b, int c, double[] dest) throws IOException {
+        long pos = blockOffset(b) + headerSize;
+        for (int k = 0; k < c; k++) {
+            pos += columnLength(b, k);
+        }
+        int length = columnLength(b, c);
+        if (columnBytes.length < length) {
+            columnBytes = new byte[Math.max(length, columnBytes.length * 2)];
+        }
+        ByteBuffer buf = ByteBuffer.wrap(columnBytes, 0, length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        codec.decode(columnBytes, 0, ticks(b), precision[c], dest);
+    }
+
+    private ByteBuffer read(long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    public long getBlocksRead() { return blocksRead; }
+    public long getBlocksSkipped() { return blocksSkipped; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java archive.TrajectoryArchiveReader <archive> [CHANNEL>value | CHANNEL<value] ...");
+            System.exit(2);
+        }
+        Condition[] conditions = new Condition[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            String a = args[i];
+            int op = Math.max(a.indexOf('>'), a.indexOf('<'));
+            if (op < 0) {
+                System.err.println("Bad condition: " + a);
+                System.exit(2);
+            }
+            Channel ch = Channel.valueOf(a.substring(0, op).trim().toUpperCase());
+            double v = Double.parseDouble(a.substring(op + 1).trim());
+            conditions[i - 1] = a.charAt(op) == '>' ? Condition.above(ch, v) : Condition.below(ch, v);
+        }
+        try (TrajectoryArchiveReader reader = new TrajectoryArchiveReader(Paths.get(args[0]))) {
+            System.out.printf("%d runs, %d blocks%n", reader.getRunIds().size(), reader.getBlockCount());
+            if (conditions.length > 0) {
+                long start = System.nanoTime();
+                List<Long> runs = reader.findRuns(conditions);
+                System.out.printf("%d matching runs in %.1f ms (%d blocks read, %d skipped)%n",
+                        runs.size(), (System.nanoTime() - start) / 1e6,
+                        reader.getBlocksRead(), reader.getBlocksSkipped());
+                System.out.println(runs);
+            }
+        }
+    }
+}
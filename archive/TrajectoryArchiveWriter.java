@@ -0,0 +1,189 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TrajectoryArchiveWriter.java
+ *
+ * Writes recorded flights into a compressed columnar archive, one run at a time as runs complete.
+ *
+ * File layout (big-endian):
+ *   header   magic "LMTA", format version, ticks per block, channel count, precision per channel
+ *   blocks   per block: magic, run id, first tick, tick count, per channel (min, max, byte length),
+ *            then the encoded columns one after another (see ColumnCodec)
+ *   index    per block: file offset followed by a copy of the block header
+ *   trailer  index offset, block count, magic "LMTI"
+ *
+ * Each run is split into blocks of a fixed number of ticks; a run's blocks are contiguous. The
+ * per-block min/max statistics let queries skip blocks without reading them. The index is
+ * collected in a temporary file next to the archive and appended on close(); an archive whose
+ * writer did not close (e.g. a crash) can still be read by scanning the block headers.
+ *
+ * append() may be called from several threads: the encoding runs in the caller's thread and only
+ * the file write is serialized.
+ */
+public class TrajectoryArchiveWriter implements AutoCloseable {
+    static final int MAGIC = 0x4C4D5441;          // "LMTA"
+    static final int BLOCK_MAGIC = 0x424C4B31;    // "BLK1"
+    static final int TRAILER_MAGIC = 0x4C4D5449;  // "LMTI"
+    static final int FORMAT_VERSION = 1;
+    static final int TRAILER_SIZE = 8 + 8 + 4;
+    public static final int DEFAULT_BLOCK_TICKS = 4096;
+
+    // Block header size: magic, run id, first tick, ticks, then (min, max, length) per channel.
+    static int blockHeaderSize(int channels) {
+        return 4 + 8 + 4 + 4 + channels * (8 + 8 + 4);
+    }
+
+    private final Path file;
+    private final Path indexFile;
+    private final FileChannel channel;
+    private final FileChannel index;
+    private final double[] precision;
+    private final int blockTicks;
+    private final ThreadLocal<ColumnCodec> codecs = ThreadLocal.withInitial(ColumnCodec::new);
+    private long blockCount;
+    private long rawBytes;
+
+    /**
+     * Creates an archive with the default block size and channel precisions.
+     *
+     * @param file The archive file (replaced if it exists).
+     * @throws IOException If the file cannot be created.
+     */
+    public TrajectoryArchiveWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_TICKS, defaultPrecisions());
+    }
+
+    /**
+     * @param file       The archive file (replaced if it exists).
+     * @param blockTicks Ticks per block.
+     * @param precision  Precision per channel (Channel order); 0 stores a channel losslessly.
+     * @throws IOException If the file cannot be created.
+     */
+    public TrajectoryArchiveWriter(Path file, int blockTicks, double[] precision) throws IOException {
+        if (precision.length != Channel.COUNT) {
+            throw new IllegalArgumentException("Expected " + Channel.COUNT + " precisions");
+        }
+        this.file = file;
+        this.blockTicks = blockTicks;
+        this.precision = precision.clone();
+        this.indexFile = file.resolveSibling(file.getFileName() + ".index.tmp");
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(16 + 8 * Channel.COUNT);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(blockTicks).putInt(Channel.COUNT);
+        for (double p : this.precision) {
+            header.putDouble(p);
+        }
+        header.flip();
+        writeFully(channel, header);
+    }
+
+    /** The default precision of every channel, in Channel order. */
+    public static double[] defaultPrecisions() {
+        double[] p = new double[Channel.COUNT];
+        for (Channel c : Channel.values()) {
+            p[c.ordinal()] = c.defaultPrecision;
+        }
+        return p;
+    }
+
+    /**
+     * Encodes a recorded flight and appends it to the archive.
+     *
+     * @param runId Identifier of the run (returned by queries).
+     * @param run   The recorded flight (not modified; may be cleared afterwards).
+     * @throws IOException If writing fails.
+     */
+    public void append(long runId, TrajectoryRecorder run) throws IOException {
+        ColumnCodec codec = codecs.get();
+        int n = run.size();
+        int headerSize = blockHeaderSize(Channel.COUNT);
+        List<ByteBuffer> blocks = new ArrayList<>();
+        byte[][] columns = new byte[Channel.COUNT][];
+        for (int first = 0; first < n; first += blockTicks) {
+            int ticks = Math.min(blockTicks, n - first);
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(BLOCK_MAGIC).putLong(runId).putInt(first).putInt(ticks);
+            int dataSize = 0;
+            for (int c = 0; c < Channel.COUNT; c++) {
+                codec.reset();
+                codec.encode(run.column(c), first, ticks, precision[c]);
+                columns[c] = Arrays.copyOf(codec.bytes(), codec.byteLength());
+                dataSize += columns[c].length;
+                header.putDouble(codec.min()).putDouble(codec.max()).putInt(columns[c].length);
+            }
+            ByteBuffer block = ByteBuffer.allocate(headerSize + dataSize);
+            block.put(header.array());
+            for (byte[] column : columns) {
+                block.put(column);
+            }
+            block.flip();
+            blocks.add(block);
+        }
+
+        synchronized (this) {
+            for (ByteBuffer block : blocks) {
+                long offset = channel.position();
+                ByteBuffer entry = ByteBuffer.allocate(8 + headerSize);
+                entry.putLong(offset).put(block.array(), 0, headerSize).flip();
+                writeFully(channel, block);
+                writeFully(index, entry);
+                blockCount++;
+            }
+            rawBytes += (long) n * Channel.COUNT * 8;
+        }
+    }
+
+    /** Bytes the appended runs would take as raw doubles. */
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    /** Bytes written to the archive so far (without the index). */
+    public synchronized long getWrittenBytes() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Appends the block index and the trailer and closes the archive.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            long indexOffset = channel.position();
+            long size = index.size();
+            for (long pos = 0; pos < size; ) {
+                pos += index.transferTo(pos, size - pos, channel);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(indexOffset).putLong(blockCount).putInt(TRAILER_MAGIC).flip();
+            writeFully(channel, trailer);
+            channel.force(true);
+        } finally {
+            channel.close();
+            index.close();
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    public Path getFile() { return file; }
+
+    static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package archive;
+
+import java.util.Arrays;
+import java.util.Map;
+import constants.SpacecraftConstants;
+import models.Spacecraft;
+
+/**
+ * TrajectoryRecorder.java
+ *
+ * Collects the channels of one flight, tick by tick, in primitive column arrays.
+ * A recorder can be cleared and reused for the next flight; once its columns have grown to the
+ * flight length, recording allocates nothing.
+ */
+public class TrajectoryRecorder {
+    private double[][] columns = new double[Channel.COUNT][1024];
+    private int size;
+
+    /**
+     * Records the state after one physics step.
+     *
+     * @param sc       The spacecraft.
+     * @param commands The engine commands applied in the step.
+     */
+    public void record(Spacecraft sc, Map<String, Double> commands) {
+        if (size == columns[0].length) {
+            for (int c = 0; c < Channel.COUNT; c++) {
+                columns[c] = Arrays.copyOf(columns[c], size * 2);
+            }
+        }
+        columns[Channel.T.ordinal()][size] = sc.getTime();
+        columns[Channel.X.ordinal()][size] = sc.x;
+        columns[Channel.Y.ordinal()][size] = sc.y;
+        columns[Channel.VX.ordinal()][size] = sc.vx;
+        columns[Channel.VY.ordinal()][size] = sc.vy;
+        columns[Channel.ANGLE.ordinal()][size] = sc.angle;
+        columns[Channel.FUEL.ordinal()][size] = sc.fuel;
+        columns[Channel.ALTITUDE.ordinal()][size] = sc.altitude;
+        for (int e = 0; e < SpacecraftConstants.ENGINES.length; e++) {
+            Double t = commands.get(SpacecraftConstants.ENGINES[e]);
+            columns[Channel.MHT.ordinal() + e][size] = t != null ? t : 0;
+        }
+        size++;
+    }
+
+    /** Number of recorded ticks. */
+    public int size() {
+        return size;
+    }
+
+    /** Value of a channel at a tick. */
+    public double get(Channel channel, int tick) {
+        return columns[channel.ordinal()][tick];
+    }
+
+    /** Forgets the recorded flight (keeps the allocated columns). */
+    public void clear() {
+        size = 0;
+    }
+
+    // Column storage, valid up to size().
+    double[] column(int channel) {
+        return columns[channel];
+    }
+}
@@ -19,8 +19,47 @@ public class SpacecraftConstants {
     public static final double SECOND_BURN = 0.009;   // Fuel burn rate (liters/sec) at maximum secondary engine thrust
     public static final double ALL_BURN = MAIN_BURN + 8 * SECOND_BURN;
 
+    // Engine labels: the main engine followed by the eight secondary engines.
+    // This order is used wherever thrust values are stored by index.
+    public static final String MAIN_ENGINE = "MHT";
+    public static final String[] ENGINES = {
+            "MHT",
+            "FR1", "FR2",
+            "FL1", "FL2",
+            "BL1", "BL2",
+            "BR1", "BR2"
+    };
+
+    // Secondary engine mounting in body coordinates: front engines ("F") at y = -ENGINE_ARM_Y and back
+    // engines ("B") at y = +ENGINE_ARM_Y; right engines ("R") at x = +ENGINE_ARM_X push in +x, left
+    // engines ("L") at x = -ENGINE_ARM_X push in -x.
+    public static final double ENGINE_ARM_X = 15;    // meters
+    public static final double ENGINE_ARM_Y = 20;    // meters
+
+    // Rotational dynamics of the planar model.
+    public static final double MOMENT_OF_INERTIA = 500;      // kg*m^2 (tuned for simulation)
+    public static final double ANGULAR_DAMPING = 0.98;       // Angular velocity factor per step
+    public static final double ANGULAR_REST_SPEED = 0.001;   // deg/s; slower rotation is snapped to 0
+
+    // Engines commanded below this thrust (N) are off and burn no fuel.
+    public static final double MIN_THRUST = 1e-5;
+
     // Initial conditions for the spacecraft.
     public static final double INITIAL_FUEL = 420;       // liters
     public static final double INITIAL_ALTITUDE = 30000;  // meters above the Moon
     public static final double DT = 0.05;                 // Simulation time step (seconds)
+
+    // Touchdown at or below this speed counts as a successful landing (1000 km/h).
+    public static final double SAFE_LANDING_SPEED = 277.78; // m/s
+
+    // Vertical mounting of a secondary engine (body y, meters).
+    public static double engineMountY(String engine) {
+        return engine.startsWith("F") ? -ENGINE_ARM_Y : ENGINE_ARM_Y;
+    }
+
+    // Direction of a secondary engine's force along body x: +1 for right engines, -1 for left
+    // engines (0 for any other label).
+    public static int engineForceDirection(String engine) {
+        return engine.contains("R") ? 1 : engine.contains("L") ? -1 : 0;
+    }
 }
@@ -0,0 +1,211 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import constants.SpacecraftConstants;
+
+/**
+ * CommandBus.java
+ *
+ * Arbitrates engine commands coming from several sources (manual sliders, the PID controller,
+ * scripted sequences, external controllers).
+ *
+ * Each source registers with a priority and posts its desired thrust per engine; NaN means
+ * "no opinion" for that engine. Sources may post from any thread: each source keeps one command
+ * array that every post writes and publish() reads under the source's lock, so a reader never
+ * sees half of an update and posting allocates nothing.
+ *
+ * Once per tick the simulation thread calls publish(). For every engine the value of the
+ * highest-priority source with an opinion wins, unless the engine is under manual override,
+ * in which case the manual source wins; engines nobody commands get 0. The result is published
+ * as an immutable CommandSnapshot that any thread can read with current() without locking.
+ * A tick whose arbitrated commands did not change keeps the previous snapshot and allocates
+ * nothing; a tick that changes them (e.g. every tick while a controller flies) allocates one
+ * snapshot.
+ */
+public class CommandBus {
+    // Standard priorities (higher wins).
+    public static final int MANUAL = 0;
+    public static final int PID = 10;
+    public static final int EXTERNAL = 20;
+    public static final int SCRIPT = 30;
+
+    private static final int ENGINES = SpacecraftConstants.ENGINES.length;
+
+    /** A command source registered with the bus. */
+    public static class Source {
+        private final String name;
+        private final int priority;
+        private final double[] commands = emptyCommands();   // guarded by this
+
+        private Source(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        /** Sets the command of one engine (other engines keep their value). */
+        public synchronized void set(int engine, double thrust) {
+            commands[engine] = thrust;
+        }
+
+        /** Sets the command of one engine by label. */
+        public void set(String engine, double thrust) {
+            set(engineIndex(engine), thrust);
+        }
+
+        /** Replaces all commands (ENGINES values, NaN for "no opinion"). */
+        public synchronized void setAll(double[] thrust) {
+            System.arraycopy(thrust, 0, commands, 0, ENGINES);
+        }
+
+        /** Withdraws all commands of this source. */
+        public synchronized void clear() {
+            Arrays.fill(commands, Double.NaN);
+        }
+
+        /** Returns this source's current command for one engine (NaN if none). */
+        public synchronized double get(int engine) {
+            return commands[engine];
+        }
+
+        // Fills the engines that have no value yet in out (NaN) with this source's commands;
+        // only the engines in mask if onlyMask is set.
+        private synchronized void fill(double[] out, boolean onlyMask, long mask) {
+            for (int e = 0; e < ENGINES; e++) {
+                if (Double.isNaN(out[e]) && (!onlyMask || (mask & (1L << e)) != 0)) {
+                    out[e] = commands[e];
+                }
+            }
+        }
+
+        public String getName() { return name; }
+        public int getPriority() { return priority; }
+    }
+
+    private final List<Source> sources = new ArrayList<>();   // sorted by descending priority
+    private final AtomicReference<CommandSnapshot> current =
+            new AtomicReference<>(new CommandSnapshot(new double[ENGINES], 0));
+    private Source manual;
+    private volatile long overrideMask;
+    private long sequence;
+    private final double[] scratch = new double[ENGINES];   // used by publish() only
+
+    /**
+     * Registers a command source.
+     *
+     * @param name     Source name (e.g. "PID").
+     * @param priority Priority; higher priorities win.
+     * @return The source handle to post commands with.
+     */
+    public synchronized Source register(String name, int priority) {
+        Source s = new Source(name, priority);
+        int i = 0;
+        while (i < sources.size() && sources.get(i).priority >= priority) {
+            i++;
+        }
+        sources.add(i, s);
+        if (priority == MANUAL && manual == null) {
+            manual = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns a registered source by name, or null.
+     */
+    public synchronized Source source(String name) {
+        for (Source s : sources) {
+            if (s.name.equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts one engine under manual override: the manual source wins for it regardless of priority.
+     *
+     * @param engine   Engine index (SpacecraftConstants.ENGINES order).
+     * @param override True to override, false to return the engine to normal arbitration.
+     */
+    public synchronized void setManualOverride(int engine, boolean override) {
+        if (override) {
+            overrideMask |= 1L << engine;
+        } else {
+            overrideMask &= ~(1L << engine);
+        }
+    }
+
+    public boolean isManualOverride(int engine) {
+        return (overrideMask & (1L << engine)) != 0;
+    }
+
+    /**
+     * Copies the manual commands that win by override: the manual command of each overridden
+     * engine, NaN for the other engines and for overridden engines without a manual command.
+     *
+     * @param out Array of ENGINES values to fill.
+     */
+    public synchronized void copyManualOverrides(double[] out) {
+        Arrays.fill(out, 0, ENGINES, Double.NaN);
+        long mask = overrideMask;
+        if (manual != null && mask != 0) {
+            manual.fill(out, true, mask);
+        }
+    }
+
+    /**
+     * Arbitrates the current commands of all sources and publishes the result.
+     * Called once per tick by the simulation thread. If the arbitrated commands did not change,
+     * the previous snapshot (with its sequence number) stays current.
+     *
+     * @return The current snapshot.
+     */
+    public synchronized CommandSnapshot publish() {
+        long mask = overrideMask;
+        Arrays.fill(scratch, Double.NaN);
+        if (manual != null && mask != 0) {
+            manual.fill(scratch, true, mask);
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            sources.get(i).fill(scratch, false, 0);
+        }
+        for (int e = 0; e < ENGINES; e++) {
+            if (Double.isNaN(scratch[e])) {
+                scratch[e] = 0;
+            }
+        }
+        CommandSnapshot previous = current.get();
+        if (previous.equalsThrust(scratch)) {
+            return previous;
+        }
+        CommandSnapshot snapshot = new CommandSnapshot(scratch.clone(), ++sequence);
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    /** Returns the last published snapshot. */
+    public CommandSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * Returns the index of an engine label in SpacecraftConstants.ENGINES.
+     */
+    public static int engineIndex(String engine) {
+        for (int i = 0; i < ENGINES; i++) {
+            if (SpacecraftConstants.ENGINES[i].equals(engine)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    private static double[] emptyCommands() {
+        double[] c = new double[ENGINES];
+        Arrays.fill(c, Double.NaN);
+        return c;
+    }
+}
@@ -0,0 +1,58 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.Map;
+import constants.SpacecraftConstants;
+
+/**
+ * CommandSnapshot.java
+ *
+ * The engine commands applied in one tick, as published by the CommandBus.
+ * Immutable: the thrust array is private and never modified after construction, so a snapshot
+ * can be shared freely between the simulation and display threads.
+ */
+public final class CommandSnapshot {
+    private final double[] thrust;
+    private final long sequence;
+
+    CommandSnapshot(double[] thrust, long sequence) {
+        this.thrust = thrust;
+        this.sequence = sequence;
+    }
+
+    /** Thrust of one engine (SpacecraftConstants.ENGINES order). */
+    public double get(int engine) {
+        return thrust[engine];
+    }
+
+    /** Thrust of one engine by label. */
+    public double get(String engine) {
+        return thrust[CommandBus.engineIndex(engine)];
+    }
+
+    /** Copies the thrust values into an array. */
+    public void copyTo(double[] out) {
+        System.arraycopy(thrust, 0, out, 0, thrust.length);
+    }
+
+    /** Writes the thrust values into an engine command map; entries that already hold the value are kept. */
+    public void copyTo(Map<String, Double> engineThrust) {
+        for (int i = 0; i < thrust.length; i++) {
+            String eng = SpacecraftConstants.ENGINES[i];
+            Double old = engineThrust.get(eng);
+            if (old == null || Double.doubleToLongBits(old) != Double.doubleToLongBits(thrust[i])) {
+                engineThrust.put(eng, thrust[i]);
+            }
+        }
+    }
+
+    // True if this snapshot holds exactly these thrust values.
+    boolean equalsThrust(double[] other) {
+        return Arrays.equals(thrust, other);
+    }
+
+    /** Increases whenever the applied commands change. */
+    public long getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,117 @@
+package controllers;
+
+import java.util.Map;
+import models.Spacecraft;
+import sensors.ExtendedKalmanFilter;
+import sensors.SensorSuite;
+
+/**
+ * EstimatingController.java
+ *
+ * Wraps another flight controller so that it flies on estimated rather than true state.
+ * Every tick the simulated sensors are sampled from the true spacecraft, the Extended Kalman
+ * Filter fuses them, and the wrapped controller receives the filter's estimate instead of the
+ * exact values it would otherwise get.
+ */
+public class EstimatingController implements FlightController {
+    // Version of the estimation in this class, SensorSuite and ExtendedKalmanFilter. Increase it
+    // whenever a change alters the estimates, so that cached PID_EKF results are no longer used.
+    public static final int ESTIMATOR_VERSION = 1;
+
+    // Process noise of the default filter. The acceleration noise is well above the accelerometer
+    // noise so that it also covers the accelerometer bias, which the filter does not estimate.
+    private static final double DEFAULT_ACCEL_SIGMA = 0.2, DEFAULT_ANGLE_SIGMA = 0.1, DEFAULT_RATE_SIGMA = 0.5;
+    // Initial variance of each filter state (ExtendedKalmanFilter order): the initial conditions
+    // are known well.
+    private static final double[] INITIAL_VARIANCE = {100, 1, 100, 1, 1, 0.1};
+
+    private final FlightController inner;
+    private final Spacecraft truth;
+    private final SensorSuite sensors;
+    private final ExtendedKalmanFilter ekf;
+    private final double[] initial = new double[ExtendedKalmanFilter.N];
+    private final double[] variance = new double[ExtendedKalmanFilter.N];
+
+    /**
+     * @param inner   The controller to feed with estimated state.
+     * @param truth   The simulated spacecraft the sensors measure.
+     * @param sensors The sensor suite.
+     * @param ekf     The state estimator.
+     */
+    public EstimatingController(FlightController inner, Spacecraft truth, SensorSuite sensors,
+                                ExtendedKalmanFilter ekf) {
+        this.inner = inner;
+        this.truth = truth;
+        this.sensors = sensors;
+        this.ekf = ekf;
+        initializeFilter();
+    }
+
+    /**
+     * Creates an estimating controller with the default sensors and matching filter tuning.
+     *
+     * @param inner The controller to feed with estimated state.
+     * @param truth The simulated spacecraft.
+     * @param seed  Seed of the sensor noise.
+     * @return The wrapped controller.
+     */
+    public static EstimatingController withDefaultSensors(FlightController inner, Spacecraft truth, long seed) {
+        SensorSuite sensors = SensorSuite.defaults(seed);
+        ExtendedKalmanFilter ekf = new ExtendedKalmanFilter(DEFAULT_ACCEL_SIGMA, DEFAULT_ANGLE_SIGMA, DEFAULT_RATE_SIGMA);
+        return new EstimatingController(inner, truth, sensors, ekf);
+    }
+
+    /**
+     * Returns everything that configures withDefaultSensors() apart from the seed: the sensor error
+     * models, the filter's process noise and the initial variances. Used to key cached results.
+     *
+     * @return The configuration values.
+     */
+    public static double[] defaultConfiguration() {
+        double[] sensors = SensorSuite.defaults(0).getConfiguration();
+        double[] tuning = new ExtendedKalmanFilter(DEFAULT_ACCEL_SIGMA, DEFAULT_ANGLE_SIGMA, DEFAULT_RATE_SIGMA).getTuning();
+        double[] c = new double[sensors.length + tuning.length + INITIAL_VARIANCE.length];
+        System.arraycopy(sensors, 0, c, 0, sensors.length);
+        System.arraycopy(tuning, 0, c, sensors.length, tuning.length);
+        System.arraycopy(INITIAL_VARIANCE, 0, c, sensors.length + tuning.length, INITIAL_VARIANCE.length);
+        return c;
+    }
+
+    // The initial conditions are known well; start from them with a small uncertainty.
+    private void initializeFilter() {
+        initial[ExtendedKalmanFilter.ALT] = truth.altitude;
+        initial[ExtendedKalmanFilter.VY] = truth.vy;
+        initial[ExtendedKalmanFilter.X] = truth.x;
+        initial[ExtendedKalmanFilter.VX] = truth.vx;
+        initial[ExtendedKalmanFilter.ANGLE] = truth.angle;
+        initial[ExtendedKalmanFilter.RATE] = truth.angularVelocity;
+        System.arraycopy(INITIAL_VARIANCE, 0, variance, 0, ExtendedKalmanFilter.N);
+        ekf.initialize(initial, variance);
+    }
+
+    /**
+     * Ignores the true state passed in and flies on the filter estimate.
+     */
+    @Override
+    public void computeCommands(double altitude, double verticalSpeed, double horizontalPos,
+                                double horizontalSpeed, double angle, double dt,
+                                Map<String, Double> engineThrust) {
+        sensors.sample(truth);
+        ekf.step(sensors, dt);
+        inner.computeCommands(ekf.getAltitude(), ekf.getVerticalSpeed(), ekf.getHorizontalPos(),
+                ekf.getHorizontalSpeed(), ekf.getAngle(), dt, engineThrust);
+    }
+
+    /**
+     * Resets the wrapped controller, the sensors and the filter (from the current true state).
+     */
+    @Override
+    public void reset() {
+        inner.reset();
+        sensors.reset();
+        initializeFilter();
+    }
+
+    public ExtendedKalmanFilter getFilter() { return ekf; }
+    public SensorSuite getSensors() { return sensors; }
+}
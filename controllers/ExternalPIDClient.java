@@ -0,0 +1,60 @@
+package controllers;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import constants.SpacecraftConstants;
+
+/**
+ * ExternalPIDClient.java
+ *
+ * Reference out-of-process controller for the shared-memory command channel.
+ * It runs the same cascaded LandingPIDController as the simulator, but in its own JVM, reading
+ * state from the channel and writing engine commands back. Flight software under test replaces
+ * this program; it also serves as an example of the controller side of the protocol.
+ *
+ * Usage: java controllers.ExternalPIDClient &lt;channel-file&gt;
+ * (start the simulator with -Dcontroller.shm=&lt;channel-file&gt;, or sim.LockstepRunner, first).
+ */
+public class ExternalPIDClient {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: java controllers.ExternalPIDClient <channel-file>");
+            System.exit(2);
+        }
+        LandingPIDController pid = new LandingPIDController(
+                0.01, 0.0001, 0.001,
+                0.5, 0.01, 0.1,
+                0.01, 0.0001, 0.001,
+                0.5, 0.01, 0.1,
+                0.5, 0.001, 0.05
+        );
+        double[] state = new double[SharedMemoryChannel.STATE_FIELDS];
+        double[] thrust = new double[SharedMemoryChannel.COMMAND_FIELDS];
+        HashMap<String, Double> commands = new HashMap<>();
+
+        try (SharedMemoryChannel channel = SharedMemoryChannel.open(Paths.get(args[0]))) {
+            System.out.println("Connected to " + args[0] + " (" + channel.getSlots() + " slots)");
+            int idle = 0;
+            while (true) {
+                long seq = channel.pollState(state);
+                if (seq < 0) {
+                    // Spin for low latency, but give the core away if the simulator is not running.
+                    if (++idle < 10000) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                idle = 0;
+                pid.computeCommands(state[0], state[1], state[2], state[3], state[4], state[8], commands);
+                for (int i = 0; i < SpacecraftConstants.ENGINES.length; i++) {
+                    thrust[i] = commands.get(SpacecraftConstants.ENGINES[i]);
+                }
+                while (!channel.publishCommand(seq, thrust)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package controllers;
+
+import java.util.Map;
+
+/**
+ * FlightController.java
+ *
+ * Common interface for anything that turns the spacecraft state into engine thrust commands
+ * (the in-process cascaded PID, an out-of-process flight controller, ...).
+ * The simulation calls computeCommands() once per physics tick before updating the spacecraft.
+ */
+public interface FlightController {
+
+    /**
+     * Computes the engine thrust commands for the current tick.
+     *
+     * @param altitude        Current altitude (m) (target is 0).
+     * @param verticalSpeed   Current vertical speed (m/s).
+     * @param horizontalPos   Current horizontal position (m) (target is 0).
+     * @param horizontalSpeed Current horizontal speed (m/s).
+     * @param angle           Current spacecraft angle (degrees).
+     * @param dt              Time interval (s).
+     * @param engineThrust    Map of engine labels to thrust values; the commands are written into it.
+     */
+    void computeCommands(double altitude, double verticalSpeed, double horizontalPos,
+                         double horizontalSpeed, double angle, double dt,
+                         Map<String, Double> engineThrust);
+
+    /**
+     * Resets the controller's internal state.
+     */
+    void reset();
+}
@@ -1,6 +1,8 @@
 package controllers;
 
 import java.util.HashMap;
+import java.util.Map;
+import constants.SpacecraftConstants;
 
 /**
  * LandingPIDController.java
@@ -14,10 +16,20 @@ import java.util.HashMap;
  *    (derived from the horizontal error and altitude) and the current spacecraft angle.
  *
  * The final commands are clamped to:
- *   - Main engine (vertical): [-430, 430] N.
- *   - Secondary engines (horizontal): [-25, 25] N.
+ *   - Main engine (vertical): [-MAX_VERTICAL_COMMAND, MAX_VERTICAL_COMMAND] (430 N).
+ *   - Secondary engines (horizontal): [-MAX_HORIZONTAL_COMMAND, MAX_HORIZONTAL_COMMAND] (25 N).
  */
-public class LandingPIDController {
+public class LandingPIDController implements FlightController {
+    // Version of the control law in update(). Increase it whenever a change alters the commands,
+    // so that cached run results computed with the old controller are no longer used.
+    public static final int CONTROLLER_VERSION = 1;
+
+    // Command limits: the full thrust of the main engine and of one secondary engine.
+    public static final double MAX_VERTICAL_COMMAND = SpacecraftConstants.MAIN_ENG_F;
+    public static final double MAX_HORIZONTAL_COMMAND = SpacecraftConstants.SECOND_ENG_F;
+    // Added to the altitude when computing the desired angle, so that atan2 is defined at touchdown.
+    public static final double ALTITUDE_EPSILON = 1e-3;
+
     // Outer loop PID controllers for position control.
     private PIDController verticalPositionPID;
     private PIDController horizontalPositionPID;
@@ -65,6 +77,54 @@ public class LandingPIDController {
         attitudePID = new PIDController(kpA, kiA, kdA);
     }
 
+    /**
+     * Creates a controller from the 15 gains in constructor order (as written by copyGains).
+     *
+     * @param g The gains.
+     * @return A new controller with zero internal state.
+     */
+    public static LandingPIDController fromGains(double[] g) {
+        return new LandingPIDController(
+                g[0], g[1], g[2],
+                g[3], g[4], g[5],
+                g[6], g[7], g[8],
+                g[9], g[10], g[11],
+                g[12], g[13], g[14]);
+    }
+
+    /**
+     * Copies the 15 gains into an array, in constructor order.
+     *
+     * @param out Array of at least 15 elements.
+     */
+    public void copyGains(double[] out) {
+        copyGains(verticalPositionPID, out, 0);
+        copyGains(verticalSpeedPID, out, 3);
+        copyGains(horizontalPositionPID, out, 6);
+        copyGains(horizontalSpeedPID, out, 9);
+        copyGains(attitudePID, out, 12);
+    }
+
+    private static void copyGains(PIDController pid, double[] out, int offset) {
+        out[offset] = pid.getKp();
+        out[offset + 1] = pid.getKi();
+        out[offset + 2] = pid.getKd();
+    }
+
+    /**
+     * Replaces the 15 gains, in constructor order, so that one controller can be reused for
+     * different gain sets. The internal state is kept; call reset() for a new flight.
+     *
+     * @param g The gains.
+     */
+    public void setGains(double[] g) {
+        verticalPositionPID.setGains(g[0], g[1], g[2]);
+        verticalSpeedPID.setGains(g[3], g[4], g[5]);
+        horizontalPositionPID.setGains(g[6], g[7], g[8]);
+        horizontalSpeedPID.setGains(g[9], g[10], g[11]);
+        attitudePID.setGains(g[12], g[13], g[14]);
+    }
+
     /**
      * Computes engine thrust commands based on the current state.
      *
@@ -98,7 +158,7 @@ public class LandingPIDController {
         // For example, desired angle can be computed from horizontal error:
         // If the spacecraft is off to the right (positive horizontal pos), then a slight negative tilt (to the left)
         // can help steer it back. Here we use arctan(error/altitude) as a guideline.
-        double desiredAngle = -Math.toDegrees(Math.atan2(currentHorizontalPos, currentAltitude + 1e-3));
+        double desiredAngle = -Math.toDegrees(Math.atan2(currentHorizontalPos, currentAltitude + ALTITUDE_EPSILON));
         double attitudeError = desiredAngle - currentAngle;
         double attitudeCorrection = attitudePID.update(0, attitudeError, dt);
 
@@ -106,17 +166,94 @@ public class LandingPIDController {
         // We add the attitude correction to the horizontal output.
         double combinedHorizontal = horizontalOutput + attitudeCorrection;
         // Clamp outputs.
-        verticalOutput = Math.max(-430, Math.min(430, verticalOutput));
-        combinedHorizontal = Math.max(-25, Math.min(25, combinedHorizontal));
+        verticalOutput = Math.max(-MAX_VERTICAL_COMMAND, Math.min(MAX_VERTICAL_COMMAND, verticalOutput));
+        combinedHorizontal = Math.max(-MAX_HORIZONTAL_COMMAND, Math.min(MAX_HORIZONTAL_COMMAND, combinedHorizontal));
 
         commands.put("MHT", verticalOutput);
         commands.put("HORIZONTAL", combinedHorizontal);
         return commands;
     }
 
+    /**
+     * Computes the PID commands and distributes them over the engines (see applyCommands).
+     */
+    @Override
+    public void computeCommands(double altitude, double verticalSpeed, double horizontalPos,
+                                double horizontalSpeed, double angle, double dt,
+                                Map<String, Double> engineThrust) {
+        HashMap<String, Double> pidCommands = update(altitude, verticalSpeed, horizontalPos, horizontalSpeed, angle, dt);
+        applyCommands(pidCommands.get("MHT"), pidCommands.get("HORIZONTAL"), engineThrust);
+    }
+
+    /**
+     * Writes a vertical and a horizontal command to the individual engines.
+     * The vertical command drives the main engine. Secondary engines are activated selectively:
+     * if the horizontal command is positive the left engines fire, if negative the right engines fire.
+     *
+     * @param verticalCmd   Main engine command (N).
+     * @param horizontalCmd Horizontal command for the secondary engines (N).
+     * @param engineThrust  Map of engine labels to thrust values to write into.
+     */
+    public static void applyCommands(double verticalCmd, double horizontalCmd, Map<String, Double> engineThrust) {
+        engineThrust.put(SpacecraftConstants.MAIN_ENGINE, verticalCmd);
+        for (int i = 1; i < SpacecraftConstants.ENGINES.length; i++) {
+            String eng = SpacecraftConstants.ENGINES[i];
+            engineThrust.put(eng, secondaryThrust(eng, horizontalCmd));
+        }
+    }
+
+    /**
+     * Returns the thrust of one secondary engine for a horizontal command (see applyCommands).
+     *
+     * @param engine        Secondary engine label.
+     * @param horizontalCmd Horizontal command (N).
+     * @return The engine's thrust (N, never negative).
+     */
+    public static double secondaryThrust(String engine, double horizontalCmd) {
+        if (horizontalCmd > 0) {
+            return engine.contains("L") ? horizontalCmd : 0.0;
+        } else if (horizontalCmd < 0) {
+            return engine.contains("R") ? -horizontalCmd : 0.0;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Copies the internal state of the five loops into an array, as (integral, previousError) pairs
+     * in the order: vertical position, vertical speed, horizontal position, horizontal speed, attitude.
+     *
+     * @param out Array of at least 10 elements to fill.
+     */
+    public void copyLoopState(double[] out) {
+        copyLoop(verticalPositionPID, out, 0);
+        copyLoop(verticalSpeedPID, out, 2);
+        copyLoop(horizontalPositionPID, out, 4);
+        copyLoop(horizontalSpeedPID, out, 6);
+        copyLoop(attitudePID, out, 8);
+    }
+
+    private static void copyLoop(PIDController pid, double[] out, int offset) {
+        out[offset] = pid.getIntegral();
+        out[offset + 1] = pid.getPreviousError();
+    }
+
+    /**
+     * Restores the internal state of the five loops written by copyLoopState.
+     *
+     * @param in Array of at least 10 elements.
+     */
+    public void restoreLoopState(double[] in) {
+        verticalPositionPID.restore(in[0], in[1]);
+        verticalSpeedPID.restore(in[2], in[3]);
+        horizontalPositionPID.restore(in[4], in[5]);
+        horizontalSpeedPID.restore(in[6], in[7]);
+        attitudePID.restore(in[8], in[9]);
+    }
+
     /**
      * Resets all internal PID controllers.
      */
+    @Override
     public void reset() {
         verticalPositionPID.reset();
         verticalSpeedPID.reset();
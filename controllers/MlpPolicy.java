@@ -0,0 +1,288 @@
+package controllers;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MlpPolicy.java
+ *
+ * A small multilayer perceptron that maps the controller inputs (altitude, vertical speed,
+ * horizontal position, horizontal speed, angle) to a vertical and a horizontal command, as
+ * exported by an external training script.
+ *
+ * Each input is normalized as (x - offset) * scale, hidden layers use tanh, and the two outputs
+ * are squashed with tanh and scaled to the limits of the PID commands (430 N vertical, 25 N
+ * horizontal), so a policy can never command more than the PID could.
+ *
+ * The weights file is flat and little-endian:
+ *   int32 MAGIC ("LMNN"), int32 VERSION, int32 layers, int32 sizes[layers + 1]
+ *   float64 inputOffset[sizes[0]], float64 inputScale[sizes[0]]
+ *   for each layer l: float64 W[sizes[l + 1]][sizes[l]] (row-major), float64 b[sizes[l + 1]]
+ * with sizes[0] = INPUTS and sizes[layers] = OUTPUTS. From numpy this is the header followed by
+ * np.concatenate([...]).astype('&lt;f8').tofile().
+ *
+ * A policy is immutable and can be shared by any number of threads; the scratch arrays live in
+ * a Workspace, one per thread. evaluate() runs a whole batch (rows of inputs) through each layer
+ * as one matrix multiply, four rows at a time so that each weight row is loaded once per four
+ * samples. A single evaluation is a batch of one and gives bit-identical results.
+ */
+public final class MlpPolicy {
+    public static final int MAGIC = 0x4C4D4E4E; // "LMNN"
+    public static final int VERSION = 1;
+    public static final int INPUTS = 5;
+    public static final int OUTPUTS = 2;
+    // Output limits: main engine and secondary engines (N), as clamped by LandingPIDController.
+    public static final double MAX_VERTICAL = LandingPIDController.MAX_VERTICAL_COMMAND;
+    public static final double MAX_HORIZONTAL = LandingPIDController.MAX_HORIZONTAL_COMMAND;
+
+    private final int[] sizes;
+    private final double[] inputOffset, inputScale;
+    // Per layer: weights (row-major, sizes[l + 1] x sizes[l]) and biases.
+    private final double[][] weights, biases;
+    private final int maxWidth;
+
+    /** Scratch arrays for evaluating up to capacity rows at once (not thread-safe). */
+    public static final class Workspace {
+        private final int capacity;
+        private final double[] a, b;
+
+        private Workspace(int capacity, int width) {
+            this.capacity = capacity;
+            this.a = new double[capacity * width];
+            this.b = new double[capacity * width];
+        }
+
+        public int getCapacity() { return capacity; }
+    }
+
+    /**
+     * @param sizes       Layer widths, from INPUTS to OUTPUTS.
+     * @param inputOffset Subtracted from each input.
+     * @param inputScale  Multiplies each input after the offset.
+     * @param weights     Row-major weight matrix of each layer.
+     * @param biases      Bias vector of each layer.
+     */
+    public MlpPolicy(int[] sizes, double[] inputOffset, double[] inputScale, double[][] weights, double[][] biases) {
+        int layers = sizes.length - 1;
+        if (layers < 1 || sizes[0] != INPUTS || sizes[layers] != OUTPUTS) {
+            throw new IllegalArgumentException("A policy maps " + INPUTS + " inputs to " + OUTPUTS
+                    + " outputs, got " + Arrays.toString(sizes));
+        }
+        if (inputOffset.length != INPUTS || inputScale.length != INPUTS
+                || weights.length != layers || biases.length != layers) {
+            throw new IllegalArgumentException("Array sizes do not match the layers");
+        }
+        int width = 0;
+        for (int l = 0; l < layers; l++) {
+            if (sizes[l] < 1 || weights[l].length != sizes[l + 1] * sizes[l] || biases[l].length != sizes[l + 1]) {
+                throw new IllegalArgumentException("Layer " + l + " does not match sizes " + Arrays.toString(sizes));
+            }
+            width = Math.max(width, Math.max(sizes[l], sizes[l + 1]));
+        }
+        this.sizes = sizes.clone();
+        this.inputOffset = inputOffset.clone();
+        this.inputScale = inputScale.clone();
+        this.weights = new double[layers][];
+        this.biases = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            this.weights[l] = weights[l].clone();
+            this.biases[l] = biases[l].clone();
+        }
+        this.maxWidth = width;
+    }
+
+    /**
+     * Reads a weights file.
+     *
+     * @param file The file.
+     * @return The policy.
+     * @throws IOException If the file cannot be read or is not a policy file.
+     */
+    public static MlpPolicy load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large for a policy");
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                // Read the whole file.
+            }
+            buf.flip();
+            try {
+                if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                    throw new IOException(file + " is not a version " + VERSION + " policy file");
+                }
+                int layers = buf.getInt();
+                if (layers < 1 || layers > 64) {
+                    throw new IOException(file + " has " + layers + " layers");
+                }
+                int[] sizes = new int[layers + 1];
+                for (int i = 0; i <= layers; i++) {
+                    sizes[i] = buf.getInt();
+                }
+                double[] offset = readDoubles(buf, INPUTS);
+                double[] scale = readDoubles(buf, INPUTS);
+                double[][] w = new double[layers][];
+                double[][] b = new double[layers][];
+                for (int l = 0; l < layers; l++) {
+                    w[l] = readDoubles(buf, sizes[l + 1] * sizes[l]);
+                    b[l] = readDoubles(buf, sizes[l + 1]);
+                }
+                if (buf.hasRemaining()) {
+                    throw new IOException(file + " has " + buf.remaining() + " bytes after the last layer");
+                }
+                return new MlpPolicy(sizes, offset, scale, w, b);
+            } catch (BufferUnderflowException e) {
+                throw new IOException(file + " is truncated");
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static double[] readDoubles(ByteBuffer buf, int n) {
+        if (n < 0 || n > buf.remaining() / Double.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        double[] d = new double[n];
+        buf.asDoubleBuffer().get(d);
+        buf.position(buf.position() + n * Double.BYTES);
+        return d;
+    }
+
+    /**
+     * Writes the policy in the format read by load().
+     *
+     * @param file The file to create or replace.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        int doubles = 2 * INPUTS;
+        for (int l = 0; l < weights.length; l++) {
+            doubles += weights[l].length + biases[l].length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4 * (3 + sizes.length) + doubles * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(weights.length);
+        for (int s : sizes) {
+            buf.putInt(s);
+        }
+        putDoubles(buf, inputOffset);
+        putDoubles(buf, inputScale);
+        for (int l = 0; l < weights.length; l++) {
+            putDoubles(buf, weights[l]);
+            putDoubles(buf, biases[l]);
+        }
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    private static void putDoubles(ByteBuffer buf, double[] d) {
+        for (double v : d) {
+            buf.putDouble(v);
+        }
+    }
+
+    /**
+     * Creates the scratch arrays for batches of up to capacity rows.
+     *
+     * @param capacity Largest batch.
+     * @return A new workspace.
+     */
+    public Workspace newWorkspace(int capacity) {
+        return new Workspace(capacity, maxWidth);
+    }
+
+    /**
+     * Evaluates the policy for a batch of input rows. Allocates nothing.
+     *
+     * @param inputs  Row-major inputs, INPUTS values per row (raw, not normalized).
+     * @param outputs Row-major outputs to fill, OUTPUTS values per row (vertical, horizontal command in N).
+     * @param rows    Number of rows.
+     * @param ws      Workspace with a capacity of at least rows.
+     */
+    public void evaluate(double[] inputs, double[] outputs, int rows, Workspace ws) {
+        if (rows > ws.capacity) {
+            throw new IllegalArgumentException("Batch of " + rows + " exceeds the workspace capacity " + ws.capacity);
+        }
+        double[] in = ws.a, out = ws.b;
+        for (int r = 0; r < rows; r++) {
+            for (int k = 0; k < INPUTS; k++) {
+                in[r * INPUTS + k] = (inputs[r * INPUTS + k] - inputOffset[k]) * inputScale[k];
+            }
+        }
+        int layers = weights.length;
+        for (int l = 0; l < layers; l++) {
+            multiply(in, out, rows, sizes[l], sizes[l + 1], weights[l], biases[l]);
+            int n = rows * sizes[l + 1];
+            for (int i = 0; i < n; i++) {
+                out[i] = tanh(out[i]);
+            }
+            double[] t = in;
+            in = out;
+            out = t;
+        }
+        for (int r = 0; r < rows; r++) {
+            outputs[r * OUTPUTS] = in[r * OUTPUTS] * MAX_VERTICAL;
+            outputs[r * OUTPUTS + 1] = in[r * OUTPUTS + 1] * MAX_HORIZONTAL;
+        }
+    }
+
+    // tanh from one exp (about 8x faster than Math.tanh, which is not an intrinsic); the absolute
+    // error is within a few ulps of 1, far below what a trained policy can resolve.
+    private static double tanh(double x) {
+        double e = Math.exp(-2 * Math.abs(x));
+        double t = (1 - e) / (1 + e);
+        return x < 0 ? -t : t;
+    }
+
+    // out[rows x m] = in[rows x n] * W^T + b, four rows at a time. Each dot product is summed in
+    // the same order whatever the batch, so batched and single results are identical.
+    private static void multiply(double[] in, double[] out, int rows, int n, int m, double[] w, double[] b) {
+        int r = 0;
+        for (; r + 4 <= rows; r += 4) {
+            int i0 = r * n, i1 = i0 + n, i2 = i1 + n, i3 = i2 + n;
+            for (int j = 0; j < m; j++) {
+                int wj = j * n;
+                double s0 = b[j], s1 = b[j], s2 = b[j], s3 = b[j];
+                for (int k = 0; k < n; k++) {
+                    double wk = w[wj + k];
+                    s0 += wk * in[i0 + k];
+                    s1 += wk * in[i1 + k];
+                    s2 += wk * in[i2 + k];
+                    s3 += wk * in[i3 + k];
+                }
+                out[r * m + j] = s0;
+                out[(r + 1) * m + j] = s1;
+                out[(r + 2) * m + j] = s2;
+                out[(r + 3) * m + j] = s3;
+            }
+        }
+        for (; r < rows; r++) {
+            int i0 = r * n;
+            for (int j = 0; j < m; j++) {
+                int wj = j * n;
+                double s0 = b[j];
+                for (int k = 0; k < n; k++) {
+                    s0 += w[wj + k] * in[i0 + k];
+                }
+                out[r * m + j] = s0;
+            }
+        }
+    }
+
+    public int getLayers() { return weights.length; }
+    public int getLayerSize(int i) { return sizes[i]; }
+}
@@ -42,6 +42,37 @@ public class PIDController {
         return kp * error + ki * integral + kd * derivative;
     }
 
+    // Getters for the gains and the internal state.
+    public double getKp() { return kp; }
+    public double getKi() { return ki; }
+    public double getKd() { return kd; }
+    public double getIntegral() { return integral; }
+    public double getPreviousError() { return previousError; }
+
+    /**
+     * Replaces the gains (the internal state is kept).
+     *
+     * @param kp Proportional gain.
+     * @param ki Integral gain.
+     * @param kd Derivative gain.
+     */
+    public void setGains(double kp, double ki, double kd) {
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+    }
+
+    /**
+     * Restores the internal state (e.g. from a checkpoint).
+     *
+     * @param integral      The accumulated integral.
+     * @param previousError The error of the previous update.
+     */
+    public void restore(double integral, double previousError) {
+        this.integral = integral;
+        this.previousError = previousError;
+    }
+
     /**
      * Resets the PID controller's internal state.
      */
@@ -0,0 +1,51 @@
+package controllers;
+
+import java.util.Map;
+
+/**
+ * PolicyController.java
+ *
+ * Flight controller that flies a learned MlpPolicy. It takes the same inputs as the
+ * LandingPIDController and distributes the policy's vertical and horizontal commands over the
+ * engines the same way (LandingPIDController.applyCommands), so the two can be swapped freely.
+ *
+ * The policy is stateless; this controller only owns the preallocated input, output and scratch
+ * arrays, so evaluating the policy allocates nothing. For many landers stepped together see
+ * sim.PolicyEnsemble, which evaluates them all in one batch.
+ */
+public class PolicyController implements FlightController {
+    private final MlpPolicy policy;
+    private final MlpPolicy.Workspace workspace;
+    private final double[] inputs = new double[MlpPolicy.INPUTS];
+    private final double[] outputs = new double[MlpPolicy.OUTPUTS];
+
+    /**
+     * @param policy The policy (may be shared with other controllers).
+     */
+    public PolicyController(MlpPolicy policy) {
+        this.policy = policy;
+        this.workspace = policy.newWorkspace(1);
+    }
+
+    @Override
+    public void computeCommands(double altitude, double verticalSpeed, double horizontalPos,
+                                double horizontalSpeed, double angle, double dt,
+                                Map<String, Double> engineThrust) {
+        inputs[0] = altitude;
+        inputs[1] = verticalSpeed;
+        inputs[2] = horizontalPos;
+        inputs[3] = horizontalSpeed;
+        inputs[4] = angle;
+        policy.evaluate(inputs, outputs, 1, workspace);
+        LandingPIDController.applyCommands(outputs[0], outputs[1], engineThrust);
+    }
+
+    /**
+     * The policy has no internal state.
+     */
+    @Override
+    public void reset() {
+    }
+
+    public MlpPolicy getPolicy() { return policy; }
+}
@@ -0,0 +1,199 @@
+package controllers;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * SharedMemoryChannel.java
+ *
+ * A memory-mapped file holding two single-producer/single-consumer ring buffers, used to connect
+ * the simulator to a flight controller running in another process:
+ *   - the state ring carries spacecraft state from the simulator to the controller;
+ *   - the command ring carries engine commands from the controller back to the simulator.
+ *
+ * Both processes map the same file. Each ring has a head (next sequence to write, owned by the
+ * producer) and a tail (next sequence to read, owned by the consumer). Slot contents are written
+ * with plain stores and published with a release store of the head; the consumer reads the head
+ * with an acquire load before reading the slot, so no locks or system calls are involved.
+ *
+ * File layout (little-endian, all offsets in bytes):
+ *   0    Header:  int magic ("LMSC"), int version, int slots, int stateSlotBytes, int commandSlotBytes.
+ *   64   State ring:   long head (64), long tail (128), slots from 192.
+ *   ...  Command ring: same layout, directly after the state slots.
+ *   State slot (80 bytes):   long seq, double altitude, verticalSpeed, horizontalPos,
+ *                            horizontalSpeed, angle, angularVelocity, fuel, time, dt.
+ *   Command slot (80 bytes): long seq (the state seq it answers), double thrust[9]
+ *                            (in SpacecraftConstants.ENGINES order).
+ * Head and tail sit on separate 64-byte cache lines so the two processes do not false-share.
+ */
+public class SharedMemoryChannel implements AutoCloseable {
+    public static final int MAGIC = 0x4C4D5343; // "LMSC"
+    public static final int VERSION = 1;
+    public static final int STATE_FIELDS = 9;
+    public static final int COMMAND_FIELDS = 9;
+    public static final int STATE_SLOT_BYTES = 8 + 8 * STATE_FIELDS;
+    public static final int COMMAND_SLOT_BYTES = 8 + 8 * COMMAND_FIELDS;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int HEAD = 0, TAIL = 64, SLOTS = 128;
+
+    // Atomic access to the longs stored in the mapped file.
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int stateRing;
+    private final int commandRing;
+
+    private SharedMemoryChannel(FileChannel file, MappedByteBuffer buffer, int slots) {
+        this.file = file;
+        this.buffer = buffer;
+        this.slots = slots;
+        this.stateRing = HEADER_BYTES;
+        this.commandRing = stateRing + SLOTS + slots * STATE_SLOT_BYTES;
+    }
+
+    private static long fileSize(int slots) {
+        return HEADER_BYTES + 2L * SLOTS + (long) slots * (STATE_SLOT_BYTES + COMMAND_SLOT_BYTES);
+    }
+
+    /**
+     * Creates (or truncates) the channel file. Called by the simulator.
+     *
+     * @param path  The file to create, e.g. on /dev/shm for a RAM-backed mapping.
+     * @param slots Number of slots in each ring (a power of two).
+     * @return The open channel with empty rings.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static SharedMemoryChannel create(Path path, int slots) throws IOException {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("slots must be a power of two: " + slots);
+        }
+        FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer mb = fc.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(slots));
+        mb.order(ByteOrder.LITTLE_ENDIAN);
+        mb.putInt(4, VERSION);
+        mb.putInt(8, slots);
+        mb.putInt(12, STATE_SLOT_BYTES);
+        mb.putInt(16, COMMAND_SLOT_BYTES);
+        // Writing the magic last marks the file as ready for the other side.
+        VarHandle.releaseFence();
+        mb.putInt(0, MAGIC);
+        return new SharedMemoryChannel(fc, mb, slots);
+    }
+
+    /**
+     * Opens a channel file created by the simulator. Called by the external controller.
+     *
+     * @param path The channel file.
+     * @return The open channel.
+     * @throws IOException If the file is missing or is not a channel file.
+     */
+    public static SharedMemoryChannel open(Path path) throws IOException {
+        FileChannel fc = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = fc.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            fc.close();
+            throw new IOException(path + " is not a version " + VERSION + " command channel");
+        }
+        int slots = header.getInt(8);
+        MappedByteBuffer mb = fc.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(slots));
+        mb.order(ByteOrder.LITTLE_ENDIAN);
+        return new SharedMemoryChannel(fc, mb, slots);
+    }
+
+    // ---------------------------------------------------------------- simulator side
+
+    /**
+     * Publishes one state sample (simulator side).
+     *
+     * @param seq   Sequence number of this state (the simulation tick).
+     * @param state STATE_FIELDS values in slot order.
+     * @return False if the ring is full (the controller is not keeping up).
+     */
+    public boolean publishState(long seq, double[] state) {
+        return offer(stateRing, STATE_SLOT_BYTES, seq, state, STATE_FIELDS);
+    }
+
+    /**
+     * Reads the next command, if any (simulator side).
+     *
+     * @param thrust Array of COMMAND_FIELDS values to fill.
+     * @return The state seq the command answers, or -1 if no command is waiting.
+     */
+    public long pollCommand(double[] thrust) {
+        return poll(commandRing, COMMAND_SLOT_BYTES, thrust, COMMAND_FIELDS);
+    }
+
+    // ---------------------------------------------------------------- controller side
+
+    /**
+     * Reads the next state sample, if any (controller side).
+     *
+     * @param state Array of STATE_FIELDS values to fill.
+     * @return The state seq, or -1 if no state is waiting.
+     */
+    public long pollState(double[] state) {
+        return poll(stateRing, STATE_SLOT_BYTES, state, STATE_FIELDS);
+    }
+
+    /**
+     * Publishes the engine command answering a state sample (controller side).
+     *
+     * @param seq    The seq of the state this command answers.
+     * @param thrust COMMAND_FIELDS thrust values.
+     * @return False if the ring is full (the simulator is not reading commands).
+     */
+    public boolean publishCommand(long seq, double[] thrust) {
+        return offer(commandRing, COMMAND_SLOT_BYTES, seq, thrust, COMMAND_FIELDS);
+    }
+
+    // ---------------------------------------------------------------- ring operations
+
+    private boolean offer(int ring, int slotBytes, long seq, double[] values, int count) {
+        long head = (long) LONGS.getOpaque(buffer, ring + HEAD);
+        long tail = (long) LONGS.getAcquire(buffer, ring + TAIL);
+        if (head - tail >= slots) {
+            return false;
+        }
+        int slot = ring + SLOTS + (int) (head & (slots - 1)) * slotBytes;
+        buffer.putLong(slot, seq);
+        for (int i = 0; i < count; i++) {
+            buffer.putDouble(slot + 8 + 8 * i, values[i]);
+        }
+        LONGS.setRelease(buffer, ring + HEAD, head + 1);
+        return true;
+    }
+
+    private long poll(int ring, int slotBytes, double[] values, int count) {
+        long tail = (long) LONGS.getOpaque(buffer, ring + TAIL);
+        long head = (long) LONGS.getAcquire(buffer, ring + HEAD);
+        if (tail == head) {
+            return -1;
+        }
+        int slot = ring + SLOTS + (int) (tail & (slots - 1)) * slotBytes;
+        long seq = buffer.getLong(slot);
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer.getDouble(slot + 8 + 8 * i);
+        }
+        LONGS.setRelease(buffer, ring + TAIL, tail + 1);
+        return seq;
+    }
+
+    public int getSlots() { return slots; }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,126 @@
+package controllers;
+
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import constants.SpacecraftConstants;
+import models.Spacecraft;
+
+/**
+ * SharedMemoryController.java
+ *
+ * Flight controller that delegates to an external process (for example flight software under test)
+ * through a SharedMemoryChannel. Every tick the current state is published to the state ring and
+ * engine commands are taken from the command ring.
+ *
+ *  - Free-running mode: all waiting commands are drained and the newest one is applied; if none has
+ *    arrived yet the previous command is held. The simulation never waits.
+ *  - Lockstep mode: the simulation waits until the controller answers the state of this tick, so the
+ *    external software sees every tick exactly once. If no answer arrives within the timeout the
+ *    previous command is held and the timeout is counted. The wait blocks the calling thread, so
+ *    lockstep is only used headless (sim.LockstepRunner), never on the Swing thread.
+ */
+public class SharedMemoryController implements FlightController {
+    // Busy-spin iterations before yielding, and before falling back to short parks, while waiting in lockstep.
+    private static final int SPIN_LIMIT = 10000;
+    private static final int YIELD_LIMIT = 20000;
+
+    private final SharedMemoryChannel channel;
+    private final Spacecraft spacecraft;
+    private final boolean lockstep;
+    private final long timeoutNanos;
+
+    private final double[] state = new double[SharedMemoryChannel.STATE_FIELDS];
+    private final double[] received = new double[SharedMemoryChannel.COMMAND_FIELDS];
+    private final double[] command = new double[SharedMemoryChannel.COMMAND_FIELDS];
+    private long seq;
+    private long stateOverruns;
+    private long lockstepTimeouts;
+
+    /**
+     * @param channel      The channel created by the simulator.
+     * @param spacecraft   Source of the auxiliary state fields (angular velocity, fuel, time).
+     * @param lockstep     True to wait for the controller's answer every tick.
+     * @param timeoutNanos Maximum wait per tick in lockstep mode.
+     */
+    public SharedMemoryController(SharedMemoryChannel channel, Spacecraft spacecraft,
+                                  boolean lockstep, long timeoutNanos) {
+        this.channel = channel;
+        this.spacecraft = spacecraft;
+        this.lockstep = lockstep;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    public void computeCommands(double altitude, double verticalSpeed, double horizontalPos,
+                                double horizontalSpeed, double angle, double dt,
+                                Map<String, Double> engineThrust) {
+        state[0] = altitude;
+        state[1] = verticalSpeed;
+        state[2] = horizontalPos;
+        state[3] = horizontalSpeed;
+        state[4] = angle;
+        state[5] = spacecraft.angularVelocity;
+        state[6] = spacecraft.fuel;
+        state[7] = spacecraft.getTime();
+        state[8] = dt;
+        long tick = seq++;
+        boolean published = channel.publishState(tick, state);
+        if (!published) {
+            stateOverruns++;
+        }
+
+        if (lockstep && published) {
+            awaitCommand(tick);
+        } else {
+            // Apply the newest command that has arrived, if any.
+            while (channel.pollCommand(received) >= 0) {
+                System.arraycopy(received, 0, command, 0, command.length);
+            }
+        }
+
+        for (int i = 0; i < SpacecraftConstants.ENGINES.length; i++) {
+            engineThrust.put(SpacecraftConstants.ENGINES[i], command[i]);
+        }
+    }
+
+    // Waits for the command answering the given state; stale answers are skipped.
+    private void awaitCommand(long tick) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int spins = 0;
+        while (true) {
+            long answered = channel.pollCommand(received);
+            if (answered >= tick) {
+                System.arraycopy(received, 0, command, 0, command.length);
+                return;
+            }
+            if (answered >= 0) {
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                lockstepTimeouts++;
+                return;
+            }
+            if (++spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+            } else if (spins < YIELD_LIMIT) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+
+    /**
+     * Holds all engines at zero thrust until the external controller sends a new command.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < command.length; i++) {
+            command[i] = 0;
+        }
+    }
+
+    public boolean isLockstep() { return lockstep; }
+    public long getStateOverruns() { return stateOverruns; }
+    public long getLockstepTimeouts() { return lockstepTimeouts; }
+}
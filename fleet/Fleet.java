@@ -0,0 +1,204 @@
+package fleet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import constants.SpacecraftConstants;
+import models.Spacecraft;
+import sim.FlightSimulator;
+import sim.Scenario;
+import terrain.TerrainMap;
+
+/**
+ * Fleet.java
+ *
+ * A group of landers flying at the same time, each with its own flight controller.
+ * Lander 0 is usually the interactive spacecraft, which is stepped by its own panel; the fleet
+ * steps all the others. After each step it checks two kinds of conflict with a SpatialGrid:
+ *   - separation: two flying landers closer than MIN_SEPARATION;
+ *   - landing zone: two landers whose touchdown points (predicted from the current descent rate,
+ *     or actual once landed) are closer than LANDING_ZONE_RADIUS.
+ * Both checks cost O(n) for landers spread over the area, so fleets of hundreds stay cheap.
+ *
+ * One lander is selected; the panels show its telemetry and path.
+ */
+public class Fleet {
+    // Minimum distance between flying landers (m).
+    public static final double MIN_SEPARATION = 300;
+    // Minimum distance between touchdown points (m).
+    public static final double LANDING_ZONE_RADIUS = 150;
+
+    /** One member of the fleet. */
+    public static final class Lander {
+        public final String name;
+        public final Spacecraft spacecraft;
+        // Null for a lander stepped elsewhere (the interactive one).
+        final FlightSimulator simulator;
+        private final double[] initialState = new double[Spacecraft.STATE_SIZE];
+        private boolean separationConflict, zoneConflict;
+        private double touchdownX = Double.NaN;
+
+        Lander(String name, Spacecraft spacecraft, FlightSimulator simulator) {
+            this.name = name;
+            this.spacecraft = spacecraft;
+            this.simulator = simulator;
+            spacecraft.saveState(initialState);
+        }
+
+        public boolean hasSeparationConflict() { return separationConflict; }
+        public boolean hasZoneConflict() { return zoneConflict; }
+        // Predicted (or actual) touchdown x; NaN while not descending.
+        public double getTouchdownX() { return touchdownX; }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final List<Lander> landers = new ArrayList<>();
+    private int separationConflicts, zoneConflicts;
+    private final SpatialGrid separationGrid = new SpatialGrid(MIN_SEPARATION);
+    private final SpatialGrid zoneGrid = new SpatialGrid(LANDING_ZONE_RADIUS);
+    private final SpatialGrid.PairVisitor separationVisitor = (a, b, d) -> {
+        landers.get(a).separationConflict = true;
+        landers.get(b).separationConflict = true;
+        separationConflicts++;
+    };
+    private final SpatialGrid.PairVisitor zoneVisitor = (a, b, d) -> {
+        landers.get(a).zoneConflict = true;
+        landers.get(b).zoneConflict = true;
+        zoneConflicts++;
+    };
+    private int selected;
+    private long version;
+
+    /**
+     * Creates a fleet: the given interactive spacecraft plus landers spread over the approach
+     * area with dispersed initial states, each flown by the default PID controller.
+     *
+     * @param main    The interactive spacecraft (lander 0, not stepped by the fleet).
+     * @param others  Number of additional landers.
+     * @param seed    Seed for the initial states.
+     * @param terrain Terrain shared by all landers.
+     * @return The fleet.
+     */
+    public static Fleet create(Spacecraft main, int others, long seed, TerrainMap terrain) {
+        Fleet fleet = new Fleet();
+        fleet.add("Main", main, null);
+        Random r = new Random(seed);
+        for (int i = 1; i <= others; i++) {
+            double x0 = (r.nextDouble() * 2 - 1) * 8000;
+            double alt0 = SpacecraftConstants.INITIAL_ALTITUDE * (0.8 + 0.2 * r.nextDouble());
+            Scenario s = Scenario.defaults()
+                    .withInitialState(x0, alt0, -x0 / 400, 100, 0)
+                    .dispersed(r, 0, 10, 2);
+            FlightSimulator sim = s.createSimulator();
+            sim.getSpacecraft().setTerrain(terrain);
+            fleet.add("Lander " + i, sim.getSpacecraft(), sim);
+        }
+        return fleet;
+    }
+
+    /**
+     * Adds a lander.
+     *
+     * @param name       Display name.
+     * @param spacecraft The spacecraft.
+     * @param simulator  The simulator flying it (with its controller), or null if it is stepped elsewhere.
+     */
+    public void add(String name, Spacecraft spacecraft, FlightSimulator simulator) {
+        landers.add(new Lander(name, spacecraft, simulator));
+        version++;
+    }
+
+    /**
+     * Steps every lander the fleet flies by one physics step, then updates the conflicts
+     * (call after the interactive lander has been stepped).
+     */
+    public void step() {
+        boolean moved = false;
+        for (Lander l : landers) {
+            if (!l.spacecraft.isLanded()) {
+                if (l.simulator != null) {
+                    l.simulator.step();
+                }
+                moved = true;
+            }
+        }
+        // Once every lander is down nothing changes, and the views stop repainting.
+        if (moved) {
+            updateConflicts();
+            version++;
+        }
+    }
+
+    /**
+     * Recomputes the separation and landing-zone conflicts of all landers.
+     */
+    public void updateConflicts() {
+        separationGrid.clear();
+        zoneGrid.clear();
+        separationConflicts = zoneConflicts = 0;
+        for (int i = 0; i < landers.size(); i++) {
+            Lander l = landers.get(i);
+            Spacecraft sc = l.spacecraft;
+            l.separationConflict = l.zoneConflict = false;
+            if (!sc.isLanded()) {
+                separationGrid.insert(i, sc.x, sc.y);
+            }
+            l.touchdownX = predictTouchdownX(sc);
+            if (!Double.isNaN(l.touchdownX)) {
+                zoneGrid.insert(i, l.touchdownX, 0);
+            }
+        }
+        separationGrid.forEachPair(MIN_SEPARATION, separationVisitor);
+        zoneGrid.forEachPair(LANDING_ZONE_RADIUS, zoneVisitor);
+    }
+
+    // Touchdown x: actual once landed, else extrapolated at the current velocity (NaN if climbing).
+    private static double predictTouchdownX(Spacecraft sc) {
+        if (sc.isLanded()) {
+            return sc.x;
+        }
+        if (sc.vy <= 0) {
+            return Double.NaN;
+        }
+        return sc.x + sc.vx * sc.getAltitude() / sc.vy;
+    }
+
+    /**
+     * Restores every lander the fleet flies to its initial state.
+     */
+    public void reset() {
+        for (Lander l : landers) {
+            if (l.simulator != null) {
+                l.spacecraft.getTrajectory().clear();
+                l.spacecraft.loadState(l.initialState);
+                if (l.simulator.getController() != null) {
+                    l.simulator.getController().reset();
+                }
+            }
+        }
+        updateConflicts();
+        version++;
+    }
+
+    public int size() { return landers.size(); }
+    public Lander get(int i) { return landers.get(i); }
+    public List<Lander> getLanders() { return landers; }
+    public int getSeparationConflicts() { return separationConflicts; }
+    public int getZoneConflicts() { return zoneConflicts; }
+    // Changes whenever a lander of the fleet moves or the selection changes.
+    public long getVersion() { return version; }
+
+    public int getSelectedIndex() { return selected; }
+    public Lander getSelected() { return landers.get(selected); }
+
+    public void setSelectedIndex(int index) {
+        if (index != selected) {
+            selected = index;
+            version++;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package fleet;
+
+import java.util.Arrays;
+
+/**
+ * SpatialGrid.java
+ *
+ * Uniform grid index over points in the plane, for finding all pairs of points closer than a
+ * given distance. Points are hashed into square cells whose side is the query distance, so the
+ * partners of a point can only be in its own cell or the eight around it. With points spread over
+ * the area the pair search costs O(n) instead of the O(n^2) of comparing every pair; only pairs
+ * that really are close are visited.
+ *
+ * The cells are an open-addressing hash table of linked lists kept in primitive arrays, so the
+ * grid can be rebuilt every tick without creating objects (the arrays only grow).
+ */
+public class SpatialGrid {
+
+    /** Receives the pairs found by forEachPair(). */
+    public interface PairVisitor {
+        /**
+         * @param a        Id of the first point.
+         * @param b        Id of the second point.
+         * @param distance Distance between them.
+         */
+        void visit(int a, int b, double distance);
+    }
+
+    private static final int EMPTY = -1;
+
+    private final double cellSize;
+    private int count;
+    private int[] ids = new int[16];
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private long[] cellOf = new long[16];
+    private int[] next = new int[16];        // next point in the same cell
+    // Hash table: cell key -> first point of the cell.
+    private long[] tableKeys = new long[32];
+    private int[] tableHeads = new int[32];
+
+    /**
+     * @param cellSize Cell side; pair queries may use any distance up to it.
+     */
+    public SpatialGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        Arrays.fill(tableHeads, EMPTY);
+    }
+
+    /** Removes all points. */
+    public void clear() {
+        count = 0;
+        Arrays.fill(tableHeads, EMPTY);
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @param id Identifier passed back to the visitor.
+     * @param x  Horizontal coordinate.
+     * @param y  Vertical coordinate.
+     */
+    public void insert(int id, double x, double y) {
+        if (count == ids.length) {
+            grow();
+        }
+        long cell = key((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize));
+        int slot = slot(cell);
+        ids[count] = id;
+        xs[count] = x;
+        ys[count] = y;
+        cellOf[count] = cell;
+        next[count] = tableHeads[slot];
+        tableHeads[slot] = count;
+        count++;
+    }
+
+    /**
+     * Visits every pair of points closer than the given distance, each pair once.
+     *
+     * @param distance Pair distance (at most the cell size).
+     * @param visitor  Receives the pairs.
+     */
+    public void forEachPair(double distance, PairVisitor visitor) {
+        if (distance > cellSize) {
+            throw new IllegalArgumentException("Distance " + distance + " exceeds the cell size " + cellSize);
+        }
+        double d2 = distance * distance;
+        for (int i = 0; i < count; i++) {
+            long cell = cellOf[i];
+            long cx = cell >> 32;
+            long cy = (int) cell;
+            for (long nx = cx - 1; nx <= cx + 1; nx++) {
+                for (long ny = cy - 1; ny <= cy + 1; ny++) {
+                    int slot = find(key(nx, ny));
+                    if (slot == EMPTY) {
+                        continue;
+                    }
+                    // Each pair is seen from both points; report it from the later one only.
+                    for (int j = tableHeads[slot]; j != EMPTY; j = next[j]) {
+                        if (j >= i) {
+                            continue;
+                        }
+                        double dx = xs[i] - xs[j];
+                        double dy = ys[i] - ys[j];
+                        double dd = dx * dx + dy * dy;
+                        if (dd < d2) {
+                            visitor.visit(ids[j], ids[i], Math.sqrt(dd));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() { return count; }
+    public double getCellSize() { return cellSize; }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Slot holding the cell (EMPTY if absent).
+    private int find(long cell) {
+        int mask = tableKeys.length - 1;
+        for (int s = hash(cell) & mask; ; s = (s + 1) & mask) {
+            if (tableHeads[s] == EMPTY) {
+                return EMPTY;
+            }
+            if (tableKeys[s] == cell) {
+                return s;
+            }
+        }
+    }
+
+    // Slot of the cell, claimed if absent.
+    private int slot(long cell) {
+        int mask = tableKeys.length - 1;
+        for (int s = hash(cell) & mask; ; s = (s + 1) & mask) {
+            if (tableHeads[s] == EMPTY) {
+                tableKeys[s] = cell;
+                return s;
+            }
+            if (tableKeys[s] == cell) {
+                return s;
+            }
+        }
+    }
+
+    // Doubles the point arrays and the table (the table stays at most half full) and rehashes.
+    private void grow() {
+        int n = ids.length * 2;
+        ids = Arrays.copyOf(ids, n);
+        xs = Arrays.copyOf(xs, n);
+        ys = Arrays.copyOf(ys, n);
+        cellOf = Arrays.copyOf(cellOf, n);
+        next = Arrays.copyOf(next, n);
+        tableKeys = new long[2 * n];
+        tableHeads = new int[2 * n];
+        Arrays.fill(tableHeads, EMPTY);
+        for (int i = 0; i < count; i++) {
+            int slot = slot(cellOf[i]);
+            next[i] = tableHeads[slot];
+            tableHeads[slot] = i;
+        }
+    }
+}
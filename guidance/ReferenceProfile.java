@@ -0,0 +1,251 @@
+package guidance;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import constants.SpacecraftConstants;
+
+/**
+ * ReferenceProfile.java
+ *
+ * Reference descent trajectory from an initial state to the landing target, computed with
+ * E-guidance: on each axis the commanded acceleration is linear in time, a(t) = c0 + c1 t, which is
+ * the minimum-energy profile meeting the position and velocity boundary conditions. Position is
+ * then a cubic polynomial of time, so the profile is evaluated in closed form.
+ *
+ * The flight time is the shortest one for which the required acceleration never exceeds
+ * THRUST_MARGIN of what the main engine gives the fully fueled vehicle (MAIN_ENG_F / mass).
+ * The target is x = 0, horizontal speed 0, altitude 0 and a vertical speed of TOUCHDOWN_SPEED.
+ * Like Spacecraft, the profile assumes no gravity.
+ *
+ * Sampling by time costs a few multiplications. Sampling by altitude uses a table of the times at
+ * which the final descent passes evenly spaced altitudes, built once, and is also O(1).
+ * Profiles are immutable and cached per initial state (see forInitialState()).
+ */
+public final class ReferenceProfile {
+    // Vertical speed at touchdown (m/s, downward).
+    public static final double TOUCHDOWN_SPEED = 2;
+    // Fraction of the main engine acceleration the profile may use (the rest is control margin).
+    public static final double THRUST_MARGIN = 0.8;
+    private static final int ALTITUDE_SAMPLES = 1024;
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<List<Double>, ReferenceProfile> cache =
+            new LinkedHashMap<List<Double>, ReferenceProfile>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Double>, ReferenceProfile> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final double x0, vx0;      // horizontal
+    private final double h0, vh0;      // altitude and its rate (upward positive)
+    private final double duration;
+    private final double cx0, cx1;     // horizontal acceleration coefficients
+    private final double ch0, ch1;     // vertical acceleration coefficients (upward positive)
+    private final double fuelRequired;
+    // Final descent: altitude decreases monotonically from descentStart to the end.
+    private final double descentStart;
+    private final double altitudeStep;
+    private final double[] timeAtAltitude = new double[ALTITUDE_SAMPLES + 1];
+
+    /**
+     * Returns the reference profile for an initial state, computing it on first use.
+     *
+     * @param x0        Horizontal position (m).
+     * @param altitude0 Altitude (m).
+     * @param vx0       Horizontal speed (m/s).
+     * @param vy0       Vertical speed (m/s, positive downward as in Spacecraft).
+     * @param fuel0     Fuel (liters).
+     * @return The (shared, immutable) profile.
+     */
+    public static ReferenceProfile forInitialState(double x0, double altitude0, double vx0, double vy0, double fuel0) {
+        List<Double> key = Arrays.asList(x0, altitude0, vx0, vy0, fuel0);
+        synchronized (cache) {
+            ReferenceProfile p = cache.get(key);
+            if (p == null) {
+                p = new ReferenceProfile(x0, altitude0, vx0, vy0, fuel0);
+                cache.put(key, p);
+            }
+            return p;
+        }
+    }
+
+    private ReferenceProfile(double x0, double altitude0, double vx0, double vy0, double fuel0) {
+        this.x0 = x0;
+        this.vx0 = vx0;
+        this.h0 = altitude0;
+        this.vh0 = -vy0;
+        double aMax = THRUST_MARGIN * SpacecraftConstants.MAIN_ENG_F / (SpacecraftConstants.WEIGHT_EMP + fuel0);
+
+        duration = shortestDuration(aMax);
+        double[] c = coefficients(x0, vx0, 0, 0, duration);
+        cx0 = c[0];
+        cx1 = c[1];
+        c = coefficients(h0, vh0, 0, -TOUCHDOWN_SPEED, duration);
+        ch0 = c[0];
+        ch1 = c[1];
+
+        fuelRequired = integrateFuel(fuel0);
+
+        descentStart = lastClimbTime();
+        double top = altitudeAt(descentStart);
+        altitudeStep = Math.max(top, 0) / ALTITUDE_SAMPLES;
+        for (int i = 0; i <= ALTITUDE_SAMPLES; i++) {
+            timeAtAltitude[i] = solveDescentTime(i * altitudeStep);
+        }
+    }
+
+    // Coefficients (c0, c1) of a(t) = c0 + c1 t taking (r0, v0) to (rf, vf) in time T.
+    private static double[] coefficients(double r0, double v0, double rf, double vf, double T) {
+        double dr = rf - r0 - v0 * T;
+        double dv = vf - v0;
+        return new double[]{
+                6 * dr / (T * T) - 2 * dv / T,
+                (6 * dv * T - 12 * dr) / (T * T * T)};
+    }
+
+    // Largest acceleration magnitude of the profile of duration T. The magnitude of an affine
+    // function is convex, so its maximum is at an end point.
+    private double peakAcceleration(double T) {
+        double[] x = coefficients(x0, vx0, 0, 0, T);
+        double[] h = coefficients(h0, vh0, 0, -TOUCHDOWN_SPEED, T);
+        double start = Math.hypot(x[0], h[0]);
+        double end = Math.hypot(x[0] + x[1] * T, h[0] + h[1] * T);
+        return Math.max(start, end);
+    }
+
+    // Shortest duration within the acceleration limit: a geometric scan, then bisection.
+    private double shortestDuration(double aMax) {
+        double lo = 1, hi = 1;
+        while (peakAcceleration(hi) > aMax) {
+            lo = hi;
+            hi *= 1.25;
+            if (hi > 1e6) {
+                return hi;   // Unreachable target; use a very slow profile.
+            }
+        }
+        if (hi == 1) {
+            return hi;
+        }
+        for (int i = 0; i < 60; i++) {
+            double mid = (lo + hi) / 2;
+            if (peakAcceleration(mid) > aMax) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return hi;
+    }
+
+    // Fuel burned by the main engine to fly the profile (burn rate proportional to thrust = m |a|).
+    private double integrateFuel(double fuel0) {
+        int steps = 1000;
+        double dt = duration / steps;
+        double fuel = fuel0;
+        for (int i = 0; i < steps; i++) {
+            double t = (i + 0.5) * dt;
+            double a = Math.hypot(cx0 + cx1 * t, ch0 + ch1 * t);
+            double thrust = (SpacecraftConstants.WEIGHT_EMP + fuel) * a;
+            fuel -= SpacecraftConstants.MAIN_BURN * thrust / SpacecraftConstants.MAIN_ENG_F * dt;
+        }
+        return fuel0 - fuel;
+    }
+
+    // Last time the altitude rate is non-negative (0 if the profile descends all the way).
+    private double lastClimbTime() {
+        // vh(t) = vh0 + ch0 t + ch1 t^2 / 2; find its roots in (0, duration).
+        double a = ch1 / 2, b = ch0, c = vh0;
+        double last = 0;
+        if (Math.abs(a) < 1e-15) {
+            if (b != 0) {
+                last = -c / b;
+            }
+        } else {
+            double disc = b * b - 4 * a * c;
+            if (disc >= 0) {
+                double sq = Math.sqrt(disc);
+                last = Math.max((-b - sq) / (2 * a), (-b + sq) / (2 * a));
+            }
+        }
+        return last > 0 && last < duration ? last : 0;
+    }
+
+    // Time during the final descent at which the altitude is h (bisection; construction only).
+    private double solveDescentTime(double h) {
+        double lo = descentStart, hi = duration;
+        for (int i = 0; i < 60; i++) {
+            double mid = (lo + hi) / 2;
+            if (altitudeAt(mid) > h) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    private double clamp(double t) {
+        return t < 0 ? 0 : (t > duration ? duration : t);
+    }
+
+    /** Reference altitude at flight time t (m). */
+    public double altitudeAt(double t) {
+        t = clamp(t);
+        return h0 + vh0 * t + ch0 * t * t / 2 + ch1 * t * t * t / 6;
+    }
+
+    /** Reference vertical speed at flight time t (m/s, positive downward). */
+    public double verticalSpeedAt(double t) {
+        t = clamp(t);
+        return -(vh0 + ch0 * t + ch1 * t * t / 2);
+    }
+
+    /** Reference horizontal position at flight time t (m). */
+    public double horizontalPositionAt(double t) {
+        t = clamp(t);
+        return x0 + vx0 * t + cx0 * t * t / 2 + cx1 * t * t * t / 6;
+    }
+
+    /** Reference horizontal speed at flight time t (m/s). */
+    public double horizontalSpeedAt(double t) {
+        t = clamp(t);
+        return vx0 + cx0 * t + cx1 * t * t / 2;
+    }
+
+    /** Magnitude of the commanded acceleration at flight time t (m/s^2). */
+    public double accelerationAt(double t) {
+        t = clamp(t);
+        return Math.hypot(cx0 + cx1 * t, ch0 + ch1 * t);
+    }
+
+    /**
+     * Flight time at which the final descent passes altitude h (interpolated from the table).
+     * Altitudes above the start of the final descent map to its start.
+     */
+    public double timeAtAltitude(double h) {
+        if (altitudeStep == 0 || h <= 0) {
+            return duration;
+        }
+        double pos = h / altitudeStep;
+        if (pos >= ALTITUDE_SAMPLES) {
+            return descentStart;
+        }
+        int i = (int) pos;
+        double f = pos - i;
+        return timeAtAltitude[i] + (timeAtAltitude[i + 1] - timeAtAltitude[i]) * f;
+    }
+
+    /** Reference vertical speed when passing altitude h (m/s, positive downward). */
+    public double verticalSpeedAtAltitude(double h) {
+        return verticalSpeedAt(timeAtAltitude(h));
+    }
+
+    /** Duration of the profile (s). */
+    public double getDuration() { return duration; }
+
+    /** Fuel the main engine burns flying the profile (liters). */
+    public double getFuelRequired() { return fuelRequired; }
+}
@@ -0,0 +1,76 @@
+package guidance;
+
+import models.Spacecraft;
+
+/**
+ * TrackingError.java
+ *
+ * Deviation of a flight from its ReferenceProfile, accumulated tick by tick.
+ * Each update() compares the current state with the reference at the same flight time and adds
+ * to running sums, so the statistics cost O(1) per tick and never revisit the path.
+ */
+public class TrackingError {
+    private final ReferenceProfile reference;
+    private long samples;
+    private double sumAltitude2, sumVerticalSpeed2, sumHorizontal2;
+    private double maxAltitude, maxVerticalSpeed, maxHorizontal;
+    private double altitudeError, verticalSpeedError, horizontalError;
+
+    public TrackingError(ReferenceProfile reference) {
+        this.reference = reference;
+    }
+
+    /**
+     * Adds the errors of the current tick.
+     *
+     * @param sc The spacecraft (its flight time selects the reference point).
+     */
+    public void update(Spacecraft sc) {
+        update(sc.getTime(), sc.getAltitude(), sc.getVerticalSpeed(), sc.x);
+    }
+
+    /**
+     * Adds the errors of one tick.
+     *
+     * @param time          Flight time (s).
+     * @param altitude      Altitude (m).
+     * @param verticalSpeed Vertical speed (m/s, positive downward).
+     * @param x             Horizontal position (m).
+     */
+    public void update(double time, double altitude, double verticalSpeed, double x) {
+        altitudeError = altitude - reference.altitudeAt(time);
+        verticalSpeedError = verticalSpeed - reference.verticalSpeedAt(time);
+        horizontalError = x - reference.horizontalPositionAt(time);
+        samples++;
+        sumAltitude2 += altitudeError * altitudeError;
+        sumVerticalSpeed2 += verticalSpeedError * verticalSpeedError;
+        sumHorizontal2 += horizontalError * horizontalError;
+        maxAltitude = Math.max(maxAltitude, Math.abs(altitudeError));
+        maxVerticalSpeed = Math.max(maxVerticalSpeed, Math.abs(verticalSpeedError));
+        maxHorizontal = Math.max(maxHorizontal, Math.abs(horizontalError));
+    }
+
+    /** Clears the statistics. */
+    public void reset() {
+        samples = 0;
+        sumAltitude2 = sumVerticalSpeed2 = sumHorizontal2 = 0;
+        maxAltitude = maxVerticalSpeed = maxHorizontal = 0;
+        altitudeError = verticalSpeedError = horizontalError = 0;
+    }
+
+    private double rms(double sum) {
+        return samples == 0 ? 0 : Math.sqrt(sum / samples);
+    }
+
+    public ReferenceProfile getReference() { return reference; }
+    public long getSamples() { return samples; }
+    public double getAltitudeError() { return altitudeError; }
+    public double getVerticalSpeedError() { return verticalSpeedError; }
+    public double getHorizontalError() { return horizontalError; }
+    public double getRmsAltitudeError() { return rms(sumAltitude2); }
+    public double getRmsVerticalSpeedError() { return rms(sumVerticalSpeed2); }
+    public double getRmsHorizontalError() { return rms(sumHorizontal2); }
+    public double getMaxAltitudeError() { return maxAltitude; }
+    public double getMaxVerticalSpeedError() { return maxVerticalSpeed; }
+    public double getMaxHorizontalError() { return maxHorizontal; }
+}
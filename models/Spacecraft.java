@@ -1,10 +1,10 @@
 package models;
 
 import java.awt.Point;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import constants.SpacecraftConstants;
+import terrain.TerrainMap;
 // Gravity is not added in this version, so the spacecraft’s motion depends solely on initial velocity and engine thrust.
 import constants.Moon;
 
@@ -18,16 +18,34 @@ import constants.Moon;
  *
  * An angular damping factor has been added so that when side engines are turned off,
  * any residual rotation gradually decays.
+ *
+ * Altitude is measured above the local terrain height taken from a TerrainMap (flat by default).
+ * When the altitude reaches zero the spacecraft touches down: the impact speed is recorded and
+ * further updates leave the state unchanged until reset() is called.
  */
 public class Spacecraft {
+    // Version of the physics in update(). Increase it whenever a change alters simulation results,
+    // so that cached run results computed with the old physics are no longer used.
+    public static final int MODEL_VERSION = 1;
+
     public double x, y;             // Position in world coordinates (meters)
     public double vx, vy;           // Linear velocities (m/s)
+    public double ax, ay;           // Linear accelerations of the last step (m/s^2)
     public double angle;            // Orientation (degrees, in the body frame)
     public double angularVelocity;  // Angular velocity (deg/s)
     public double fuel;             // Remaining fuel (liters; assume 1 liter ≈ 1 kg)
-    public double altitude;         // Altitude above the Moon (meters)
+    public double altitude;         // Altitude above the local terrain (meters)
     public double dt;               // Simulation time step (seconds)
-    private List<Point> path;       // Trajectory for visualization
+    public double time;             // Elapsed flight time (seconds)
+    public boolean landed;          // True once the spacecraft has touched the terrain
+    public double touchdownSpeed;   // Speed at touchdown (m/s)
+    private Trajectory path;        // Trajectory for visualization
+    private TerrainMap terrain;     // Ground height model (shared between spacecraft)
+    private long version;           // Incremented on every state change (used by the display)
+
+    // Number of values written by saveState(): x, y, vx, vy, ax, ay, angle, angularVelocity,
+    // fuel, altitude, time, dt, landed (0/1), touchdownSpeed.
+    public static final int STATE_SIZE = 14;
 
     /**
      * Constructor sets initial conditions.
@@ -45,7 +63,11 @@ public class Spacecraft {
         fuel = SpacecraftConstants.INITIAL_FUEL;
         altitude = SpacecraftConstants.INITIAL_ALTITUDE;
         dt = SpacecraftConstants.DT;
-        path = new ArrayList<>();
+        time = 0;
+        landed = false;
+        touchdownSpeed = 0;
+        path = new Trajectory();
+        terrain = TerrainMap.flat();
     }
 
     /**
@@ -68,10 +90,17 @@ public class Spacecraft {
      * Linear acceleration is computed as a = F/m and integrated over time, and angular acceleration as α = τ/I.
      * An angular damping factor is applied so that if no torque is applied the angular velocity decays.
      * </p>
+     * <p>
+     * Once the altitude above the local terrain drops to zero the spacecraft is landed and this
+     * method does nothing.
+     * </p>
      *
      * @param engineThrust Map of engine labels to thrust values.
      */
     public void update(Map<String, Double> engineThrust) {
+        if (landed) {
+            return;
+        }
         double netForceX = 0, netForceY = 0;
         double netTorque = 0;
         double totalFuelBurn = 0;
@@ -79,12 +108,14 @@ public class Spacecraft {
 
         // Compute dynamic mass (dry mass plus remaining fuel; assume 1 liter ≈ 1 kg).
         double mass = SpacecraftConstants.WEIGHT_EMP + fuel;
-        // Chosen moment of inertia (tuned for simulation).
-        double momentOfInertia = 500;
+        // The attitude is fixed during the step, so its rotation is computed once for all engines.
+        double theta = Math.toRadians(angle);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
 
         // --- Process Main Engine ---
         double mainT = engineThrust.getOrDefault("MHT", 0.0);
-        if (Math.abs(mainT) > 1e-5 && fuel > 0) {
+        if (Math.abs(mainT) > SpacecraftConstants.MIN_THRUST && fuel > 0) {
             // Calculate fuel burn for main engine.
             double burnRate = SpacecraftConstants.MAIN_BURN * (Math.abs(mainT) / SpacecraftConstants.MAIN_ENG_F);
             totalFuelBurn += burnRate * dt;
@@ -92,9 +123,8 @@ public class Spacecraft {
             // For an angle of 90°, world force becomes (0, -mainT) (upward).
             double f_main_local_x = -mainT;
             double f_main_local_y = 0;
-            double theta = Math.toRadians(angle);
-            double f_main_world_x = f_main_local_x * Math.cos(theta) - f_main_local_y * Math.sin(theta);
-            double f_main_world_y = f_main_local_x * Math.sin(theta) + f_main_local_y * Math.cos(theta);
+            double f_main_world_x = f_main_local_x * cos - f_main_local_y * sin;
+            double f_main_world_y = f_main_local_x * sin + f_main_local_y * cos;
             netForceX += f_main_world_x;
             netForceY += f_main_world_y;
             // No torque is produced since force is applied at the center.
@@ -104,31 +134,20 @@ public class Spacecraft {
         for (String key : engineThrust.keySet()) {
             if (key.equals("MHT")) continue; // Skip main engine.
             double t = engineThrust.get(key);
-            if (Math.abs(t) > 1e-5 && fuel > 0) {
+            if (Math.abs(t) > SpacecraftConstants.MIN_THRUST && fuel > 0) {
                 double burnRate = SpacecraftConstants.SECOND_BURN * (Math.abs(t) / SpacecraftConstants.SECOND_ENG_F);
                 totalFuelBurn += burnRate * dt;
 
-                double r_x = 0, r_y = 0;
-                double f_local_x = 0, f_local_y = 0;
-                // Set vertical mounting based on engine label: front engines ("F") at y = -20, back engines ("B") at y = +20.
-                if (key.startsWith("F")) {
-                    r_y = -20;
-                } else { // Assume "B"
-                    r_y = 20;
-                }
-                // Set horizontal mounting and force direction: right engines ("R") at x = +15 produce force in +x; left engines ("L") at x = -15 produce force in -x.
-                if (key.contains("R")) {
-                    r_x = 15;
-                    f_local_x = t;
-                } else if (key.contains("L")) {
-                    r_x = -15;
-                    f_local_x = -t;
-                }
+                // Front engines ("F") are mounted at y = -20, back engines ("B") at y = +20. Right engines
+                // ("R") at x = +15 produce force in +x; left engines ("L") at x = -15 produce force in -x.
+                int direction = SpacecraftConstants.engineForceDirection(key);
+                double r_x = direction * SpacecraftConstants.ENGINE_ARM_X;
+                double r_y = SpacecraftConstants.engineMountY(key);
+                double f_local_x = direction * t;
                 // Secondary engines produce only horizontal force.
-                f_local_y = 0;
-                double theta = Math.toRadians(angle);
-                double f_world_x = f_local_x * Math.cos(theta) - f_local_y * Math.sin(theta);
-                double f_world_y = f_local_x * Math.sin(theta) + f_local_y * Math.cos(theta);
+                double f_local_y = 0;
+                double f_world_x = f_local_x * cos - f_local_y * sin;
+                double f_world_y = f_local_x * sin + f_local_y * cos;
                 netForceX += f_world_x;
                 netForceY += f_world_y;
                 // Compute torque: τ = r_x * f_local_y - r_y * f_local_x.
@@ -143,22 +162,23 @@ public class Spacecraft {
 
         // --- Update Linear Motion ---
         // Compute acceleration: a = F/m.
-        double ax = netForceX / mass;
-        double ay = netForceY / mass;
+        ax = netForceX / mass;
+        ay = netForceY / mass;
         vx += ax * dt;
         vy += ay * dt;
         x += vx * dt;
         y += vy * dt;
-        // Altitude is defined as INITIAL_ALTITUDE minus the simulation y coordinate.
-        altitude = SpacecraftConstants.INITIAL_ALTITUDE - y;
+        // Altitude is the height above the datum (INITIAL_ALTITUDE minus the simulation y coordinate)
+        // minus the local terrain height.
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - y - terrain.heightAt(x, 0);
 
         // --- Update Rotational Motion ---
-        double angularAcc = netTorque / momentOfInertia;
+        double angularAcc = netTorque / SpacecraftConstants.MOMENT_OF_INERTIA;
         angularVelocity += angularAcc * dt;
         // Apply angular damping to gradually cancel residual rotation when no torque is applied.
-        angularVelocity *= 0.98;  // Damping factor: adjust as needed.
+        angularVelocity *= SpacecraftConstants.ANGULAR_DAMPING;
         // Optionally, set angular velocity to zero if it falls below a small threshold.
-        if (Math.abs(angularVelocity) < 0.001) {
+        if (Math.abs(angularVelocity) < SpacecraftConstants.ANGULAR_REST_SPEED) {
             angularVelocity = 0;
         }
         angle += angularVelocity * dt;
@@ -171,17 +191,128 @@ public class Spacecraft {
             }
         }
 
+        time += dt;
+
+        // --- Touchdown ---
+        if (altitude <= 0) {
+            touchdown();
+        }
+
         // Record the current position for trajectory visualization.
         path.add(new Point((int)x, (int)y));
+        version++;
+    }
+
+    /**
+     * Puts the spacecraft on the ground: records the impact speed and stops all motion.
+     */
+    private void touchdown() {
+        touchdownSpeed = Math.sqrt(vx * vx + vy * vy);
+        landed = true;
+        // Rest exactly on the surface.
+        y += altitude;
+        altitude = 0;
+        vx = 0;
+        vy = 0;
+        ax = 0;
+        ay = 0;
+        angularVelocity = 0;
+    }
+
+    /**
+     * Copies the complete dynamic state into an array (see STATE_SIZE for the layout).
+     *
+     * @param out Array of at least STATE_SIZE elements.
+     */
+    public void saveState(double[] out) {
+        out[0] = x;
+        out[1] = y;
+        out[2] = vx;
+        out[3] = vy;
+        out[4] = ax;
+        out[5] = ay;
+        out[6] = angle;
+        out[7] = angularVelocity;
+        out[8] = fuel;
+        out[9] = altitude;
+        out[10] = time;
+        out[11] = dt;
+        out[12] = landed ? 1 : 0;
+        out[13] = touchdownSpeed;
+    }
+
+    /**
+     * Restores the dynamic state saved by saveState(). The path and terrain are not changed.
+     *
+     * @param in Array written by saveState().
+     */
+    public void loadState(double[] in) {
+        x = in[0];
+        y = in[1];
+        vx = in[2];
+        vy = in[3];
+        ax = in[4];
+        ay = in[5];
+        angle = in[6];
+        angularVelocity = in[7];
+        fuel = in[8];
+        altitude = in[9];
+        time = in[10];
+        dt = in[11];
+        landed = in[12] != 0;
+        touchdownSpeed = in[13];
+        version++;
+    }
+
+    /**
+     * Creates an independent copy of this spacecraft. The copy shares the terrain and the path
+     * recorded so far (copy-on-write), and continues its own path from there.
+     *
+     * @return The copy.
+     */
+    public Spacecraft copy() {
+        Spacecraft c = new Spacecraft();
+        double[] state = new double[STATE_SIZE];
+        saveState(state);
+        c.loadState(state);
+        c.terrain = terrain;
+        c.path = path.fork();
+        return c;
+    }
+
+    /**
+     * Replaces the recorded path (used when restoring a checkpoint).
+     *
+     * @param path The path to continue from.
+     */
+    public void setPath(Trajectory path) {
+        this.path = path;
+    }
+
+    /**
+     * Sets the terrain model used for altitude and touchdown detection.
+     *
+     * @param terrain The terrain map (usually shared by all spacecraft).
+     */
+    public void setTerrain(TerrainMap terrain) {
+        this.terrain = terrain;
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - y - terrain.heightAt(x, 0);
+        version++;
     }
 
     // Getter methods.
     public List<Point> getPath() { return path; }
+    public Trajectory getTrajectory() { return path; }
     public double getHorizontalSpeed() { return vx; }
     public double getVerticalSpeed() { return vy; }
     public double getAltitude() { return altitude; }
     public double getAngle() { return angle; }
     public double getFuel() { return fuel; }
+    public double getTime() { return time; }
+    public long getVersion() { return version; }
+    public boolean isLanded() { return landed; }
+    public double getTouchdownSpeed() { return touchdownSpeed; }
+    public TerrainMap getTerrain() { return terrain; }
 
     /**
      * Resets the spacecraft to its initial state.
@@ -193,8 +324,14 @@ public class Spacecraft {
         angularVelocity = 0;
         vx = 0;
         vy = 0;
+        ax = 0;
+        ay = 0;
         fuel = SpacecraftConstants.INITIAL_FUEL;
-        altitude = SpacecraftConstants.INITIAL_ALTITUDE;
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - terrain.heightAt(0, 0);
+        time = 0;
+        landed = false;
+        touchdownSpeed = 0;
         path.clear();
+        version++;
     }
 }
@@ -0,0 +1,255 @@
+package models;
+
+import java.util.Map;
+import constants.SpacecraftConstants;
+import terrain.TerrainMap;
+
+/**
+ * Spacecraft6DOF.java
+ *
+ * Optional six-degree-of-freedom model of the spacecraft: 3D position and velocity, quaternion
+ * attitude, body angular rates, a full inertia tensor and a 3D mount point and thrust direction
+ * for each of the nine engines. The planar Spacecraft remains the fast default; this model is
+ * for mission analysis that needs out-of-plane motion.
+ *
+ * Frames: world x is horizontal (east, as Spacecraft.x), world y is the simulation y of the
+ * planar model (altitude = INITIAL_ALTITUDE - y - terrain), world z is north. The body frame is
+ * the planar body frame extended by z; the planar angle is a rotation about z.
+ *
+ * The defaults reproduce the planar model when the motion stays in the plane: engine pairs
+ * ("1" and "2") are mounted symmetrically at z = +10 and z = -10, so equal commands produce no
+ * out-of-plane torque; the inertia about z matches the planar response (500 per degree), and the
+ * same per-step angular damping is applied. Like the planar model, no gravity is added.
+ *
+ * All state lives in primitive arrays and update() creates no objects (see SpatialMath).
+ * No path is recorded.
+ */
+public class Spacecraft6DOF {
+    private static final int ENGINES = SpacecraftConstants.ENGINES.length;
+    // Inertia about each axis equivalent to the planar model's 500 per degree.
+    public static final double PLANAR_INERTIA = SpacecraftConstants.MOMENT_OF_INERTIA * 180 / Math.PI;
+    // Rates below this are zeroed, as in the planar model.
+    private static final double REST_RATE = Math.toRadians(SpacecraftConstants.ANGULAR_REST_SPEED);
+
+    public final double[] position = new double[3];         // world (m)
+    public final double[] velocity = new double[3];         // world (m/s)
+    public final double[] acceleration = new double[3];     // world, last step (m/s^2)
+    public final double[] attitude = {1, 0, 0, 0};          // quaternion (w, x, y, z), body to world
+    public final double[] angularVelocity = new double[3];  // body rates (rad/s)
+    public double fuel;             // liters
+    public double altitude;         // above the local terrain (m)
+    public double dt;               // s
+    public double time;             // s
+    public boolean landed;
+    public double touchdownSpeed;   // m/s
+
+    private final double[] inertia = new double[9];
+    private final double[] inverseInertia = new double[9];
+    private final double[] mounts = new double[3 * ENGINES];      // body mount point per engine
+    private final double[] directions = new double[3 * ENGINES];  // body force per unit thrust
+    private double angularDamping = SpacecraftConstants.ANGULAR_DAMPING;   // rate factor per step
+    private TerrainMap terrain = TerrainMap.flat();
+
+    // Scratch space of update().
+    private final double[] rotation = new double[9];
+    private final double[] vec = new double[3];
+    private final double[] thrust = new double[ENGINES];
+
+    public Spacecraft6DOF() {
+        setInertia(new double[]{
+                PLANAR_INERTIA, 0, 0,
+                0, PLANAR_INERTIA, 0,
+                0, 0, PLANAR_INERTIA});
+        // Main engine at the center, pushing along body -x (as in the planar model).
+        setEngine(0, 0, 0, 0, -1, 0, 0);
+        // Secondary engines: front at y = -20, back at y = +20, right at x = +15 pushing +x,
+        // left at x = -15 pushing -x; "1" at z = +10 and "2" at z = -10.
+        for (int e = 1; e < ENGINES; e++) {
+            String label = SpacecraftConstants.ENGINES[e];
+            int direction = SpacecraftConstants.engineForceDirection(label);
+            double rx = direction * SpacecraftConstants.ENGINE_ARM_X;
+            double ry = SpacecraftConstants.engineMountY(label);
+            double rz = label.endsWith("1") ? 10 : -10;
+            setEngine(e, rx, ry, rz, direction, 0, 0);
+        }
+        reset();
+    }
+
+    /**
+     * Sets the inertia tensor (body frame, row-major).
+     *
+     * @param tensor 9 values.
+     * @throws IllegalArgumentException If the tensor is singular.
+     */
+    public void setInertia(double[] tensor) {
+        if (!SpatialMath.invert(tensor, 0, inverseInertia, 0)) {
+            throw new IllegalArgumentException("Singular inertia tensor");
+        }
+        System.arraycopy(tensor, 0, inertia, 0, 9);
+    }
+
+    /**
+     * Sets the mount point (rx, ry, rz) and the force per unit of thrust (dx, dy, dz, usually a
+     * unit vector) of one engine, both in the body frame.
+     *
+     * @param engine Engine index (SpacecraftConstants.ENGINES order).
+     */
+    public void setEngine(int engine, double rx, double ry, double rz, double dx, double dy, double dz) {
+        int o = 3 * engine;
+        mounts[o] = rx;
+        mounts[o + 1] = ry;
+        mounts[o + 2] = rz;
+        directions[o] = dx;
+        directions[o + 1] = dy;
+        directions[o + 2] = dz;
+    }
+
+    public void setAngularDamping(double factorPerStep) {
+        this.angularDamping = factorPerStep;
+    }
+
+    public void setTerrain(TerrainMap terrain) {
+        this.terrain = terrain;
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - position[1] - terrain.heightAt(position[0], position[2]);
+    }
+
+    /**
+     * Sets the attitude to a planar angle (rotation about z).
+     *
+     * @param degrees The planar angle.
+     */
+    public void setPlanarAngle(double degrees) {
+        SpatialMath.setAxisAngle(attitude, 0, 0, 0, 1, Math.toRadians(degrees));
+    }
+
+    /**
+     * Updates the state by one time step from engine thrust commands given by label.
+     */
+    public void update(Map<String, Double> engineThrust) {
+        for (int e = 0; e < ENGINES; e++) {
+            Double t = engineThrust.get(SpacecraftConstants.ENGINES[e]);
+            thrust[e] = t != null ? t : 0;
+        }
+        update(thrust);
+    }
+
+    /**
+     * Updates the state by one time step. Does nothing once landed.
+     *
+     * @param engineThrust Thrust per engine (SpacecraftConstants.ENGINES order).
+     */
+    public void update(double[] engineThrust) {
+        if (landed) {
+            return;
+        }
+        double mass = SpacecraftConstants.WEIGHT_EMP + fuel;
+        double fx = 0, fy = 0, fz = 0;   // body force
+        double tx = 0, ty = 0, tz = 0;   // body torque
+        double burn = 0;
+        if (fuel > 0) {
+            for (int e = 0; e < ENGINES; e++) {
+                double t = engineThrust[e];
+                if (Math.abs(t) <= SpacecraftConstants.MIN_THRUST) {
+                    continue;
+                }
+                burn += (e == 0
+                        ? SpacecraftConstants.MAIN_BURN * (Math.abs(t) / SpacecraftConstants.MAIN_ENG_F)
+                        : SpacecraftConstants.SECOND_BURN * (Math.abs(t) / SpacecraftConstants.SECOND_ENG_F)) * dt;
+                int o = 3 * e;
+                double ex = directions[o] * t, ey = directions[o + 1] * t, ez = directions[o + 2] * t;
+                fx += ex;
+                fy += ey;
+                fz += ez;
+                // Torque r x F.
+                double rx = mounts[o], ry = mounts[o + 1], rz = mounts[o + 2];
+                tx += ry * ez - rz * ey;
+                ty += rz * ex - rx * ez;
+                tz += rx * ey - ry * ex;
+            }
+        }
+
+        // --- Linear motion (world frame) ---
+        SpatialMath.toMatrix(attitude, 0, rotation, 0);
+        SpatialMath.multiply(rotation, 0, fx, fy, fz, acceleration, 0);
+        for (int i = 0; i < 3; i++) {
+            acceleration[i] /= mass;
+            velocity[i] += acceleration[i] * dt;
+            position[i] += velocity[i] * dt;
+        }
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - position[1] - terrain.heightAt(position[0], position[2]);
+
+        // --- Rotational motion (body frame): I dw/dt = tau - w x (I w) ---
+        double wx = angularVelocity[0], wy = angularVelocity[1], wz = angularVelocity[2];
+        SpatialMath.multiply(inertia, 0, wx, wy, wz, vec, 0);
+        SpatialMath.cross(wx, wy, wz, vec[0], vec[1], vec[2], vec, 0);
+        SpatialMath.multiply(inverseInertia, 0, tx - vec[0], ty - vec[1], tz - vec[2], vec, 0);
+        wx = (wx + vec[0] * dt) * angularDamping;
+        wy = (wy + vec[1] * dt) * angularDamping;
+        wz = (wz + vec[2] * dt) * angularDamping;
+        if (wx * wx + wy * wy + wz * wz < REST_RATE * REST_RATE) {
+            wx = wy = wz = 0;
+        }
+        angularVelocity[0] = wx;
+        angularVelocity[1] = wy;
+        angularVelocity[2] = wz;
+        SpatialMath.integrate(attitude, 0, wx, wy, wz, dt);
+
+        // --- Fuel ---
+        if (burn > 0) {
+            fuel = Math.max(0, fuel - burn);
+        }
+        time += dt;
+
+        if (altitude <= 0) {
+            touchdownSpeed = Math.sqrt(velocity[0] * velocity[0] + velocity[1] * velocity[1]
+                    + velocity[2] * velocity[2]);
+            landed = true;
+            position[1] += altitude;
+            altitude = 0;
+            for (int i = 0; i < 3; i++) {
+                velocity[i] = 0;
+                acceleration[i] = 0;
+                angularVelocity[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the planar angle (degrees): the direction of the body x axis in the world x-y plane.
+     */
+    public double getAngle() {
+        double w = attitude[0], x = attitude[1], y = attitude[2], z = attitude[3];
+        return Math.toDegrees(Math.atan2(2 * (x * y + w * z), 1 - 2 * (y * y + z * z)));
+    }
+
+    // Getters in the terms of the planar model (as used by the flight controllers).
+    public double getX() { return position[0]; }
+    public double getHorizontalSpeed() { return velocity[0]; }
+    public double getVerticalSpeed() { return velocity[1]; }
+    public double getAltitude() { return altitude; }
+    public double getFuel() { return fuel; }
+    public double getTime() { return time; }
+    public boolean isLanded() { return landed; }
+    public double getTouchdownSpeed() { return touchdownSpeed; }
+    public TerrainMap getTerrain() { return terrain; }
+
+    /**
+     * Resets to the initial state of the planar model (at rest, level, full tank).
+     */
+    public void reset() {
+        for (int i = 0; i < 3; i++) {
+            position[i] = 0;
+            velocity[i] = 0;
+            acceleration[i] = 0;
+            angularVelocity[i] = 0;
+        }
+        attitude[0] = 1;
+        attitude[1] = attitude[2] = attitude[3] = 0;
+        fuel = SpacecraftConstants.INITIAL_FUEL;
+        dt = SpacecraftConstants.DT;
+        time = 0;
+        landed = false;
+        touchdownSpeed = 0;
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - terrain.heightAt(0, 0);
+    }
+}
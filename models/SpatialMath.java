@@ -0,0 +1,115 @@
+package models;
+
+/**
+ * SpatialMath.java
+ *
+ * A small vector, matrix and quaternion kernel for the 6-DOF model.
+ * Everything works on primitive double arrays with offsets (or on scalar components) and writes
+ * into caller-provided arrays, so none of these methods creates objects.
+ *
+ * Conventions: vectors are 3 consecutive doubles, matrices are 3x3 row-major (9 doubles),
+ * quaternions are (w, x, y, z) and rotate body coordinates into world coordinates.
+ */
+public final class SpatialMath {
+    private SpatialMath() {
+    }
+
+    /** out = (ax, ay, az) x (bx, by, bz). */
+    public static void cross(double ax, double ay, double az, double bx, double by, double bz,
+                             double[] out, int o) {
+        out[o] = ay * bz - az * by;
+        out[o + 1] = az * bx - ax * bz;
+        out[o + 2] = ax * by - ay * bx;
+    }
+
+    /** out = m * (x, y, z). */
+    public static void multiply(double[] m, int mo, double x, double y, double z, double[] out, int o) {
+        out[o] = m[mo] * x + m[mo + 1] * y + m[mo + 2] * z;
+        out[o + 1] = m[mo + 3] * x + m[mo + 4] * y + m[mo + 5] * z;
+        out[o + 2] = m[mo + 6] * x + m[mo + 7] * y + m[mo + 8] * z;
+    }
+
+    /** out = transpose(m) * (x, y, z), i.e. the inverse rotation for a rotation matrix. */
+    public static void multiplyTransposed(double[] m, int mo, double x, double y, double z, double[] out, int o) {
+        out[o] = m[mo] * x + m[mo + 3] * y + m[mo + 6] * z;
+        out[o + 1] = m[mo + 1] * x + m[mo + 4] * y + m[mo + 7] * z;
+        out[o + 2] = m[mo + 2] * x + m[mo + 5] * y + m[mo + 8] * z;
+    }
+
+    /**
+     * Inverts a 3x3 matrix.
+     *
+     * @return False (and out unchanged) if the matrix is singular.
+     */
+    public static boolean invert(double[] m, int mo, double[] out, int o) {
+        double a = m[mo], b = m[mo + 1], c = m[mo + 2];
+        double d = m[mo + 3], e = m[mo + 4], f = m[mo + 5];
+        double g = m[mo + 6], h = m[mo + 7], i = m[mo + 8];
+        double c0 = e * i - f * h, c1 = f * g - d * i, c2 = d * h - e * g;
+        double det = a * c0 + b * c1 + c * c2;
+        if (det == 0 || Double.isNaN(det)) {
+            return false;
+        }
+        double inv = 1 / det;
+        out[o] = c0 * inv;
+        out[o + 1] = (c * h - b * i) * inv;
+        out[o + 2] = (b * f - c * e) * inv;
+        out[o + 3] = c1 * inv;
+        out[o + 4] = (a * i - c * g) * inv;
+        out[o + 5] = (c * d - a * f) * inv;
+        out[o + 6] = c2 * inv;
+        out[o + 7] = (b * g - a * h) * inv;
+        out[o + 8] = (a * e - b * d) * inv;
+        return true;
+    }
+
+    /** Sets q to a rotation of angle (radians) about the unit axis (x, y, z). */
+    public static void setAxisAngle(double[] q, int qo, double x, double y, double z, double angle) {
+        double s = Math.sin(angle / 2);
+        q[qo] = Math.cos(angle / 2);
+        q[qo + 1] = x * s;
+        q[qo + 2] = y * s;
+        q[qo + 3] = z * s;
+    }
+
+    /** Writes the rotation matrix of the unit quaternion q into m. */
+    public static void toMatrix(double[] q, int qo, double[] m, int mo) {
+        double w = q[qo], x = q[qo + 1], y = q[qo + 2], z = q[qo + 3];
+        double xx = x * x, yy = y * y, zz = z * z;
+        double xy = x * y, xz = x * z, yz = y * z;
+        double wx = w * x, wy = w * y, wz = w * z;
+        m[mo] = 1 - 2 * (yy + zz);
+        m[mo + 1] = 2 * (xy - wz);
+        m[mo + 2] = 2 * (xz + wy);
+        m[mo + 3] = 2 * (xy + wz);
+        m[mo + 4] = 1 - 2 * (xx + zz);
+        m[mo + 5] = 2 * (yz - wx);
+        m[mo + 6] = 2 * (xz - wy);
+        m[mo + 7] = 2 * (yz + wx);
+        m[mo + 8] = 1 - 2 * (xx + yy);
+    }
+
+    /**
+     * Advances the attitude q by the body rates (wx, wy, wz) (rad/s) over dt, in place.
+     * Uses the exact rotation for constant rates (q = q * exp(w dt / 2)) and renormalizes.
+     */
+    public static void integrate(double[] q, int qo, double wx, double wy, double wz, double dt) {
+        double rate = Math.sqrt(wx * wx + wy * wy + wz * wz);
+        if (rate == 0) {
+            return;
+        }
+        double half = rate * dt / 2;
+        double s = Math.sin(half) / rate;
+        double dw = Math.cos(half), dx = wx * s, dy = wy * s, dz = wz * s;
+        double w = q[qo], x = q[qo + 1], y = q[qo + 2], z = q[qo + 3];
+        double nw = w * dw - x * dx - y * dy - z * dz;
+        double nx = w * dx + x * dw + y * dz - z * dy;
+        double ny = w * dy - x * dz + y * dw + z * dx;
+        double nz = w * dz + x * dy - y * dx + z * dw;
+        double norm = 1 / Math.sqrt(nw * nw + nx * nx + ny * ny + nz * nz);
+        q[qo] = nw * norm;
+        q[qo + 1] = nx * norm;
+        q[qo + 2] = ny * norm;
+        q[qo + 3] = nz * norm;
+    }
+}
@@ -0,0 +1,141 @@
+package models;
+
+import java.awt.Point;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Trajectory.java
+ *
+ * The recorded path of a spacecraft, with cheap forking.
+ * Points are appended to a private mutable tail. fork() freezes the tail into an immutable
+ * segment that both the original and the fork then share as their common prefix, so forked
+ * branches never copy the path history and can read it safely from other threads.
+ * Segments are never modified after they are frozen; clear() simply drops them.
+ *
+ * The shared prefix is kept as a flat array of segments with their start offsets, so get() finds
+ * a point's segment by binary search, and iterator() walks the segments in order. Drawing a path
+ * of n points therefore costs O(n) however often it was forked.
+ */
+public class Trajectory extends AbstractList<Point> {
+
+    private static final Point[][] NO_SEGMENTS = new Point[0][];
+    private static final int[] NO_OFFSETS = new int[0];
+
+    // Shared prefix: immutable segments in order and the index of each one's first point. Both
+    // arrays are replaced, never modified, so forks can share them.
+    private Point[][] segments = NO_SEGMENTS;
+    private int[] offsets = NO_OFFSETS;
+    private int frozenSize;     // Number of points in the shared prefix
+    private ArrayList<Point> tail = new ArrayList<>();
+
+    public Trajectory() {
+    }
+
+    private Trajectory(Point[][] segments, int[] offsets, int frozenSize) {
+        this.segments = segments;
+        this.offsets = offsets;
+        this.frozenSize = frozenSize;
+    }
+
+    @Override
+    public boolean add(Point p) {
+        tail.add(p);
+        return true;
+    }
+
+    @Override
+    public Point get(int index) {
+        if (index >= frozenSize) {
+            return tail.get(index - frozenSize);
+        }
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        // Last segment starting at or before index.
+        int lo = 0, hi = offsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return segments[lo][index - offsets[lo]];
+    }
+
+    /**
+     * Iterates over the points in order, segment by segment, without searching for each index.
+     * Covers the points present when the iterator was created.
+     */
+    @Override
+    public Iterator<Point> iterator() {
+        final Point[][] segs = segments;
+        final ArrayList<Point> last = tail;
+        final int tailSize = last.size();
+        return new Iterator<Point>() {
+            private int segment;
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                while (segment < segs.length && i == segs[segment].length) {
+                    segment++;
+                    i = 0;
+                }
+                return segment < segs.length || i < tailSize;
+            }
+
+            @Override
+            public Point next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return segment < segs.length ? segs[segment][i++] : last.get(i++);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return frozenSize + tail.size();
+    }
+
+    /**
+     * Returns a new trajectory that starts with all points recorded so far.
+     * The two trajectories share those points and grow independently afterwards.
+     *
+     * @return The fork.
+     */
+    public Trajectory fork() {
+        freeze();
+        return new Trajectory(segments, offsets, frozenSize);
+    }
+
+    // Moves the mutable tail into a new immutable segment.
+    private void freeze() {
+        if (tail.isEmpty()) {
+            return;
+        }
+        int n = segments.length;
+        segments = Arrays.copyOf(segments, n + 1);
+        offsets = Arrays.copyOf(offsets, n + 1);
+        segments[n] = tail.toArray(new Point[0]);
+        offsets[n] = frozenSize;
+        frozenSize += tail.size();
+        tail = new ArrayList<>();
+    }
+
+    /** Removes all points without touching segments shared with forks. */
+    @Override
+    public void clear() {
+        segments = NO_SEGMENTS;
+        offsets = NO_OFFSETS;
+        frozenSize = 0;
+        tail = new ArrayList<>();
+    }
+}
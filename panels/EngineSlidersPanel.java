@@ -3,6 +3,8 @@ package panels;
 import javax.swing.*;
 import java.awt.*;
 import java.util.HashMap;
+import controllers.CommandBus;
+import controllers.CommandSnapshot;
 
 /*
  * EngineSlidersPanel.java
@@ -10,9 +12,11 @@ import java.util.HashMap;
  * Displays sliders to control the thrust values for each engine.
  * - Main engine (MHT): Range [-430, +430]
  * - Secondary engines: Range [-25, +25]
- * Each slider updates only its associated engine’s thrust value.
+ * Moving a slider posts a manual command for its engine on the CommandBus. The sliders always
+ * show the thrust that is actually applied: while a flight controller flies they follow its
+ * commands, unless the engine's "Override" box is ticked, in which case the slider wins.
  */
-public class EngineSlidersPanel extends JPanel {
+public class EngineSlidersPanel extends JPanel implements RenderLoop.View {
     public String mainEngine = "MHT";
     public String[] secondaryEngines = {
             "FR1", "FR2",
@@ -20,26 +24,29 @@ public class EngineSlidersPanel extends JPanel {
             "BL1", "BL2",
             "BR1", "BR2"
     };
-    // Current thrust values for each engine.
-    public HashMap<String, Double> engineThrust = new HashMap<>();
     // Sliders for controlling thrust.
     public HashMap<String, JSlider> sliders = new HashMap<>();
+    // Per-engine manual override boxes.
+    private final HashMap<String, JCheckBox> overrides = new HashMap<>();
+    // Arbitrates the slider commands with the flight controllers.
+    private final CommandBus bus = new CommandBus();
+    private final CommandBus.Source manual = bus.register("MANUAL", CommandBus.MANUAL);
+    // True while the sliders are moved to the applied thrust (not by the user).
+    private boolean syncing;
 
     public EngineSlidersPanel() {
         setLayout(new GridLayout(9, 1, 5, 5));
 
         // Main engine slider.
-        engineThrust.put(mainEngine, 0.0);
         JSlider mainSlider = createSliderForKey(mainEngine, -430, 430, 0);
         sliders.put(mainEngine, mainSlider);
-        add(labeledPanel(mainEngine + " thrust", mainSlider));
+        add(labeledPanel(mainEngine, mainEngine + " thrust", mainSlider));
 
         // Secondary engine sliders.
         for (String eng : secondaryEngines) {
-            engineThrust.put(eng, 0.0);
             JSlider s = createSliderForKey(eng, -25, 25, 0);
             sliders.put(eng, s);
-            add(labeledPanel("Engine " + eng, s));
+            add(labeledPanel(eng, "Engine " + eng, s));
         }
     }
 
@@ -58,25 +65,68 @@ public class EngineSlidersPanel extends JPanel {
         slider.setPaintTicks(true);
         slider.setPaintLabels(true);
         slider.addChangeListener(e -> {
-            engineThrust.put(key, (double) slider.getValue());
+            if (!syncing) {
+                manual.set(key, slider.getValue());
+            }
         });
         return slider;
     }
 
-    private JPanel labeledPanel(String labelText, JSlider slider) {
+    private JPanel labeledPanel(String key, String labelText, JSlider slider) {
         JPanel panel = new JPanel(new BorderLayout());
+        JPanel header = new JPanel(new BorderLayout());
         JLabel lbl = new JLabel(labelText, JLabel.CENTER);
         lbl.setForeground(Color.BLACK);
-        panel.add(lbl, BorderLayout.NORTH);
+        header.add(lbl, BorderLayout.CENTER);
+        JCheckBox override = new JCheckBox("Override");
+        int engine = CommandBus.engineIndex(key);
+        override.addActionListener(e -> {
+            if (override.isSelected()) {
+                manual.set(engine, slider.getValue());
+            }
+            bus.setManualOverride(engine, override.isSelected());
+        });
+        overrides.put(key, override);
+        header.add(override, BorderLayout.EAST);
+        panel.add(header, BorderLayout.NORTH);
         panel.add(slider, BorderLayout.CENTER);
         return panel;
     }
 
-    /** Resets all sliders to 0. */
+    /** Resets all sliders to 0 and withdraws all manual commands and overrides. */
     public void resetAllSliders() {
-        for (String eng : engineThrust.keySet()) {
-            engineThrust.put(eng, 0.0);
+        manual.clear();
+        syncing = true;
+        for (String eng : sliders.keySet()) {
             sliders.get(eng).setValue(0);
+            overrides.get(eng).setSelected(false);
+            bus.setManualOverride(CommandBus.engineIndex(eng), false);
+        }
+        syncing = false;
+    }
+
+    public CommandBus getCommandBus() {
+        return bus;
+    }
+
+    // Follow the applied commands.
+    @Override
+    public long getStateVersion() {
+        return bus.current().getSequence();
+    }
+
+    @Override
+    public void render() {
+        CommandSnapshot applied = bus.current();
+        syncing = true;
+        for (String eng : sliders.keySet()) {
+            JSlider slider = sliders.get(eng);
+            int value = (int) Math.round(applied.get(eng));
+            // Never pull a slider away from the user while it is being dragged.
+            if (!slider.getValueIsAdjusting() && slider.getValue() != value) {
+                slider.setValue(value);
+            }
         }
+        syncing = false;
     }
 }
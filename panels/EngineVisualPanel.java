@@ -11,9 +11,10 @@ import constants.SpacecraftConstants;
  *
  * Shows the engines visually.
  * Displays the main engine and 8 secondary engines in their designated positions.
- * The color changes (yellow when active) indicate current thrust status.
+ * The color changes (yellow when active) indicate the thrust applied in the last step.
+ * Engine positions depend only on the panel size, so they are recomputed on resize rather than on every paint.
  */
-public class EngineVisualPanel extends JPanel {
+public class EngineVisualPanel extends JPanel implements RenderLoop.View {
     EngineSlidersPanel sliders;
 
     String mainEngine = "MHT";
@@ -29,8 +30,24 @@ public class EngineVisualPanel extends JPanel {
     public EngineVisualPanel(EngineSlidersPanel slidersPanel) {
         sliders = slidersPanel;
         setBackground(Color.WHITE);
-        Timer timer = new Timer(50, e -> repaint());
-        timer.start();
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                calculatePositions(getWidth(), getHeight());
+            }
+        });
+        calculatePositions(getWidth(), getHeight());
+    }
+
+    // Repaint only when the applied thrust commands change.
+    @Override
+    public long getStateVersion() {
+        return sliders.getCommandBus().current().getSequence();
+    }
+
+    @Override
+    public void render() {
+        repaint();
     }
 
     void calculatePositions(int w, int h) {
@@ -59,7 +76,6 @@ public class EngineVisualPanel extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        calculatePositions(getWidth(), getHeight());
         Graphics2D g2d = (Graphics2D) g;
         g2d.setColor(Color.GRAY);
         // Connect secondary engines with a continuous line.
@@ -79,8 +95,8 @@ public class EngineVisualPanel extends JPanel {
     }
 
     void drawEngine(Graphics2D g2d, String lbl, Point p, int r, int power) {
-        double thrust = sliders.engineThrust.getOrDefault(lbl, 0.0);
-        boolean active = Math.abs(thrust) > 1e-5;
+        double thrust = sliders.getCommandBus().current().get(lbl);
+        boolean active = Math.abs(thrust) > SpacecraftConstants.MIN_THRUST;
         g2d.setColor(active ? Color.YELLOW : Color.LIGHT_GRAY);
         g2d.fillOval(p.x - r, p.y - r, 2 * r, 2 * r);
         g2d.setColor(Color.BLACK);
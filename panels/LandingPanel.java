@@ -4,17 +4,35 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.List;
 import constants.SpacecraftConstants;
+import fleet.Fleet;
+import guidance.ReferenceProfile;
+import guidance.TrackingError;
+import models.Spacecraft;
+import sim.TrajectoryPredictor;
+import terrain.TerrainMap;
 
 /**
  * LandingPanel.java
  *
- * This panel displays the landing trajectory, landing target, and the spacecraft's progress.
+ * This panel displays the reference descent trajectory, the landing target, and the spacecraft's progress.
  * A fixed coordinate system is used so that the Moon (landing target) remains static,
  * and the spacecraft is drawn according to its simulation coordinates.
  * The mapping is fixed so that the spacecraft starts from a constant point with its initial data.
+ * The terrain profile under the flight path is drawn along the bottom, and once the spacecraft
+ * touches down a success or collision message is shown.
+ * The reference descent (see ReferenceProfile) is drawn in blue together with the current deviation
+ * from it; both are cached or accumulated elsewhere, so drawing them costs nothing per frame.
+ * When a Fleet is set, every lander is drawn as a small dot (orange when its touchdown point
+ * conflicts with another lander's, circled in red when it is too close to another lander), and the
+ * lander selected in the Telemetry Panel is drawn like the single spacecraft, with its path.
+ * The forecast of the interactive flight (see TrajectoryPredictor) is drawn as a dashed "ghost"
+ * path ending in the predicted touchdown point, green if that touchdown is safe and red if not.
+ * The forecast is computed in the background; the panel only draws the latest one.
  */
-public class LandingPanel extends JPanel {
+public class LandingPanel extends JPanel implements RenderLoop.View {
     private SpacecraftPanel sp;
+    // Optional fleet (null: only the spacecraft of the SpacecraftPanel is shown).
+    private Fleet fleet;
 
     // Define simulation ranges for scaling.
     // Horizontal range (in meters) for the view.
@@ -30,11 +48,51 @@ public class LandingPanel extends JPanel {
     private final double targetX_sim = 0;
     private final double targetY_sim = SpacecraftConstants.INITIAL_ALTITUDE;
 
+    // Terrain profile in screen coordinates, sampled once per pixel column.
+    // Recomputed only when the panel size or the terrain changes.
+    private int[] terrainXs, terrainYs;
+    private int terrainWidth = -1, terrainHeight = -1;
+    private TerrainMap terrainSource;
+
+    // Reference descent in screen coordinates, recomputed only for a new profile or panel size.
+    private static final int REFERENCE_POINTS = 200;
+    private final int[] referenceXs = new int[REFERENCE_POINTS + 1];
+    private final int[] referenceYs = new int[REFERENCE_POINTS + 1];
+    private ReferenceProfile referenceSource;
+    private int referenceWidth = -1, referenceHeight = -1;
+
+    // Forecast path in screen coordinates, recomputed only for a new forecast or panel size.
+    private int[] ghostXs = new int[0], ghostYs = new int[0];
+    private int ghostPoints;
+    private long ghostSequence = -1;
+    private int ghostWidth = -1, ghostHeight = -1;
+    private static final Stroke GHOST_STROKE = new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND,
+            10f, new float[]{6f, 4f}, 0f);
+
     public LandingPanel(SpacecraftPanel spPanel) {
         this.sp = spPanel;
         setBackground(Color.BLACK);
-        Timer timer = new Timer(100, e -> repaint());
-        timer.start();
+    }
+
+    public void setFleet(Fleet fleet) {
+        this.fleet = fleet;
+    }
+
+    // Repaint only when a spacecraft moves (or the simulation is reset, or the selection changes),
+    // or a new forecast arrives.
+    @Override
+    public long getStateVersion() {
+        long version = sp.getSpacecraft().getVersion();
+        if (fleet != null) {
+            version = version * 31 + fleet.getVersion();
+        }
+        TrajectoryPredictor.Prediction prediction = sp.getPrediction();
+        return prediction != null ? version * 31 + prediction.sequence : version;
+    }
+
+    @Override
+    public void render() {
+        repaint();
     }
 
     @Override
@@ -55,11 +113,18 @@ public class LandingPanel extends JPanel {
         // Screen X: center at width/2 + (simX * xScale)
         // Screen Y: bottom margin corresponds to altitude 0, so:
         //   screenY = height - margin - (altitude * yScale)
-        double simX = sp.getSpacecraft().x;
-        double simAltitude = sp.getSpacecraft().getAltitude();
+        Spacecraft sc = fleet != null ? fleet.getSelected().spacecraft : sp.getSpacecraft();
+        double simX = sc.x;
+        // Height above the datum, so the dot lines up with the path and the terrain profile.
+        double simAltitude = SpacecraftConstants.INITIAL_ALTITUDE - sc.y;
         int spacecraftScreenX = (int)(width / 2 + simX * xScale);
         int spacecraftScreenY = (int)(height - margin - simAltitude * yScale);
 
+        // Draw the terrain profile under the flight path.
+        if (!sc.getTerrain().isFlat()) {
+            drawTerrain(g2d, sc.getTerrain(), width, height, xScale, yScale);
+        }
+
         // Draw the landing target (Moon) as a fixed element at the bottom center.
         int targetScreenX = width / 2;
         int targetScreenY = height - margin - 40;  // fixed position near the bottom
@@ -71,43 +136,42 @@ public class LandingPanel extends JPanel {
         g2d.setColor(Color.WHITE);
         g2d.drawString("Landing Target", targetScreenX - 40, targetScreenY - 10);
 
-        // Draw desired landing trajectory as a blue quadratic Bezier curve.
-        // For simplicity, use control points between the spacecraft's starting position and the landing target.
-        int P0x = width / 2;  // assume spacecraft starts at center horizontally
-        int P0y = height - margin - (int)(SpacecraftConstants.INITIAL_ALTITUDE * yScale);
-        int P2x = targetScreenX;
-        int P2y = targetScreenY;
-        // Control point for the curve – adjust for a smoother trajectory.
-        int P1x = (P0x + P2x) / 2 + 100;
-        int P1y = (P0y + P2y) / 2 - 100;
+        // Draw the other landers of the fleet.
+        if (fleet != null && fleet.size() > 1) {
+            drawFleet(g2d, sc, width, height, xScale, yScale);
+        }
 
-        g2d.setColor(Color.BLUE);
-        g2d.setStroke(new BasicStroke(2));
-        Point prevPoint = null;
-        for (double t = 0; t <= 1; t += 0.01) {
-            int bx = (int) ((1 - t) * (1 - t) * P0x + 2 * (1 - t) * t * P1x + t * t * P2x);
-            int by = (int) ((1 - t) * (1 - t) * P0y + 2 * (1 - t) * t * P1y + t * t * P2y);
-            Point current = new Point(bx, by);
-            if (prevPoint != null) {
-                g2d.drawLine(prevPoint.x, prevPoint.y, current.x, current.y);
-            }
-            prevPoint = current;
+        // Draw the reference descent trajectory in blue (tracked for the interactive spacecraft only).
+        TrackingError tracking = sc == sp.getSpacecraft() ? sp.getTrackingError() : null;
+        if (tracking != null) {
+            drawReference(g2d, tracking.getReference(), sc.getTerrain(), width, height, xScale, yScale);
         }
 
-        // Draw the trajectory path (actual progress) in orange.
-        java.util.List<Point> path = sp.getPath();
+        // Draw the forecast of the interactive flight.
+        TrajectoryPredictor.Prediction prediction = sc == sp.getSpacecraft() && !sc.isLanded() ? sp.getPrediction() : null;
+        if (prediction != null && prediction.size() > 0) {
+            drawGhost(g2d, prediction, width, height, xScale, yScale);
+        }
+
+        // Draw the trajectory path (actual progress) in orange. The path is walked with its iterator,
+        // which visits forked segments in order instead of looking up every index.
+        java.util.List<Point> path = sc.getPath();
         if (path.size() > 1) {
             g2d.setColor(Color.ORANGE);
-            for (int i = 1; i < path.size(); i++) {
-                double simX1 = path.get(i - 1).x;
-                double simAltitude1 = SpacecraftConstants.INITIAL_ALTITUDE - path.get(i - 1).y;
-                double simX2 = path.get(i).x;
-                double simAltitude2 = SpacecraftConstants.INITIAL_ALTITUDE - path.get(i).y;
-                int x1 = (int)(width/2 + simX1 * xScale);
-                int y1 = (int)(height - margin - simAltitude1 * yScale);
-                int x2 = (int)(width/2 + simX2 * xScale);
-                int y2 = (int)(height - margin - simAltitude2 * yScale);
-                g2d.drawLine(x1, y1, x2, y2);
+            Point previous = null;
+            for (Point p : path) {
+                if (previous != null) {
+                    double simX1 = previous.x;
+                    double simAltitude1 = SpacecraftConstants.INITIAL_ALTITUDE - previous.y;
+                    double simX2 = p.x;
+                    double simAltitude2 = SpacecraftConstants.INITIAL_ALTITUDE - p.y;
+                    int x1 = (int)(width/2 + simX1 * xScale);
+                    int y1 = (int)(height - margin - simAltitude1 * yScale);
+                    int x2 = (int)(width/2 + simX2 * xScale);
+                    int y2 = (int)(height - margin - simAltitude2 * yScale);
+                    g2d.drawLine(x1, y1, x2, y2);
+                }
+                previous = p;
             }
         }
 
@@ -115,5 +179,143 @@ public class LandingPanel extends JPanel {
         g2d.setColor(Color.RED);
         g2d.fillOval(spacecraftScreenX - 5, spacecraftScreenY - 5, 10, 10);
         g2d.drawString("Current", spacecraftScreenX + 10, spacecraftScreenY);
+
+        // Touchdown result.
+        if (sc.isLanded()) {
+            boolean safe = sc.getTouchdownSpeed() <= SpacecraftConstants.SAFE_LANDING_SPEED;
+            g2d.setFont(g2d.getFont().deriveFont(Font.BOLD, 18f));
+            g2d.setColor(safe ? Color.GREEN : Color.RED);
+            String msg = (safe ? "Successful Landing!" : "Collision!")
+                    + String.format(" (%.2f m/s)", sc.getTouchdownSpeed());
+            g2d.drawString(msg, margin, margin + 20);
+        }
+
+        // Deviation from the reference.
+        if (tracking != null) {
+            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 12f));
+            g2d.setColor(Color.CYAN);
+            g2d.drawString(String.format("Reference dev: alt %+.0f m, vy %+.1f m/s, x %+.0f m",
+                    tracking.getAltitudeError(), tracking.getVerticalSpeedError(), tracking.getHorizontalError()),
+                    margin, height - margin - 18);
+            g2d.drawString(String.format("RMS: alt %.0f m, vy %.1f m/s, x %.0f m",
+                    tracking.getRmsAltitudeError(), tracking.getRmsVerticalSpeedError(), tracking.getRmsHorizontalError()),
+                    margin, height - margin - 4);
+        }
+    }
+
+    /**
+     * Draws the forecast path, the predicted touchdown point and its speed.
+     */
+    private void drawGhost(Graphics2D g2d, TrajectoryPredictor.Prediction prediction, int width, int height,
+                           double xScale, double yScale) {
+        if (prediction.sequence != ghostSequence || width != ghostWidth || height != ghostHeight) {
+            ghostPoints = prediction.size();
+            if (ghostXs.length < ghostPoints) {
+                ghostXs = new int[ghostPoints];
+                ghostYs = new int[ghostPoints];
+            }
+            for (int i = 0; i < ghostPoints; i++) {
+                ghostXs[i] = (int) (width / 2 + prediction.getX(i) * xScale);
+                ghostYs[i] = (int) (height - margin - (SpacecraftConstants.INITIAL_ALTITUDE - prediction.getY(i)) * yScale);
+            }
+            ghostSequence = prediction.sequence;
+            ghostWidth = width;
+            ghostHeight = height;
+        }
+        Color color = !prediction.landed ? Color.LIGHT_GRAY : (prediction.isSafe() ? Color.GREEN : Color.RED);
+        Stroke previous = g2d.getStroke();
+        g2d.setStroke(GHOST_STROKE);
+        g2d.setColor(color);
+        g2d.drawPolyline(ghostXs, ghostYs, ghostPoints);
+        g2d.setStroke(previous);
+        int ex = ghostXs[ghostPoints - 1];
+        int ey = ghostYs[ghostPoints - 1];
+        g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 12f));
+        if (prediction.landed) {
+            g2d.drawLine(ex - 5, ey - 5, ex + 5, ey + 5);
+            g2d.drawLine(ex - 5, ey + 5, ex + 5, ey - 5);
+            g2d.drawString(String.format("Predicted: %.1f m/s in %.0f s", prediction.touchdownSpeed,
+                    prediction.horizon - prediction.fromTime), margin, margin + 40);
+        } else {
+            g2d.drawString(String.format("Predicted: no touchdown within %.0f s",
+                    prediction.horizon - prediction.fromTime), margin, margin + 40);
+        }
+    }
+
+    /**
+     * Draws every lander except the selected one as a dot, marking conflicts, and a conflict count.
+     */
+    private void drawFleet(Graphics2D g2d, Spacecraft selected, int width, int height,
+                           double xScale, double yScale) {
+        for (Fleet.Lander l : fleet.getLanders()) {
+            Spacecraft other = l.spacecraft;
+            if (other == selected) {
+                continue;
+            }
+            int x = (int) (width / 2 + other.x * xScale);
+            int y = (int) (height - margin - (SpacecraftConstants.INITIAL_ALTITUDE - other.y) * yScale);
+            g2d.setColor(l.hasZoneConflict() ? Color.ORANGE : Color.LIGHT_GRAY);
+            g2d.fillOval(x - 2, y - 2, 5, 5);
+            if (l.hasSeparationConflict()) {
+                g2d.setColor(Color.RED);
+                g2d.drawOval(x - 5, y - 5, 10, 10);
+            }
+        }
+        g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 12f));
+        g2d.setColor(Color.LIGHT_GRAY);
+        g2d.drawString(String.format("%d landers, %d separation / %d landing zone conflicts",
+                fleet.size(), fleet.getSeparationConflicts(), fleet.getZoneConflicts()),
+                margin, height - margin - 32);
+    }
+
+    /**
+     * Draws the reference descent (height above datum along x) as a blue polyline.
+     */
+    private void drawReference(Graphics2D g2d, ReferenceProfile reference, TerrainMap terrain,
+                               int width, int height, double xScale, double yScale) {
+        if (reference != referenceSource || width != referenceWidth || height != referenceHeight) {
+            double duration = reference.getDuration();
+            for (int i = 0; i <= REFERENCE_POINTS; i++) {
+                double t = duration * i / REFERENCE_POINTS;
+                double x = reference.horizontalPositionAt(t);
+                double aboveDatum = reference.altitudeAt(t) + terrain.heightAt(x, 0);
+                referenceXs[i] = (int) (width / 2 + x * xScale);
+                referenceYs[i] = (int) (height - margin - aboveDatum * yScale);
+            }
+            referenceSource = reference;
+            referenceWidth = width;
+            referenceHeight = height;
+        }
+        g2d.setColor(Color.BLUE);
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawPolyline(referenceXs, referenceYs, referenceXs.length);
+    }
+
+    /**
+     * Draws the terrain profile (height above datum along x) as a filled gray polygon.
+     */
+    private void drawTerrain(Graphics2D g2d, TerrainMap terrain, int width, int height,
+                             double xScale, double yScale) {
+        if (terrain != terrainSource || width != terrainWidth || height != terrainHeight) {
+            // One sample per pixel column plus the two bottom corners of the polygon.
+            terrainXs = new int[width + 2];
+            terrainYs = new int[width + 2];
+            for (int px = 0; px < width; px++) {
+                double simX = (px - width / 2) / xScale;
+                terrainXs[px] = px;
+                terrainYs[px] = (int) (height - margin - terrain.heightAt(simX, 0) * yScale);
+            }
+            terrainXs[width] = width - 1;
+            terrainYs[width] = height;
+            terrainXs[width + 1] = 0;
+            terrainYs[width + 1] = height;
+            terrainSource = terrain;
+            terrainWidth = width;
+            terrainHeight = height;
+        }
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.fillPolygon(terrainXs, terrainYs, terrainXs.length);
+        g2d.setColor(Color.GRAY);
+        g2d.drawPolyline(terrainXs, terrainYs, width);
     }
 }
@@ -0,0 +1,180 @@
+package panels;
+
+import javax.swing.*;
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RenderLoop.java
+ *
+ * The single paced loop that drives the simulation and the display.
+ * Every frame (one Swing Timer tick, on the event dispatch thread) it:
+ *   1. advances the simulation by one physics step, unless paused;
+ *   2. asks each registered view for the version of the state it displays, and re-renders only
+ *      the views whose version changed since their last render.
+ * Swing coalesces repaint requests, so a view is painted at most once per frame. When the
+ * spacecraft has landed nothing changes, nothing is repainted, and a frame costs a handful of
+ * comparisons.
+ *
+ * While paused the timer is stopped, so an idle window does not wake up 20 times a second.
+ * Only user input can then change what is shown (a slider, an override box), so every mouse or
+ * key event schedules one frame without a physics step; resuming restarts the timer.
+ *
+ * Frame time is measured from the start of the frame until Swing has processed the repaints
+ * requested in it.
+ */
+public class RenderLoop {
+
+    /**
+     * A display element driven by the render loop.
+     */
+    public interface View {
+        /** Returns a counter that changes whenever the state shown by this view changes. */
+        long getStateVersion();
+
+        /** Brings the view up to date (usually by calling repaint()). */
+        void render();
+    }
+
+    private final Timer timer;
+    private final List<View> views = new ArrayList<>();
+    // Version each view had when it was last rendered (indexed like views).
+    private long[] renderedVersions = new long[0];
+    private Runnable simulationStep;
+    private boolean paused;
+    private boolean running;
+    private boolean frameRequested;
+    // Renders input-driven changes while the timer is stopped.
+    private final AWTEventListener inputListener = e -> requestFrame();
+    private static final long INPUT_EVENTS = AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK
+            | AWTEvent.MOUSE_WHEEL_EVENT_MASK | AWTEvent.KEY_EVENT_MASK;
+
+    // Frame time statistics (milliseconds).
+    private long frameStart;
+    private double lastFrameMillis;
+    private double averageFrameMillis;
+    private long framesRendered;
+    private final Runnable frameEnd = this::endFrame;
+
+    /**
+     * @param periodMillis Frame period in milliseconds (one physics step per frame).
+     */
+    public RenderLoop(int periodMillis) {
+        timer = new Timer(periodMillis, e -> frame());
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Registers a view. Views are rendered in registration order.
+     *
+     * @param view The view to keep up to date.
+     */
+    public void add(View view) {
+        views.add(view);
+        renderedVersions = Arrays.copyOf(renderedVersions, views.size());
+        // Render on the first frame.
+        renderedVersions[views.size() - 1] = Long.MIN_VALUE;
+    }
+
+    /**
+     * Sets the action that advances the simulation by one step.
+     *
+     * @param step The physics step.
+     */
+    public void setSimulationStep(Runnable step) {
+        this.simulationStep = step;
+    }
+
+    public void start() {
+        running = true;
+        Toolkit.getDefaultToolkit().addAWTEventListener(inputListener, INPUT_EVENTS);
+        if (paused) {
+            requestFrame();
+        } else {
+            timer.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        timer.stop();
+        Toolkit.getDefaultToolkit().removeAWTEventListener(inputListener);
+    }
+
+    /**
+     * Renders the views whose state changed in one frame soon, without a physics step while paused.
+     * Does nothing while the timer runs, since the next tick renders anyway. Call on the event
+     * dispatch thread.
+     */
+    public void requestFrame() {
+        if (!running || timer.isRunning() || frameRequested) {
+            return;
+        }
+        frameRequested = true;
+        // Queued behind the current event, so the frame sees the state it changed.
+        SwingUtilities.invokeLater(() -> {
+            frameRequested = false;
+            if (running) {
+                frame();
+            }
+        });
+    }
+
+    private void frame() {
+        frameStart = System.nanoTime();
+        if (!paused && simulationStep != null) {
+            simulationStep.run();
+        }
+        boolean rendered = false;
+        for (int i = 0; i < views.size(); i++) {
+            View view = views.get(i);
+            long version = view.getStateVersion();
+            if (version != renderedVersions[i]) {
+                renderedVersions[i] = version;
+                view.render();
+                rendered = true;
+            }
+        }
+        if (rendered) {
+            // Queued behind the repaint event, so it runs once painting is done.
+            SwingUtilities.invokeLater(frameEnd);
+        }
+    }
+
+    private void endFrame() {
+        lastFrameMillis = (System.nanoTime() - frameStart) / 1e6;
+        // Exponential moving average over roughly the last 20 frames.
+        averageFrameMillis = framesRendered == 0 ? lastFrameMillis
+                : averageFrameMillis + (lastFrameMillis - averageFrameMillis) * 0.05;
+        framesRendered++;
+    }
+
+    /**
+     * Pauses or resumes the simulation. The timer is stopped while paused and restarted on resume.
+     *
+     * @param paused True to pause.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        if (!running) {
+            return;
+        }
+        if (paused) {
+            timer.stop();
+            requestFrame();
+        } else {
+            timer.start();
+        }
+    }
+
+    public boolean isPaused() { return paused; }
+
+    // Frame statistics.
+    public double getLastFrameMillis() { return lastFrameMillis; }
+    public double getAverageFrameMillis() { return averageFrameMillis; }
+    public long getFramesRendered() { return framesRendered; }
+}
@@ -2,12 +2,21 @@ package panels;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
 import models.Spacecraft;
 import constants.SpacecraftConstants;
+import controllers.CommandBus;
+import controllers.FlightController;
+import controllers.LandingPIDController;
+import guidance.ReferenceProfile;
+import guidance.TrackingError;
+import sim.FlightSimulator;
+import sim.TrajectoryPredictor;
+import telemetry.TelemetryPublisher;
 
 /**
  * SpacecraftPanel.java
@@ -16,15 +25,44 @@ import constants.SpacecraftConstants;
  * The spacecraft remains fixed in position (centered) while its orientation and flame
  * update according to the applied engine forces. The main engine flame is drawn at a fixed
  * offset and points opposite to the applied main engine thrust.
+ *
+ * This panel also owns the simulation step (step()), which the RenderLoop calls once per frame.
+ * Each step the flight controller's commands are posted on the CommandBus, the bus arbitrates
+ * them with the manual sliders, and the physics is updated with the published snapshot.
+ * After the step the state is handed to a TrajectoryPredictor, which forecasts the rest of the
+ * flight in the background for the LandingPanel.
  */
-public class SpacecraftPanel extends JPanel {
+public class SpacecraftPanel extends JPanel implements RenderLoop.View {
     BufferedImage bg;
     EngineSlidersPanel sliders;
     private Spacecraft spacecraft;
+    // Runs the controller and the physics on a private command map (simulation thread only).
+    private FlightSimulator simulator;
+    private final CommandBus bus;
+    // Bus source the current controller posts to (null without a controller).
+    private CommandBus.Source controllerSource;
+    private final double[] controllerCommands = new double[SpacecraftConstants.ENGINES.length];
+    // Deviation from the reference descent of the current flight (created when the flight starts).
+    private TrackingError tracking;
+    // Longest forecast (s of flight time).
+    private static final double PREDICTION_HORIZON = 600;
+    // Background forecast of the flight, and a counter of changes it cannot foresee.
+    private final TrajectoryPredictor predictor = new TrajectoryPredictor(PREDICTION_HORIZON, 250);
+    private long predictionInputs;
+    // Manual commands that override the controller, as last seen and as forecast (simulation thread only).
+    private final double[] overrideCommands = new double[SpacecraftConstants.ENGINES.length];
+    private final double[] forecastOverrides = new double[SpacecraftConstants.ENGINES.length];
+    // Optional external telemetry stream (null when disabled).
+    private TelemetryPublisher publisher;
 
     public SpacecraftPanel(EngineSlidersPanel slidersPanel) {
         sliders = slidersPanel;
         spacecraft = new Spacecraft();
+        bus = sliders.getCommandBus();
+        bus.register("PID", CommandBus.PID);
+        bus.register("EXTERNAL", CommandBus.EXTERNAL);
+        simulator = new FlightSimulator(spacecraft);
+        simulator.setFilter(this::arbitrate);
         try {
             bg = ImageIO.read(new File("assets/space.jpg"));
         } catch (Exception e) {
@@ -32,14 +70,69 @@ public class SpacecraftPanel extends JPanel {
             System.exit(1);
         }
 
-        // Timer to update simulation and repaint the panel.
-        Timer timer = new Timer(50, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                spacecraft.update(sliders.engineThrust);
-                repaint();
+    }
+
+    /**
+     * Advances the simulation by one physics step.
+     * When a flight controller is active it computes the engine commands right before the update.
+     */
+    public void step() {
+        if (spacecraft.isLanded()) {
+            return;
+        }
+        if (tracking == null) {
+            tracking = new TrackingError(ReferenceProfile.forInitialState(spacecraft.x, spacecraft.getAltitude(),
+                    spacecraft.getHorizontalSpeed(), spacecraft.getVerticalSpeed(), spacecraft.getFuel()));
+        }
+        simulator.step();
+        tracking.update(spacecraft);
+        // The PID is forecast as a controller, with the manual commands of overridden engines;
+        // manual commands (and controllers that cannot be copied) are held. Manual commands
+        // invalidate the forecast whenever they change: all of them without a controller (the bus
+        // sequence), only the overriding ones with a controller, whose own commands change the
+        // bus sequence every tick.
+        FlightController controller = simulator.getController();
+        long inputs;
+        if (controller == null) {
+            inputs = predictionInputs * 31 + bus.current().getSequence();
+        } else {
+            bus.copyManualOverrides(overrideCommands);
+            if (!Arrays.equals(overrideCommands, forecastOverrides)) {
+                System.arraycopy(overrideCommands, 0, forecastOverrides, 0, overrideCommands.length);
+                predictionInputs++;
             }
-        });
-        timer.start();
+            inputs = predictionInputs;
+        }
+        predictor.update(spacecraft,
+                controller instanceof LandingPIDController ? (LandingPIDController) controller : null,
+                simulator.getEngineThrust(), controller != null ? overrideCommands : null, inputs);
+        if (publisher != null) {
+            publisher.record(spacecraft, simulator.getEngineThrust());
+            publisher.flush();
+        }
+    }
+
+    // Posts the controller output (already in the command map) and replaces it with the arbitrated commands.
+    private void arbitrate(Spacecraft sc, Map<String, Double> commands) {
+        if (controllerSource != null && simulator.getController() != null) {
+            for (int i = 0; i < controllerCommands.length; i++) {
+                Double t = commands.get(SpacecraftConstants.ENGINES[i]);
+                controllerCommands[i] = t != null ? t : Double.NaN;
+            }
+            controllerSource.setAll(controllerCommands);
+        }
+        bus.publish().copyTo(commands);
+    }
+
+    // Repaint when the attitude or the main engine flame changes.
+    @Override
+    public long getStateVersion() {
+        return spacecraft.getVersion() * 31 + bus.current().getSequence();
+    }
+
+    @Override
+    public void render() {
+        repaint();
     }
 
     @Override
@@ -60,8 +153,8 @@ public class SpacecraftPanel extends JPanel {
 
         // --- Draw Main Engine Flame ---
         // Retrieve the main engine thrust value.
-        double mainThrust = sliders.engineThrust.getOrDefault("MHT", 0.0);
-        if (Math.abs(mainThrust) > 1e-5) {
+        double mainThrust = bus.current().get(SpacecraftConstants.MAIN_ENGINE);
+        if (Math.abs(mainThrust) > SpacecraftConstants.MIN_THRUST) {
             // Calculate flame length based on thrust magnitude.
             double flameLength = Math.min(20, 10 + Math.abs(mainThrust) * 0.05);
             // The flame is drawn at a fixed offset (0, 30) in local coordinates.
@@ -124,8 +217,59 @@ public class SpacecraftPanel extends JPanel {
         return spacecraft.getPath();
     }
 
+    // Flight controller accessors (null means manual control).
+    public void setController(FlightController controller) {
+        setController(controller, "PID");
+    }
+
+    /**
+     * Sets the flight controller and the CommandBus source its commands are posted to.
+     *
+     * @param controller The controller, or null for manual control.
+     * @param sourceName Name of the bus source ("PID" or "EXTERNAL").
+     */
+    public void setController(FlightController controller, String sourceName) {
+        if (controllerSource != null) {
+            controllerSource.clear();
+        }
+        controllerSource = controller != null ? bus.source(sourceName) : null;
+        simulator.setController(controller);
+        predictionInputs++;
+    }
+
+    public FlightController getController() {
+        return simulator.getController();
+    }
+
+    // Engine commands applied in the last step.
+    public Map<String, Double> getEngineCommands() {
+        return simulator.getEngineThrust();
+    }
+
+    // Latest forecast of the flight (null if none yet).
+    public TrajectoryPredictor.Prediction getPrediction() {
+        return predictor.getPrediction();
+    }
+
+    // Tracking statistics of the current flight (null before its first step).
+    public TrackingError getTrackingError() {
+        return tracking;
+    }
+
+    // Telemetry stream accessors.
+    public void setTelemetryPublisher(TelemetryPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    public TelemetryPublisher getTelemetryPublisher() {
+        return publisher;
+    }
+
     // Reset the spacecraft state.
     public void resetSpacecraft() {
         spacecraft.reset();
+        tracking = null;
+        predictor.clear();
+        predictionInputs++;
     }
 }
@@ -2,12 +2,16 @@ package panels;
 
 import javax.swing.*;
 import java.awt.*;
-import javax.swing.Timer;
 import constants.SpacecraftConstants;
+import controllers.EstimatingController;
+import controllers.FlightController;
 import controllers.LandingPIDController;
-import controllers.PIDController;
+import fleet.Fleet;
 import models.Spacecraft;
-import java.util.HashMap;
+import sim.SimulationSnapshot;
+import sim.WhatIfForker;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * TelemetryPanel.java
@@ -16,8 +20,24 @@ import java.util.HashMap;
  * When PID is active, the cascaded PID controller (with attitude correction)
  * overrides engine thrust commands. These commands are pushed to the
  * EngineSlidersPanel so that both engine visuals and slider values reflect the active commands.
+ *
+ * If an external controller has been set (shared-memory command channel), the PID button
+ * activates it instead of the in-process PID controller. The active controller is run by the
+ * SpacecraftPanel once per physics tick.
+ *
+ * The sensors button switches the controller input between the true state and the estimate of an
+ * Extended Kalman Filter fed by simulated noisy sensors (see EstimatingController).
+ *
+ * The what-if button checkpoints the flight and flies a few alternative futures in the background
+ * (continue, engines off now, engines off in 10 s), then reports how each of them ends.
+ *
+ * With a Fleet, a selector picks the lander whose telemetry is shown (and which the LandingPanel
+ * highlights); the buttons still act on the interactive spacecraft.
+ *
+ * The labels are refreshed by the RenderLoop only when the spacecraft state changes. The pause
+ * button stops the simulation steps of the loop, and the last frame time of the loop is shown.
  */
-public class TelemetryPanel extends JPanel {
+public class TelemetryPanel extends JPanel implements RenderLoop.View {
     private final SpacecraftPanel sp;
     private final EngineSlidersPanel sliders;
 
@@ -26,9 +46,15 @@ public class TelemetryPanel extends JPanel {
     private JLabel horizontalLabel, verticalLabel;
     private JLabel horizontalValue, verticalValue;
     private JLabel altitudeLabel, angleLabel, fuelLabel;
+    private JLabel frameLabel;
     private JButton restartButton;
+    private JButton pauseButton;
     private JButton pidToggleButton;
     private JButton pidResetButton;
+    private JButton sensorsButton;
+    private JButton whatIfButton;
+    private JComboBox<Fleet.Lander> landerSelector;
+    private JPanel landerSelectorPanel;
 
     private boolean pidActive = false;
     // Create the cascaded PID controller with 15 parameters.
@@ -39,6 +65,17 @@ public class TelemetryPanel extends JPanel {
     // Horizontal speed: 0.5, 0.01, 0.1
     // Attitude: 0.5, 0.001, 0.05
     private LandingPIDController pidController;
+    // Out-of-process controller; replaces the PID controller when set.
+    private FlightController externalController;
+    // When true the controller flies on the EKF estimate instead of the true state.
+    private boolean estimatorActive = false;
+    private EstimatingController estimatingController;
+    // Runs what-if branches in the background (created on first use).
+    private WhatIfForker forker;
+    // Loop driving the simulation (set by Main).
+    private RenderLoop renderLoop;
+    // Optional fleet whose selected lander is shown (set by Main).
+    private Fleet fleet;
 
     public TelemetryPanel(SpacecraftPanel spacecraftPanel, EngineSlidersPanel slidersPanel) {
         this.sp = spacecraftPanel;
@@ -53,8 +90,6 @@ public class TelemetryPanel extends JPanel {
                 0.5, 0.01, 0.1,         // horizontal speed gains
                 0.5, 0.001, 0.05        // attitude gains
         );
-        Timer t = new Timer(100, e -> updateTelemetry());
-        t.start();
     }
 
     private void buildUI() {
@@ -91,6 +126,15 @@ public class TelemetryPanel extends JPanel {
         fuelLabel = new JLabel("Fuel: " + SpacecraftConstants.INITIAL_FUEL + " L");
         styleLabel(fuelLabel, 16, Color.WHITE);
 
+        frameLabel = new JLabel("Frame: -- ms");
+        styleLabel(frameLabel, 12, Color.LIGHT_GRAY);
+
+        pauseButton = new JButton("Pause");
+        pauseButton.setFont(new Font("Arial", Font.BOLD, 16));
+        pauseButton.setForeground(Color.BLACK);
+        pauseButton.setBackground(Color.LIGHT_GRAY);
+        pauseButton.addActionListener(e -> onPauseClicked());
+
         restartButton = new JButton("Restart");
         restartButton.setFont(new Font("Arial", Font.BOLD, 16));
         restartButton.setForeground(Color.BLACK);
@@ -109,8 +153,27 @@ public class TelemetryPanel extends JPanel {
         pidResetButton.setBackground(Color.LIGHT_GRAY);
         pidResetButton.addActionListener(e -> onPIDReset());
 
+        sensorsButton = new JButton("Sensors: Truth");
+        sensorsButton.setFont(new Font("Arial", Font.BOLD, 16));
+        sensorsButton.setForeground(Color.BLACK);
+        sensorsButton.setBackground(Color.LIGHT_GRAY);
+        sensorsButton.addActionListener(e -> onSensorsToggle());
+
+        whatIfButton = new JButton("What if?");
+        whatIfButton.setFont(new Font("Arial", Font.BOLD, 16));
+        whatIfButton.setForeground(Color.BLACK);
+        whatIfButton.setBackground(Color.LIGHT_GRAY);
+        whatIfButton.addActionListener(e -> onWhatIfClicked());
+
+        landerSelector = new JComboBox<>();
+        landerSelector.setFont(new Font("Arial", Font.BOLD, 14));
+        landerSelector.addActionListener(e -> onLanderSelected());
+        landerSelectorPanel = centeredPanel(landerSelector);
+        landerSelectorPanel.setVisible(false);
+
         add(Box.createVerticalStrut(10));
         add(centeredPanel(titleLabel));
+        add(landerSelectorPanel);
         add(Box.createVerticalStrut(10));
         add(centeredPanel(velocityTitleLabel));
         add(velocityPanel);
@@ -122,77 +185,203 @@ public class TelemetryPanel extends JPanel {
         add(centeredPanel(pidToggleButton));
         add(Box.createVerticalStrut(5));
         add(centeredPanel(pidResetButton));
+        add(Box.createVerticalStrut(5));
+        add(centeredPanel(sensorsButton));
+        add(Box.createVerticalStrut(5));
+        add(centeredPanel(whatIfButton));
         add(Box.createVerticalGlue());
+        add(centeredPanel(frameLabel));
+        add(Box.createVerticalStrut(5));
+        add(centeredPanel(pauseButton));
+        add(Box.createVerticalStrut(5));
         add(centeredPanel(restartButton));
         add(Box.createVerticalStrut(10));
     }
 
+    // Refresh the labels only when the spacecraft state (or the selected lander) changes.
+    @Override
+    public long getStateVersion() {
+        long version = sp.getSpacecraft().getVersion();
+        return fleet != null ? version * 31 + fleet.getVersion() : version;
+    }
+
+    @Override
+    public void render() {
+        updateTelemetry();
+    }
+
+    public void setRenderLoop(RenderLoop loop) {
+        this.renderLoop = loop;
+    }
+
+    /**
+     * Shows a lander selector for the given fleet (only if it has more than one lander).
+     *
+     * @param fleet The fleet.
+     */
+    public void setFleet(Fleet fleet) {
+        this.fleet = fleet;
+        landerSelector.removeAllItems();
+        for (Fleet.Lander l : fleet.getLanders()) {
+            landerSelector.addItem(l);
+        }
+        landerSelector.setSelectedIndex(fleet.getSelectedIndex());
+        landerSelectorPanel.setVisible(fleet.size() > 1);
+    }
+
+    private void onLanderSelected() {
+        if (fleet != null && landerSelector.getSelectedIndex() >= 0) {
+            fleet.setSelectedIndex(landerSelector.getSelectedIndex());
+        }
+    }
+
     private void updateTelemetry() {
-        Spacecraft sc = sp.getSpacecraft();
+        Spacecraft sc = fleet != null ? fleet.getSelected().spacecraft : sp.getSpacecraft();
         double hSpeed = sc.getHorizontalSpeed();
         double vSpeed = sc.getVerticalSpeed();
         double alt    = sc.getAltitude();
         double ang    = sc.getAngle();
         double fuel   = sc.getFuel();
-        double hPos   = sc.x; // horizontal position
 
         horizontalValue.setText(String.format("%.2f", hSpeed));
         verticalValue.setText(String.format("%.2f", vSpeed));
         altitudeLabel.setText(String.format("Altitude: %.2f m", alt));
         angleLabel.setText(String.format("Angle: %.2f°", ang));
         fuelLabel.setText(String.format("Fuel: %.2f L", fuel));
+        if (renderLoop != null) {
+            frameLabel.setText(String.format("Frame: %.2f ms (avg %.2f ms)",
+                    renderLoop.getLastFrameMillis(), renderLoop.getAverageFrameMillis()));
+        }
+    }
 
+    private void updatePIDButton() {
         if (pidActive) {
-            // Update PID using: currentAltitude, currentVerticalSpeed, currentHorizontalPos, currentHorizontalSpeed, currentAngle, dt.
-            HashMap<String, Double> pidCommands = pidController.update(
-                    alt, vSpeed, hPos, hSpeed, ang, SpacecraftConstants.DT
-            );
-            double verticalCmd = pidCommands.get("MHT");
-            double horizontalCmd = pidCommands.get("HORIZONTAL");
-            // Override main engine command.
-            sliders.engineThrust.put("MHT", verticalCmd);
-
-            // Selectively activate secondary engines:
-            // If horizontalCmd is positive, fire left engines; if negative, fire right engines.
-            if (horizontalCmd > 0) {
-                for (String eng : sliders.secondaryEngines) {
-                    if (eng.contains("L")) {
-                        sliders.engineThrust.put(eng, horizontalCmd);
-                    } else {
-                        sliders.engineThrust.put(eng, 0.0);
-                    }
-                }
-            } else if (horizontalCmd < 0) {
-                for (String eng : sliders.secondaryEngines) {
-                    if (eng.contains("R")) {
-                        sliders.engineThrust.put(eng, -horizontalCmd);
-                    } else {
-                        sliders.engineThrust.put(eng, 0.0);
-                    }
-                }
-            } else {
-                for (String eng : sliders.secondaryEngines) {
-                    sliders.engineThrust.put(eng, 0.0);
-                }
-            }
-            pidToggleButton.setText("PID Active");
+            pidToggleButton.setText(externalController != null ? "External Active" : "PID Active");
         } else {
-            pidToggleButton.setText("Activate PID");
+            pidToggleButton.setText(externalController != null ? "Activate External" : "Activate PID");
         }
     }
 
+    /**
+     * Sets an out-of-process controller to use instead of the in-process PID controller.
+     *
+     * @param controller The external controller.
+     */
+    public void setExternalController(FlightController controller) {
+        this.externalController = controller;
+        estimatingController = null;
+        updatePIDButton();
+    }
+
     private void onRestartClicked() {
         sp.resetSpacecraft();
+        if (fleet != null) {
+            fleet.reset();
+        }
         sliders.resetAllSliders();
-        pidController.reset();
+        flyingController().reset();
     }
 
     private void onPIDToggle() {
         pidActive = !pidActive;
+        updatePIDButton();
+        sp.setController(pidActive ? flyingController() : null, commandSource());
+        // Include the PID internals in the external telemetry stream while the PID is active.
+        if (sp.getTelemetryPublisher() != null) {
+            sp.getTelemetryPublisher().setController(pidActive && externalController == null ? pidController : null);
+        }
+    }
+
+    private void onPauseClicked() {
+        if (renderLoop == null) {
+            return;
+        }
+        renderLoop.setPaused(!renderLoop.isPaused());
+        pauseButton.setText(renderLoop.isPaused() ? "Resume" : "Pause");
+    }
+
+    private void onSensorsToggle() {
+        estimatorActive = !estimatorActive;
+        sensorsButton.setText(estimatorActive ? "Sensors: EKF" : "Sensors: Truth");
+        if (estimatorActive) {
+            flyingController().reset();
+        }
+        if (pidActive) {
+            sp.setController(flyingController(), commandSource());
+        }
+    }
+
+    private void onWhatIfClicked() {
+        Spacecraft sc = sp.getSpacecraft();
+        // Only the in-process PID (flying on true state) can be checkpointed; otherwise the branches
+        // hold the current engine commands.
+        boolean pidFlying = pidActive && externalController == null && !estimatorActive;
+        SimulationSnapshot snapshot = SimulationSnapshot.capture(sc, pidFlying ? pidController : null,
+                sp.getEngineCommands());
+        double now = sc.getTime();
+        List<WhatIfForker.Branch> branches = Arrays.asList(
+                new WhatIfForker.Branch("Continue", true, null),
+                new WhatIfForker.Branch("Engines off now", false, WhatIfForker.enginesOffFrom(now)),
+                new WhatIfForker.Branch("Engines off in 10 s", true, WhatIfForker.enginesOffFrom(now + 10)));
+        if (forker == null) {
+            forker = new WhatIfForker();
+        }
+        whatIfButton.setEnabled(false);
+        new SwingWorker<List<WhatIfForker.BranchResult>, Void>() {
+            @Override
+            protected List<WhatIfForker.BranchResult> doInBackground() {
+                return forker.run(snapshot, branches, 600);
+            }
+
+            @Override
+            protected void done() {
+                whatIfButton.setEnabled(true);
+                try {
+                    showWhatIfResults(now, get());
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(TelemetryPanel.this, "What-if failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void showWhatIfResults(double from, List<WhatIfForker.BranchResult> results) {
+        StringBuilder sb = new StringBuilder(String.format("From t = %.1f s:%n", from));
+        for (WhatIfForker.BranchResult r : results) {
+            if (r.landed) {
+                sb.append(String.format("%s: %s at t = %.1f s, %.2f m/s, fuel %.1f L%n", r.name,
+                        r.isSafe() ? "lands" : "crashes", r.flightTime, r.touchdownSpeed, r.fuel));
+            } else {
+                sb.append(String.format("%s: still flying at t = %.1f s, altitude %.0f m%n",
+                        r.name, r.flightTime, r.altitude));
+            }
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "What if?", JOptionPane.INFORMATION_MESSAGE);
     }
 
     private void onPIDReset() {
-        pidController.reset();
+        flyingController().reset();
+    }
+
+    private FlightController activeController() {
+        return externalController != null ? externalController : pidController;
+    }
+
+    // The controller actually run by the simulation: the active one, optionally behind the estimator.
+    private FlightController flyingController() {
+        if (!estimatorActive) {
+            return activeController();
+        }
+        if (estimatingController == null) {
+            estimatingController = EstimatingController.withDefaultSensors(
+                    activeController(), sp.getSpacecraft(), System.nanoTime());
+        }
+        return estimatingController;
+    }
+
+    // CommandBus source of the active controller.
+    private String commandSource() {
+        return externalController != null ? "EXTERNAL" : "PID";
     }
 
     private void styleLabel(JLabel lbl, int fontSize, Color color) {
@@ -0,0 +1,186 @@
+package sensors;
+
+/**
+ * ExtendedKalmanFilter.java
+ *
+ * Estimates the lander state from the SensorSuite measurements.
+ *
+ * State vector (6): [altitude, verticalSpeed, horizontalPos, horizontalSpeed, angle, angularVelocity]
+ * with the same units and sign conventions as Spacecraft (vertical speed is positive downwards,
+ * angles in degrees).
+ *
+ * Prediction uses the IMU body-frame acceleration as the control input, rotated into the world
+ * frame by the estimated angle; this rotation is the non-linear part of the model and is
+ * linearised in the Jacobian. Each sensor output is then fused with a scalar Kalman update,
+ * so no matrix inversion is needed.
+ *
+ * All matrices are fixed-size primitive arrays allocated once; predict() and the updates
+ * create no objects, so the filter can run at the physics rate in large ensembles.
+ */
+public class ExtendedKalmanFilter {
+    public static final int N = 6;
+    public static final int ALT = 0, VY = 1, X = 2, VX = 3, ANGLE = 4, RATE = 5;
+
+    private final double[] state = new double[N];
+    // Covariance, row-major N x N.
+    private final double[] p = new double[N * N];
+    // Work arrays.
+    private final double[] f = new double[N * N];
+    private final double[] fp = new double[N * N];
+    private final double[] gain = new double[N];
+    private final double[] row = new double[N];
+
+    // Process noise (variance per second) of the speed, angle and rate states.
+    private final double accelVariance;
+    private final double angleVariance;
+    private final double rateVariance;
+
+    /**
+     * @param accelSigma Standard deviation of the accelerometer error (m/s^2), drives speed uncertainty.
+     * @param angleSigma Angle random walk (deg per sqrt(s)).
+     * @param rateSigma  Rate random walk (deg/s per sqrt(s)).
+     */
+    public ExtendedKalmanFilter(double accelSigma, double angleSigma, double rateSigma) {
+        this.accelVariance = accelSigma * accelSigma;
+        this.angleVariance = angleSigma * angleSigma;
+        this.rateVariance = rateSigma * rateSigma;
+    }
+
+    /** Returns the process noise variances (acceleration, angle, rate). */
+    public double[] getTuning() {
+        return new double[]{accelVariance, angleVariance, rateVariance};
+    }
+
+    /**
+     * Sets the initial estimate and its uncertainty.
+     *
+     * @param initial  Initial state (N values).
+     * @param variance Initial variance of each state (N values).
+     */
+    public void initialize(double[] initial, double[] variance) {
+        for (int i = 0; i < N; i++) {
+            state[i] = initial[i];
+            for (int j = 0; j < N; j++) {
+                p[i * N + j] = i == j ? variance[i] : 0;
+            }
+        }
+    }
+
+    /**
+     * Propagates the estimate by one time step.
+     *
+     * @param bodyAccelX Measured body-frame acceleration, x axis (m/s^2).
+     * @param bodyAccelY Measured body-frame acceleration, y axis (m/s^2).
+     * @param dt         Time step (s).
+     */
+    public void predict(double bodyAccelX, double bodyAccelY, double dt) {
+        double theta = Math.toRadians(state[ANGLE]);
+        double cos = Math.cos(theta), sin = Math.sin(theta);
+        double axWorld = cos * bodyAccelX - sin * bodyAccelY;
+        double ayWorld = sin * bodyAccelX + cos * bodyAccelY;
+        // Derivatives of the world acceleration with respect to the angle (in degrees).
+        double dAxdAngle = (-sin * bodyAccelX - cos * bodyAccelY) * Math.PI / 180;
+        double dAydAngle = (cos * bodyAccelX - sin * bodyAccelY) * Math.PI / 180;
+
+        // Same integration order as Spacecraft.update: speeds first, then positions.
+        state[VY] += ayWorld * dt;
+        state[VX] += axWorld * dt;
+        state[ALT] -= state[VY] * dt;
+        state[X] += state[VX] * dt;
+        state[ANGLE] += state[RATE] * dt;
+
+        // Jacobian of the step above.
+        for (int i = 0; i < N * N; i++) {
+            f[i] = 0;
+        }
+        for (int i = 0; i < N; i++) {
+            f[i * N + i] = 1;
+        }
+        f[VY * N + ANGLE] = dAydAngle * dt;
+        f[VX * N + ANGLE] = dAxdAngle * dt;
+        f[ALT * N + VY] = -dt;
+        f[ALT * N + ANGLE] = -dAydAngle * dt * dt;
+        f[X * N + VX] = dt;
+        f[X * N + ANGLE] = dAxdAngle * dt * dt;
+        f[ANGLE * N + RATE] = dt;
+
+        // P = F P F^T + Q
+        multiply(f, p, fp);
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                double sum = 0;
+                for (int k = 0; k < N; k++) {
+                    sum += fp[i * N + k] * f[j * N + k];
+                }
+                p[i * N + j] = sum;
+            }
+        }
+        p[VY * N + VY] += accelVariance * dt;
+        p[VX * N + VX] += accelVariance * dt;
+        p[ANGLE * N + ANGLE] += angleVariance * dt;
+        p[RATE * N + RATE] += rateVariance * dt;
+    }
+
+    /**
+     * Fuses a direct measurement of one state component.
+     *
+     * @param index       State index (ALT, VY, X, VX, ANGLE or RATE).
+     * @param measurement Measured value.
+     * @param variance    Measurement noise variance.
+     */
+    public void update(int index, double measurement, double variance) {
+        double innovation = measurement - state[index];
+        double s = p[index * N + index] + variance;
+        for (int i = 0; i < N; i++) {
+            gain[i] = p[i * N + index] / s;
+            row[i] = p[index * N + i];
+        }
+        for (int i = 0; i < N; i++) {
+            state[i] += gain[i] * innovation;
+            for (int j = 0; j < N; j++) {
+                p[i * N + j] -= gain[i] * row[j];
+            }
+        }
+    }
+
+    /**
+     * Runs one full filter step: prediction followed by all sensor updates.
+     *
+     * @param sensors The sensor suite, already sampled for this tick.
+     * @param dt      Time step (s).
+     */
+    public void step(SensorSuite sensors, double dt) {
+        predict(sensors.getBodyAccelX(), sensors.getBodyAccelY(), dt);
+        update(ALT, sensors.getAltitude(), variance(sensors.getAltimeter()));
+        update(VY, sensors.getVerticalSpeed(), variance(sensors.getVelocityY()));
+        update(VX, sensors.getHorizontalSpeed(), variance(sensors.getVelocityX()));
+        update(ANGLE, sensors.getAngle(), variance(sensors.getAttitude()));
+        update(RATE, sensors.getRate(), variance(sensors.getGyro()));
+    }
+
+    private static double variance(SensorChannel channel) {
+        return channel.getSigma() * channel.getSigma();
+    }
+
+    // out = a * b for N x N matrices.
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                double sum = 0;
+                for (int k = 0; k < N; k++) {
+                    sum += a[i * N + k] * b[k * N + j];
+                }
+                out[i * N + j] = sum;
+            }
+        }
+    }
+
+    // Current estimate.
+    public double getAltitude() { return state[ALT]; }
+    public double getVerticalSpeed() { return state[VY]; }
+    public double getHorizontalPos() { return state[X]; }
+    public double getHorizontalSpeed() { return state[VX]; }
+    public double getAngle() { return state[ANGLE]; }
+    public double getAngularVelocity() { return state[RATE]; }
+    public double getVariance(int index) { return p[index * N + index]; }
+}
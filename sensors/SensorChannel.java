@@ -0,0 +1,62 @@
+package sensors;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SensorChannel.java
+ *
+ * One scalar sensor output with a simple error model:
+ *   measured(t) = true(t - latency) + bias + N(0, sigma^2)
+ * Latency is a whole number of simulation ticks and is modelled with a fixed ring buffer,
+ * so sampling never allocates.
+ */
+public class SensorChannel {
+    private final double sigma;
+    private final double bias;
+    private final double[] delayLine;
+    private final Random random;
+    private int next;
+    private boolean primed;
+
+    /**
+     * @param sigma        Standard deviation of the white noise.
+     * @param bias         Constant offset added to every measurement.
+     * @param latencyTicks Delay in simulation ticks (0 = no delay).
+     * @param random       Random source (seeded by the caller for reproducible runs).
+     */
+    public SensorChannel(double sigma, double bias, int latencyTicks, Random random) {
+        this.sigma = sigma;
+        this.bias = bias;
+        this.delayLine = new double[latencyTicks + 1];
+        this.random = random;
+    }
+
+    /**
+     * Feeds the true value of this tick and returns the (delayed, biased, noisy) measurement.
+     *
+     * @param trueValue The true value at the current tick.
+     * @return The measured value.
+     */
+    public double sample(double trueValue) {
+        if (!primed) {
+            // Before the delay line has filled, report the first value.
+            Arrays.fill(delayLine, trueValue);
+            primed = true;
+        }
+        delayLine[next] = trueValue;
+        next = (next + 1) % delayLine.length;
+        // The oldest entry is the value from latencyTicks ticks ago.
+        return delayLine[next] + bias + sigma * random.nextGaussian();
+    }
+
+    /** Clears the delay line. */
+    public void reset() {
+        primed = false;
+        next = 0;
+    }
+
+    public double getSigma() { return sigma; }
+    public double getBias() { return bias; }
+    public int getLatencyTicks() { return delayLine.length - 1; }
+}
@@ -0,0 +1,123 @@
+package sensors;
+
+import java.util.Random;
+import models.Spacecraft;
+
+/**
+ * SensorSuite.java
+ *
+ * The simulated sensors of the lander:
+ *  - Altimeter:        altitude above the local terrain (m).
+ *  - IMU:              body-frame specific force (m/s^2, two axes), rotation rate (deg/s)
+ *                      and attitude (deg).
+ *  - Velocity sensor:  horizontal and vertical velocity (m/s), e.g. a Doppler radar.
+ * Each output is a SensorChannel with its own noise, bias and latency.
+ * There is no gravity in the model, so the specific force equals the acceleration.
+ */
+public class SensorSuite {
+    private final SensorChannel altimeter;
+    private final SensorChannel accelX, accelY, gyro, attitude;
+    private final SensorChannel velocityX, velocityY;
+
+    // Latest measurements.
+    private double altitude;
+    private double bodyAccelX, bodyAccelY, rate, angle;
+    private double horizontalSpeed, verticalSpeed;
+
+    public SensorSuite(SensorChannel altimeter,
+                       SensorChannel accelX, SensorChannel accelY, SensorChannel gyro, SensorChannel attitude,
+                       SensorChannel velocityX, SensorChannel velocityY) {
+        this.altimeter = altimeter;
+        this.accelX = accelX;
+        this.accelY = accelY;
+        this.gyro = gyro;
+        this.attitude = attitude;
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+    }
+
+    /**
+     * Creates a sensor suite with typical error figures.
+     *
+     * @param seed Seed for the noise (each run with the same seed sees the same noise).
+     * @return The sensor suite.
+     */
+    public static SensorSuite defaults(long seed) {
+        Random r = new Random(seed);
+        return new SensorSuite(
+                new SensorChannel(5.0, 0.0, 2, r),    // altimeter: 5 m noise, 100 ms latency
+                new SensorChannel(0.01, 0.002, 0, r), // accelerometer x
+                new SensorChannel(0.01, 0.002, 0, r), // accelerometer y
+                new SensorChannel(0.05, 0.0, 0, r),   // gyro (deg/s)
+                new SensorChannel(0.2, 0.0, 0, r),    // attitude (deg)
+                new SensorChannel(0.5, 0.0, 1, r),    // velocity x: 0.5 m/s noise, 50 ms latency
+                new SensorChannel(0.5, 0.0, 1, r)     // velocity y
+        );
+    }
+
+    /**
+     * Samples every sensor from the true spacecraft state of this tick.
+     *
+     * @param sc The (true) spacecraft.
+     */
+    public void sample(Spacecraft sc) {
+        double theta = Math.toRadians(sc.angle);
+        double cos = Math.cos(theta), sin = Math.sin(theta);
+        // World acceleration rotated into the body frame.
+        double fbx = cos * sc.ax + sin * sc.ay;
+        double fby = -sin * sc.ax + cos * sc.ay;
+
+        altitude = altimeter.sample(sc.altitude);
+        bodyAccelX = accelX.sample(fbx);
+        bodyAccelY = accelY.sample(fby);
+        rate = gyro.sample(sc.angularVelocity);
+        angle = attitude.sample(sc.angle);
+        horizontalSpeed = velocityX.sample(sc.vx);
+        verticalSpeed = velocityY.sample(sc.vy);
+    }
+
+    /**
+     * Returns the error model of every channel (sigma, bias, latency in ticks), in constructor order.
+     * Everything that shapes the measurements except the noise seed.
+     *
+     * @return 21 values.
+     */
+    public double[] getConfiguration() {
+        SensorChannel[] channels = {altimeter, accelX, accelY, gyro, attitude, velocityX, velocityY};
+        double[] c = new double[3 * channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            c[3 * i] = channels[i].getSigma();
+            c[3 * i + 1] = channels[i].getBias();
+            c[3 * i + 2] = channels[i].getLatencyTicks();
+        }
+        return c;
+    }
+
+    /** Clears the latency buffers of all sensors. */
+    public void reset() {
+        altimeter.reset();
+        accelX.reset();
+        accelY.reset();
+        gyro.reset();
+        attitude.reset();
+        velocityX.reset();
+        velocityY.reset();
+    }
+
+    // Latest measurements.
+    public double getAltitude() { return altitude; }
+    public double getBodyAccelX() { return bodyAccelX; }
+    public double getBodyAccelY() { return bodyAccelY; }
+    public double getRate() { return rate; }
+    public double getAngle() { return angle; }
+    public double getHorizontalSpeed() { return horizontalSpeed; }
+    public double getVerticalSpeed() { return verticalSpeed; }
+
+    // Noise levels (used by the estimator).
+    public SensorChannel getAltimeter() { return altimeter; }
+    public SensorChannel getAccelX() { return accelX; }
+    public SensorChannel getGyro() { return gyro; }
+    public SensorChannel getAttitude() { return attitude; }
+    public SensorChannel getVelocityX() { return velocityX; }
+    public SensorChannel getVelocityY() { return velocityY; }
+}
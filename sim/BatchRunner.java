@@ -0,0 +1,258 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import archive.TrajectoryArchiveWriter;
+import archive.TrajectoryRecorder;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+import stats.OutcomeStats;
+
+/**
+ * BatchRunner.java
+ *
+ * Flies many scenarios in parallel (batch runs, Monte Carlo dispersions, gain tuning sweeps).
+ * Before a scenario is simulated its key is looked up in the ResultCache (if one is configured);
+ * new results are stored there, so repeated scenarios cost a file read instead of a flight.
+ *
+ * If a trajectory archive is set, runAll() flies every scenario (the cache is still filled) and
+ * streams each trajectory into the archive as soon as its run completes.
+ *
+ * For campaigns too large to keep every result, monteCarloStats() streams the outcomes into one
+ * OutcomeStats per worker thread and merges them at the end.
+ *
+ * Command line (Monte Carlo around the default scenario):
+ *   java sim.BatchRunner &lt;runs&gt; [seed] [cache-dir|-] [archive-file]
+ *   java sim.BatchRunner --stream &lt;runs&gt; [seed]
+ */
+public class BatchRunner implements AutoCloseable {
+    // Runs per Monte Carlo chunk in monteCarloStats(); each chunk has its own dispersion seed.
+    private static final int STREAM_CHUNK = 1024;
+
+    private final ResultCache cache;
+    private final int threads;
+    private final ExecutorService pool;
+    private TrajectoryArchiveWriter archive;
+    private final AtomicLong nextRunId = new AtomicLong();
+    // One reusable recorder per worker thread.
+    private final ThreadLocal<TrajectoryRecorder> recorders = ThreadLocal.withInitial(TrajectoryRecorder::new);
+
+    /**
+     * @param cache   Result cache to consult and fill, or null for no caching.
+     * @param threads Number of worker threads.
+     */
+    public BatchRunner(ResultCache cache, int threads) {
+        this.cache = cache;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "batch-runner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs one scenario, using the cache if possible.
+     *
+     * @param scenario The scenario.
+     * @return Its result.
+     */
+    public RunResult run(Scenario scenario) {
+        if (cache == null) {
+            return scenario.run();
+        }
+        String key = scenario.key();
+        RunResult result = cache.get(key);
+        if (result == null) {
+            result = scenario.run();
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Flies one scenario and appends its trajectory to the archive.
+     *
+     * @param scenario The scenario.
+     * @param runId    Id of the run in the archive.
+     * @return Its result.
+     */
+    private RunResult runArchived(Scenario scenario, long runId) {
+        TrajectoryRecorder recorder = recorders.get();
+        recorder.clear();
+        RunResult result = scenario.run(recorder);
+        try {
+            archive.append(runId, recorder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (cache != null) {
+            cache.put(scenario.key(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Runs all scenarios in parallel and waits for them.
+     * With an archive, the scenarios get consecutive run ids (continuing across calls).
+     *
+     * @param scenarios The scenarios.
+     * @return The results, in the same order.
+     */
+    public List<RunResult> runAll(List<Scenario> scenarios) {
+        List<Future<RunResult>> futures = new ArrayList<>();
+        long firstId = nextRunId.getAndAdd(scenarios.size());
+        for (int i = 0; i < scenarios.size(); i++) {
+            Scenario s = scenarios.get(i);
+            long runId = firstId + i;
+            futures.add(pool.submit(() -> archive != null ? runArchived(s, runId) : run(s)));
+        }
+        List<RunResult> results = new ArrayList<>();
+        try {
+            for (Future<RunResult> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch runs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch run failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Creates Monte Carlo scenarios by dispersing the initial conditions of a base scenario.
+     *
+     * @param base The nominal scenario.
+     * @param runs Number of scenarios.
+     * @param seed Seed of the dispersion (the same seed gives the same scenarios).
+     * @return The scenarios.
+     */
+    public static List<Scenario> monteCarlo(Scenario base, int runs, long seed) {
+        Random r = new Random(seed);
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            scenarios.add(base.dispersed(r, 100, 5, 2));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Flies a Monte Carlo campaign around a base scenario and returns only its summary, so the
+     * memory used does not grow with the number of runs. Bypasses the cache and the archive.
+     * Each worker flies whole chunks of runs with one reused simulator and fills its own
+     * OutcomeStats; the per-worker statistics are merged in a fixed order when all are done.
+     * Each chunk disperses from its own seed, so the scenarios flown do not depend on the number
+     * of threads (they differ from monteCarlo() with the same seed).
+     *
+     * @param base The nominal scenario.
+     * @param runs Number of runs.
+     * @param seed Seed of the dispersion.
+     * @return The merged statistics.
+     */
+    public OutcomeStats monteCarloStats(Scenario base, long runs, long seed) {
+        long chunks = (runs + STREAM_CHUNK - 1) / STREAM_CHUNK;
+        List<Future<OutcomeStats>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            futures.add(pool.submit(() -> {
+                OutcomeStats stats = new OutcomeStats();
+                FlightSimulator sim = new FlightSimulator(new Spacecraft());
+                LandingPIDController pid = LandingPIDController.fromGains(Scenario.DEFAULT_GAINS);
+                for (long c = first; c < chunks; c += threads) {
+                    Random r = new Random(seed * 0x9E3779B97F4A7C15L + c);
+                    long n = Math.min(STREAM_CHUNK, runs - c * STREAM_CHUNK);
+                    for (long i = 0; i < n; i++) {
+                        Scenario s = base.dispersed(r, 100, 5, 2);
+                        s.prepare(sim, pid);
+                        stats.add(Scenario.fly(sim, s.maxTime, Math.abs(sim.getSpacecraft().angle), 0, null));
+                    }
+                }
+                return stats;
+            }));
+        }
+        OutcomeStats total = new OutcomeStats();
+        try {
+            for (Future<OutcomeStats> f : futures) {
+                total.merge(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch runs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch run failed", e.getCause());
+        }
+        return total;
+    }
+
+    public ResultCache getCache() { return cache; }
+    public TrajectoryArchiveWriter getArchive() { return archive; }
+    public void setArchive(TrajectoryArchiveWriter archive) { this.archive = archive; }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || (args[0].equals("--stream") && args.length < 2)) {
+            System.err.println("Usage: java sim.BatchRunner <runs> [seed] [cache-dir|-] [archive-file]");
+            System.err.println("       java sim.BatchRunner --stream <runs> [seed]");
+            System.exit(2);
+        }
+        if (args[0].equals("--stream")) {
+            long runs = Long.parseLong(args[1]);
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+            long start = System.nanoTime();
+            OutcomeStats stats;
+            try (BatchRunner runner = new BatchRunner(null, Runtime.getRuntime().availableProcessors())) {
+                stats = runner.monteCarloStats(Scenario.defaults(), runs, seed);
+            }
+            System.out.printf("%d runs in %.2f s%n", runs, (System.nanoTime() - start) / 1e9);
+            System.out.print(stats);
+            return;
+        }
+        int runs = Integer.parseInt(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        ResultCache cache = args.length > 2 && !args[2].equals("-")
+                ? new ResultCache(Paths.get(args[2]), 256L << 20) : null;
+        TrajectoryArchiveWriter archive = args.length > 3 ? new TrajectoryArchiveWriter(Paths.get(args[3])) : null;
+
+        List<Scenario> scenarios = monteCarlo(Scenario.defaults(), runs, seed);
+        long start = System.nanoTime();
+        List<RunResult> results;
+        try (BatchRunner runner = new BatchRunner(cache, Runtime.getRuntime().availableProcessors())) {
+            runner.setArchive(archive);
+            results = runner.runAll(scenarios);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        OutcomeStats stats = new OutcomeStats();
+        for (RunResult r : results) {
+            stats.add(r);
+        }
+        System.out.printf("%d runs in %.2f s%n", runs, seconds);
+        System.out.print(stats);
+        if (cache != null) {
+            System.out.printf("cache: %d hits, %d misses, %d bytes%n",
+                    cache.getHits(), cache.getMisses(), cache.getTotalBytes());
+        }
+        if (archive != null) {
+            long raw = archive.getRawBytes();
+            long written = archive.getWrittenBytes();
+            archive.close();
+            System.out.printf("archive: %d bytes (%.1fx smaller than %d raw bytes)%n",
+                    written, (double) raw / written, raw);
+        }
+    }
+}
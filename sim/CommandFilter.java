@@ -0,0 +1,19 @@
+package sim;
+
+import java.util.Map;
+import models.Spacecraft;
+
+/**
+ * CommandFilter.java
+ *
+ * Changes the engine commands after the flight controller has computed them and before the
+ * physics step, e.g. to script a what-if branch or to inject an engine failure.
+ */
+public interface CommandFilter {
+
+    /**
+     * @param sc           The spacecraft about to be updated.
+     * @param engineThrust The commands of this tick; modify in place.
+     */
+    void apply(Spacecraft sc, Map<String, Double> engineThrust);
+}
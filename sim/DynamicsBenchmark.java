@@ -0,0 +1,84 @@
+package sim;
+
+import java.util.HashMap;
+import java.util.Map;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+import models.Spacecraft6DOF;
+
+/**
+ * DynamicsBenchmark.java
+ *
+ * Compares the 6-DOF model with the planar model.
+ * First both are flown side by side by the default PID controller from the same initial state;
+ * since the 6-DOF defaults reproduce the planar model in the plane, the trajectories must agree.
+ * Then the recorded command sequence is replayed on both models to time one physics step.
+ *
+ * Command line:
+ *   java sim.DynamicsBenchmark [ticks] [repeats]
+ */
+public class DynamicsBenchmark {
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // --- Side by side flight ---
+        Spacecraft planar = new Spacecraft();
+        Spacecraft6DOF full = new Spacecraft6DOF();
+        planar.vx = full.velocity[0] = 40;
+        planar.vy = full.velocity[1] = 15;
+        planar.angle = 3;
+        full.setPlanarAngle(3);
+        LandingPIDController pidPlanar = LandingPIDController.fromGains(Scenario.DEFAULT_GAINS);
+        LandingPIDController pidFull = LandingPIDController.fromGains(Scenario.DEFAULT_GAINS);
+        Map<String, Double> cmdPlanar = new HashMap<>();
+        Map<String, Double> cmdFull = new HashMap<>();
+        double[][] commands = new double[ticks][SpacecraftConstants.ENGINES.length];
+        double maxPos = 0, maxAngle = 0;
+        for (int i = 0; i < ticks; i++) {
+            pidPlanar.computeCommands(planar.getAltitude(), planar.getVerticalSpeed(), planar.x,
+                    planar.getHorizontalSpeed(), planar.getAngle(), planar.dt, cmdPlanar);
+            pidFull.computeCommands(full.getAltitude(), full.getVerticalSpeed(), full.getX(),
+                    full.getHorizontalSpeed(), full.getAngle(), full.dt, cmdFull);
+            for (int e = 0; e < commands[i].length; e++) {
+                commands[i][e] = cmdPlanar.getOrDefault(SpacecraftConstants.ENGINES[e], 0.0);
+            }
+            planar.update(cmdPlanar);
+            full.update(cmdFull);
+            maxPos = Math.max(maxPos, Math.max(Math.abs(planar.x - full.position[0]),
+                    Math.abs(planar.y - full.position[1])));
+            maxAngle = Math.max(maxAngle, Math.abs(planar.angle - full.getAngle()));
+        }
+        System.out.printf("in-plane agreement over %d ticks: max position difference %.3g m, max angle difference %.3g deg, out of plane %.3g m%n",
+                ticks, maxPos, maxAngle, Math.abs(full.position[2]));
+
+        // --- Step cost ---
+        double best2d = Double.MAX_VALUE, best6 = Double.MAX_VALUE;
+        Map<String, Double> map = new HashMap<>();
+        for (String eng : SpacecraftConstants.ENGINES) {
+            map.put(eng, 0.0);
+        }
+        for (int r = 0; r < repeats; r++) {
+            Spacecraft p = new Spacecraft();
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                double[] c = commands[i];
+                for (int e = 0; e < c.length; e++) {
+                    map.put(SpacecraftConstants.ENGINES[e], c[e]);
+                }
+                p.update(map);
+            }
+            best2d = Math.min(best2d, (System.nanoTime() - start) / (double) ticks);
+
+            Spacecraft6DOF s = new Spacecraft6DOF();
+            start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                s.update(commands[i]);
+            }
+            best6 = Math.min(best6, (System.nanoTime() - start) / (double) ticks);
+        }
+        System.out.printf("step cost: planar %.1f ns, 6-DOF %.1f ns (%.2fx)%n", best2d, best6, best6 / best2d);
+    }
+}
@@ -0,0 +1,458 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import constants.SpacecraftConstants;
+import controllers.FlightController;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+
+/**
+ * FaultCampaign.java
+ *
+ * Enumerates engine failures of a scenario and flies each case headlessly with the scenario's
+ * controller: every combination of failed engines (up to a maximum count), for each fault type
+ * (stuck off, stuck on at full thrust, degraded thrust), injected at several flight times.
+ * The result is a recoverable/unrecoverable matrix.
+ *
+ * The nominal flight is flown once and checkpointed at each injection time (see
+ * SimulationSnapshot), so the cases only fly from the injection on; when the controller cannot be
+ * checkpointed (e.g. the EKF variant) the cases are flown from the start.
+ *
+ * Recovery is judged against the nominal flight (nearNominal): a faulted flight is recovered if
+ * it lands safely, touches down within MISS_TOLERANCE (200 m) of the nominal touchdown point and
+ * no more than SPEED_MARGIN (5 m/s) faster than the nominal touchdown, i.e. if the controller
+ * still delivers practically the nominal landing. Touchdown speed alone says little in this
+ * model: without gravity, a lander with every engine off coasts in at its entry speed and lands
+ * "safely" wherever its drift takes it.
+ *
+ * Dominance pruning (on by default): at the same injection time, failing a subset of engines is
+ * considered milder than failing a superset, and a degraded engine milder than a stuck-off one. A
+ * case is not flown if a more severe case was recovered (it is then recovered too), or if a milder
+ * case was not (it is then not recovered either). The cases are flown in parallel waves,
+ * alternating between the most and the fewest failed engines, so both rules prune early. Pruned
+ * cases are reported as inferred. The ordering is an assumption about the controller, not a law
+ * (opposite engines stuck on partly cancel, for instance), and it holds better the tighter the
+ * criterion: on the default sweep (vy0 = 100, 6132 cases) 153 cases are flown and 10 inferred
+ * verdicts are wrong; at vy0 = 140, 110 are wrong. With a looser criterion (1 km, 10 m/s) about
+ * 1000 would be. A full sweep (setPruning(false)) flies every case, and verification mode flies
+ * both and lists the inferred verdicts that were wrong.
+ *
+ * Command line (base scenario: default, with the given initial vertical speed):
+ *   java sim.FaultCampaign [vy0] [max-failures] [time,time,...] [--full | --verify]
+ */
+public class FaultCampaign implements AutoCloseable {
+    private static final int ENGINES = SpacecraftConstants.ENGINES.length;
+
+    /** How a failed engine behaves. */
+    public enum FaultType {
+        DEGRADED("D"), STUCK_OFF("O"), STUCK_ON("S");
+
+        public final String code;
+
+        FaultType(String code) {
+            this.code = code;
+        }
+    }
+
+    /** One fault case: a set of engines failing in the same way from a given time on. */
+    public static final class FaultCase implements CommandFilter {
+        public final FaultType type;
+        public final int engines;      // bit i = SpacecraftConstants.ENGINES[i]
+        public final int timeIndex;
+        public final double time;
+        private final double degradedFactor;
+
+        FaultCase(FaultType type, int engines, int timeIndex, double time, double degradedFactor) {
+            this.type = type;
+            this.engines = engines;
+            this.timeIndex = timeIndex;
+            this.time = time;
+            this.degradedFactor = degradedFactor;
+        }
+
+        @Override
+        public void apply(Spacecraft sc, Map<String, Double> engineThrust) {
+            if (sc.getTime() < time) {
+                return;
+            }
+            for (int e = 0; e < ENGINES; e++) {
+                if ((engines & (1 << e)) == 0) {
+                    continue;
+                }
+                String eng = SpacecraftConstants.ENGINES[e];
+                switch (type) {
+                    case STUCK_OFF:
+                        engineThrust.put(eng, 0.0);
+                        break;
+                    case STUCK_ON:
+                        engineThrust.put(eng, e == 0 ? SpacecraftConstants.MAIN_ENG_F : SpacecraftConstants.SECOND_ENG_F);
+                        break;
+                    default:
+                        Double cmd = engineThrust.get(eng);
+                        engineThrust.put(eng, cmd != null ? cmd * degradedFactor : 0.0);
+                        break;
+                }
+            }
+        }
+
+        public int failedCount() {
+            return Integer.bitCount(engines);
+        }
+
+        // True if this case is at most as severe as the other one.
+        boolean milderOrEqual(FaultCase other) {
+            if (timeIndex != other.timeIndex || (engines & other.engines) != engines) {
+                return false;
+            }
+            return type == other.type || (type == FaultType.DEGRADED && other.type == FaultType.STUCK_OFF);
+        }
+
+        // Identifies the case within one campaign.
+        int key() {
+            return (timeIndex * FaultType.values().length + type.ordinal()) << ENGINES | engines;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(type.name()).append(' ');
+            for (int e = 0; e < ENGINES; e++) {
+                if ((engines & (1 << e)) != 0) {
+                    sb.append(SpacecraftConstants.ENGINES[e]).append(',');
+                }
+            }
+            sb.setLength(sb.length() - 1);
+            return sb.append(String.format(" @%.0fs", time)).toString();
+        }
+    }
+
+    /** Outcome of one case. */
+    public static final class Outcome {
+        public final FaultCase fault;
+        public final boolean recoverable;
+        public final RunResult result;   // null when inferred by dominance
+        public final FaultCase inferredFrom;
+
+        Outcome(FaultCase fault, boolean recoverable, RunResult result, FaultCase inferredFrom) {
+            this.fault = fault;
+            this.recoverable = recoverable;
+            this.result = result;
+            this.inferredFrom = inferredFrom;
+        }
+
+        public boolean isInferred() {
+            return result == null;
+        }
+    }
+
+    // Default recovery criterion (see nearNominal).
+    public static final double MISS_TOLERANCE = 200;   // m from the nominal touchdown point
+    public static final double SPEED_MARGIN = 5;       // m/s above the nominal touchdown speed
+
+    private final Scenario scenario;
+    private final double[] times;
+    private final int maxFailures;
+    private final double degradedFactor;
+    private final BiPredicate<RunResult, RunResult> recoverable;
+    private final ExecutorService pool;
+    private boolean prune = true;
+
+    /**
+     * @param scenario       The nominal flight (controller and initial state).
+     * @param times          Injection times (s).
+     * @param maxFailures    Largest number of simultaneously failed engines (1..9).
+     * @param degradedFactor Fraction of the commanded thrust a degraded engine delivers.
+     * @param recoverable    Decides whether a faulted flight (second argument) counts as recovered,
+     *                       given the nominal flight (first argument); usually nearNominal.
+     * @param threads        Number of worker threads.
+     */
+    public FaultCampaign(Scenario scenario, double[] times, int maxFailures, double degradedFactor,
+                         BiPredicate<RunResult, RunResult> recoverable, int threads) {
+        this.scenario = scenario;
+        this.times = times.clone();
+        this.maxFailures = Math.max(1, Math.min(ENGINES, maxFailures));
+        this.degradedFactor = degradedFactor;
+        this.recoverable = recoverable;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fault-campaign");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * The default recovery criterion: the faulted flight lands safely, within MISS_TOLERANCE of the
+     * nominal touchdown point and no more than SPEED_MARGIN faster than the nominal touchdown.
+     *
+     * @param nominal The fault-free flight.
+     * @param faulted The flight with the fault.
+     * @return True if the faulted flight counts as recovered.
+     */
+    public static boolean nearNominal(RunResult nominal, RunResult faulted) {
+        return faulted.isSafe()
+                && Math.abs(faulted.lateralMiss - nominal.lateralMiss) <= MISS_TOLERANCE
+                && faulted.touchdownSpeed <= nominal.touchdownSpeed + SPEED_MARGIN;
+    }
+
+    /** Enables or disables dominance pruning (see the class comment); on by default. */
+    public void setPruning(boolean prune) {
+        this.prune = prune;
+    }
+
+    // Checkpoint of the nominal flight at one injection time.
+    private static final class Checkpoint {
+        final SimulationSnapshot snapshot;   // null if the controller cannot be checkpointed
+        final double maxTilt;
+        final long ticks;
+
+        Checkpoint(SimulationSnapshot snapshot, double maxTilt, long ticks) {
+            this.snapshot = snapshot;
+            this.maxTilt = maxTilt;
+            this.ticks = ticks;
+        }
+    }
+
+    /**
+     * Flies the nominal flight and all fault cases.
+     *
+     * @param outcomes Receives one outcome per case, flown or inferred.
+     * @return The result of the nominal (fault-free) flight.
+     */
+    public RunResult run(List<Outcome> outcomes) {
+        // Nominal flight, checkpointed at the injection times it reaches.
+        FlightSimulator nominal = scenario.createSimulator();
+        Spacecraft sc = nominal.getSpacecraft();
+        FlightController controller = nominal.getController();
+        boolean capturable = controller == null || controller instanceof LandingPIDController;
+        Checkpoint[] checkpoints = new Checkpoint[times.length];
+        double maxTilt = Math.abs(sc.angle);
+        long ticks = 0;
+        for (int i = 0; i < times.length; i++) {
+            while (!sc.isLanded() && sc.getTime() < times[i]) {
+                nominal.step();
+                maxTilt = Math.max(maxTilt, Math.abs(sc.angle));
+                ticks++;
+            }
+            if (!sc.isLanded()) {
+                checkpoints[i] = new Checkpoint(capturable
+                        ? SimulationSnapshot.capture(sc, (LandingPIDController) controller, nominal.getEngineThrust())
+                        : null, maxTilt, ticks);
+            }
+        }
+        RunResult nominalResult = Scenario.fly(nominal, scenario.maxTime, maxTilt, ticks, null);
+
+        // Enumerate the cases by wave: failure count in the order max, 1, max-1, 2, ...; per count
+        // the stuck cases before the degraded ones (so a recovered stuck-off case prunes them).
+        for (int count : waveOrder()) {
+            for (FaultType[] types : new FaultType[][]{{FaultType.STUCK_OFF, FaultType.STUCK_ON}, {FaultType.DEGRADED}}) {
+                List<FaultCase> wave = new ArrayList<>();
+                for (int t = 0; t < times.length; t++) {
+                    if (checkpoints[t] == null) {
+                        continue;
+                    }
+                    for (int mask = 1; mask < (1 << ENGINES); mask++) {
+                        if (Integer.bitCount(mask) != count) {
+                            continue;
+                        }
+                        for (FaultType type : types) {
+                            wave.add(new FaultCase(type, mask, t, times[t], degradedFactor));
+                        }
+                    }
+                }
+                runWave(wave, checkpoints, nominalResult, outcomes);
+            }
+        }
+        return nominalResult;
+    }
+
+    private int[] waveOrder() {
+        int[] order = new int[maxFailures];
+        int lo = 1, hi = maxFailures;
+        for (int i = 0; i < maxFailures; i++) {
+            order[i] = (i % 2 == 0) ? hi-- : lo++;
+        }
+        return order;
+    }
+
+    private void runWave(List<FaultCase> wave, Checkpoint[] checkpoints, RunResult nominal, List<Outcome> outcomes) {
+        List<FaultCase> flown = new ArrayList<>();
+        List<Future<RunResult>> futures = new ArrayList<>();
+        for (FaultCase c : wave) {
+            Outcome inferred = prune ? infer(c, outcomes) : null;
+            if (inferred != null) {
+                outcomes.add(inferred);
+                continue;
+            }
+            Checkpoint cp = checkpoints[c.timeIndex];
+            flown.add(c);
+            futures.add(pool.submit(() -> fly(c, cp)));
+        }
+        try {
+            for (int i = 0; i < flown.size(); i++) {
+                RunResult r = futures.get(i).get();
+                outcomes.add(new Outcome(flown.get(i), recoverable.test(nominal, r), r, null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for fault cases", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fault case failed", e.getCause());
+        }
+    }
+
+    // Dominance: a recovered more severe case or an unrecovered milder case decides this one.
+    private static Outcome infer(FaultCase c, List<Outcome> outcomes) {
+        for (Outcome o : outcomes) {
+            if (o.recoverable && c.milderOrEqual(o.fault)) {
+                return new Outcome(c, true, null, o.fault);
+            }
+            if (!o.recoverable && o.fault.milderOrEqual(c)) {
+                return new Outcome(c, false, null, o.fault);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares a pruned campaign with a full one of the same configuration.
+     *
+     * @param pruned Outcomes of the pruned campaign.
+     * @param full   Outcomes of the full campaign (every case flown).
+     * @return The inferred outcomes of the pruned campaign whose verdict differs from the flown one.
+     */
+    public static List<Outcome> wrongInferences(List<Outcome> pruned, List<Outcome> full) {
+        Map<Integer, Outcome> flown = new HashMap<>();
+        for (Outcome o : full) {
+            flown.put(o.fault.key(), o);
+        }
+        List<Outcome> wrong = new ArrayList<>();
+        for (Outcome o : pruned) {
+            Outcome f = flown.get(o.fault.key());
+            if (o.isInferred() && f != null && f.recoverable != o.recoverable) {
+                wrong.add(o);
+            }
+        }
+        return wrong;
+    }
+
+    private RunResult fly(FaultCase c, Checkpoint cp) {
+        if (cp.snapshot != null) {
+            FlightSimulator sim = cp.snapshot.restore(true);
+            sim.setFilter(c);
+            return Scenario.fly(sim, scenario.maxTime, cp.maxTilt, cp.ticks, null);
+        }
+        FlightSimulator sim = scenario.createSimulator();
+        sim.setFilter(c);
+        return Scenario.fly(sim, scenario.maxTime, Math.abs(sim.getSpacecraft().angle), 0, null);
+    }
+
+    /**
+     * Formats the single-engine matrix (engine x fault type and time) and a summary per number
+     * of failed engines. Upper case: flown; lower case: inferred. R = recoverable, X = not.
+     */
+    public static String matrix(List<Outcome> outcomes, double[] times) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-6s", "engine"));
+        for (FaultType type : FaultType.values()) {
+            for (double t : times) {
+                sb.append(String.format(" %5s", type.code + (int) t));
+            }
+        }
+        sb.append('\n');
+        for (int e = 0; e < ENGINES; e++) {
+            sb.append(String.format("%-6s", SpacecraftConstants.ENGINES[e]));
+            for (FaultType type : FaultType.values()) {
+                for (int t = 0; t < times.length; t++) {
+                    Outcome o = find(outcomes, type, 1 << e, t);
+                    String cell = o == null ? "-" : (o.recoverable ? "R" : "X");
+                    sb.append(String.format(" %5s", o != null && o.isInferred() ? cell.toLowerCase() : cell));
+                }
+            }
+            sb.append('\n');
+        }
+        sb.append("\nfailed  type        recoverable / cases (flown)\n");
+        int maxCount = 0;
+        for (Outcome o : outcomes) {
+            maxCount = Math.max(maxCount, o.fault.failedCount());
+        }
+        for (int count = 1; count <= maxCount; count++) {
+            for (FaultType type : FaultType.values()) {
+                int total = 0, ok = 0, flown = 0;
+                for (Outcome o : outcomes) {
+                    if (o.fault.type == type && o.fault.failedCount() == count) {
+                        total++;
+                        if (o.recoverable) ok++;
+                        if (!o.isInferred()) flown++;
+                    }
+                }
+                sb.append(String.format("%6d  %-10s %6d / %-6d (%d)%n", count, type, ok, total, flown));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Outcome find(List<Outcome> outcomes, FaultType type, int engines, int timeIndex) {
+        for (Outcome o : outcomes) {
+            if (o.fault.type == type && o.fault.engines == engines && o.fault.timeIndex == timeIndex) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public static void main(String[] args) {
+        List<String> flags = new ArrayList<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? flags : positional).add(arg);
+        }
+        double vy0 = positional.size() > 0 ? Double.parseDouble(positional.get(0)) : 100;
+        int maxFailures = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : ENGINES;
+        double[] times = positional.size() > 2
+                ? Arrays.stream(positional.get(2).split(",")).mapToDouble(Double::parseDouble).toArray()
+                : new double[]{0, 50, 100, 200};
+        boolean full = flags.contains("--full");
+        boolean verify = flags.contains("--verify");
+
+        Scenario base = Scenario.defaults().withInitialState(0, SpacecraftConstants.INITIAL_ALTITUDE, 0, vy0, 0);
+        List<Outcome> outcomes = new ArrayList<>();
+        List<Outcome> fullOutcomes = new ArrayList<>();
+        long start = System.nanoTime();
+        RunResult nominal;
+        try (FaultCampaign campaign = new FaultCampaign(base, times, maxFailures, 0.5, FaultCampaign::nearNominal,
+                Runtime.getRuntime().availableProcessors())) {
+            campaign.setPruning(!full);
+            nominal = campaign.run(outcomes);
+            if (verify && !full) {
+                campaign.setPruning(false);
+                campaign.run(fullOutcomes);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long flown = outcomes.stream().filter(o -> !o.isInferred()).count();
+        System.out.println("nominal: " + nominal);
+        System.out.print(matrix(outcomes, times));
+        System.out.printf("%d cases, %d flown, %d inferred by dominance, %.1f s%n",
+                outcomes.size(), flown, outcomes.size() - flown, seconds);
+        if (verify && !full) {
+            List<Outcome> wrong = wrongInferences(outcomes, fullOutcomes);
+            System.out.printf("verification: %d of %d inferred verdicts are wrong%n", wrong.size(), outcomes.size() - flown);
+            for (Outcome o : wrong) {
+                System.out.printf("  %s inferred %s from %s%n", o.fault, o.recoverable ? "R" : "X", o.inferredFrom);
+            }
+        }
+    }
+}
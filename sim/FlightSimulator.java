@@ -0,0 +1,81 @@
+package sim;
+
+import java.util.HashMap;
+import java.util.Map;
+import constants.SpacecraftConstants;
+import controllers.FlightController;
+import models.Spacecraft;
+
+/**
+ * FlightSimulator.java
+ *
+ * Runs one spacecraft without any user interface.
+ * A step is: the flight controller (if any) computes the engine commands, the command filter
+ * (if any) adjusts them, and the spacecraft is updated. The same step is used by the Swing
+ * display (SpacecraftPanel) and by headless tools such as the what-if forker.
+ */
+public class FlightSimulator {
+    private final Spacecraft spacecraft;
+    private final Map<String, Double> engineThrust;
+    private FlightController controller;
+    private CommandFilter filter;
+
+    /**
+     * @param spacecraft   The spacecraft to fly.
+     * @param engineThrust The engine command map (also written by the controller).
+     */
+    public FlightSimulator(Spacecraft spacecraft, Map<String, Double> engineThrust) {
+        this.spacecraft = spacecraft;
+        this.engineThrust = engineThrust;
+    }
+
+    /**
+     * Creates a simulator with all engines initially off.
+     *
+     * @param spacecraft The spacecraft to fly.
+     */
+    public FlightSimulator(Spacecraft spacecraft) {
+        this(spacecraft, new HashMap<>());
+        for (String eng : SpacecraftConstants.ENGINES) {
+            engineThrust.put(eng, 0.0);
+        }
+    }
+
+    /**
+     * Advances the simulation by one time step. Does nothing once the spacecraft has landed.
+     */
+    public void step() {
+        if (spacecraft.isLanded()) {
+            return;
+        }
+        if (controller != null) {
+            controller.computeCommands(spacecraft.getAltitude(), spacecraft.getVerticalSpeed(),
+                    spacecraft.x, spacecraft.getHorizontalSpeed(), spacecraft.getAngle(),
+                    spacecraft.dt, engineThrust);
+        }
+        if (filter != null) {
+            filter.apply(spacecraft, engineThrust);
+        }
+        spacecraft.update(engineThrust);
+    }
+
+    /**
+     * Steps until the spacecraft lands or the flight time reaches maxTime.
+     *
+     * @param maxTime Maximum flight time (s).
+     * @return True if the spacecraft landed.
+     */
+    public boolean runUntilLanded(double maxTime) {
+        while (!spacecraft.isLanded() && spacecraft.getTime() < maxTime) {
+            step();
+        }
+        return spacecraft.isLanded();
+    }
+
+    public Spacecraft getSpacecraft() { return spacecraft; }
+    public Map<String, Double> getEngineThrust() { return engineThrust; }
+    public FlightController getController() { return controller; }
+    public void setController(FlightController controller) { this.controller = controller; }
+    public CommandFilter getFilter() { return filter; }
+    public void setFilter(CommandFilter filter) { this.filter = filter; }
+}
@@ -0,0 +1,397 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import terrain.TerrainMap;
+
+/**
+ * GainGradient.java
+ *
+ * Forward-mode automatic differentiation of a PID descent: flies a scenario once and returns the
+ * touchdown speed, the fuel used and the miss distance together with their exact derivatives with
+ * respect to all 15 LandingPIDController gains.
+ *
+ * Every state variable (position, speeds, angle, angular velocity, fuel, altitude, and the integral
+ * and previous error of the five PID loops) carries a tangent vector of 15 partial derivatives in a
+ * primitive array. Each tick runs the equations of LandingPIDController.update() and
+ * Spacecraft.update() on the values, in the same order so that the flight is bit-identical to
+ * Scenario.run(), and applies the chain rule to the tangents. Where the simulation branches (clamped
+ * commands, engines below the thrust threshold, the angular velocity snapped to zero, fuel running
+ * out) the derivative of the branch taken is used. The landing tick is part of the flight, so the
+ * derivatives are those of the simulated outcome for small gain changes that land on the same tick.
+ *
+ * One pass costs a few plain flights, against 16 (one-sided) or 30 (central) for finite differences,
+ * and has no step size to choose. Only PID scenarios on flat terrain are supported.
+ * The vehicle and controller constants are shared with Spacecraft and LandingPIDController, and
+ * GoldenRegression checks that every reference case flies to exactly the same outcome here.
+ *
+ * Command line (sensitivity report around the default gains, optionally checked against central
+ * finite differences):
+ *   java sim.GainGradient [vy0] [--check]
+ */
+public final class GainGradient {
+    public static final int GAINS = 15;
+    public static final String[] GAIN_NAMES = {
+            "kpVp", "kiVp", "kdVp", "kpV", "kiV", "kdV", "kpHp", "kiHp", "kdHp",
+            "kpH", "kiH", "kdH", "kpA", "kiA", "kdA"
+    };
+    // PID loops, with the index of their first gain (3 * loop).
+    private static final int VERTICAL_POSITION = 0, VERTICAL_SPEED = 1,
+            HORIZONTAL_POSITION = 2, HORIZONTAL_SPEED = 3, ATTITUDE = 4;
+    private static final double DEG_TO_RAD = Math.PI / 180, RAD_TO_DEG = 180 / Math.PI;
+
+    // Secondary engines in the order Spacecraft.update() visits them in the simulator's command map,
+    // with their mounting and force direction.
+    private static final String[] SECONDARY_ORDER;
+    private static final double[] SECONDARY_MOUNT_Y;
+    private static final int[] SECONDARY_DIRECTION;
+    static {
+        Map<String, Double> commands = new HashMap<>();
+        for (String eng : SpacecraftConstants.ENGINES) {
+            commands.put(eng, 0.0);
+        }
+        commands.remove(SpacecraftConstants.MAIN_ENGINE);
+        SECONDARY_ORDER = commands.keySet().toArray(new String[0]);
+        SECONDARY_MOUNT_Y = new double[SECONDARY_ORDER.length];
+        SECONDARY_DIRECTION = new int[SECONDARY_ORDER.length];
+        for (int i = 0; i < SECONDARY_ORDER.length; i++) {
+            SECONDARY_MOUNT_Y[i] = SpacecraftConstants.engineMountY(SECONDARY_ORDER[i]);
+            SECONDARY_DIRECTION[i] = SpacecraftConstants.engineForceDirection(SECONDARY_ORDER[i]);
+        }
+    }
+
+    /** Outcome of a flight and its gradients with respect to the gains (in constructor order). */
+    public static final class Result {
+        public final boolean landed;
+        public final long ticks;
+        public final double touchdownSpeed;   // m/s (0 if not landed)
+        public final double fuelUsed;         // liters
+        public final double miss;             // |final x| (m)
+        private final double[] dTouchdownSpeed, dFuelUsed, dMiss;
+
+        Result(boolean landed, long ticks, double touchdownSpeed, double fuelUsed, double miss,
+               double[] dTouchdownSpeed, double[] dFuelUsed, double[] dMiss) {
+            this.landed = landed;
+            this.ticks = ticks;
+            this.touchdownSpeed = touchdownSpeed;
+            this.fuelUsed = fuelUsed;
+            this.miss = miss;
+            this.dTouchdownSpeed = dTouchdownSpeed;
+            this.dFuelUsed = dFuelUsed;
+            this.dMiss = dMiss;
+        }
+
+        // Gradients (copies, GAINS elements).
+        public double[] getTouchdownSpeedGradient() { return dTouchdownSpeed.clone(); }
+        public double[] getFuelUsedGradient() { return dFuelUsed.clone(); }
+        public double[] getMissGradient() { return dMiss.clone(); }
+    }
+
+    private final TerrainMap terrain = TerrainMap.flat();
+    private final double[] gains = new double[GAINS];
+    // Values and tangents of the spacecraft state.
+    private double x, y, vx, vy, angle, angularVelocity, fuel, altitude;
+    private final double[] dx = new double[GAINS], dy = new double[GAINS];
+    private final double[] dvx = new double[GAINS], dvy = new double[GAINS];
+    private final double[] dAngle = new double[GAINS], dAngularVelocity = new double[GAINS];
+    private final double[] dFuel = new double[GAINS], dAltitude = new double[GAINS];
+    // Values and tangents of the PID loops.
+    private final double[] integral = new double[5], previousError = new double[5];
+    private final double[][] dIntegral = new double[5][GAINS], dPreviousError = new double[5][GAINS];
+    // Tangents of intermediate values of a tick.
+    private final double[] dDesiredVertical = new double[GAINS], dDesiredHorizontal = new double[GAINS];
+    private final double[] dVertical = new double[GAINS], dHorizontal = new double[GAINS];
+    private final double[] dAttitudeError = new double[GAINS], dAttitude = new double[GAINS];
+
+    /**
+     * Flies a PID scenario and differentiates its outcome with respect to the gains.
+     *
+     * @param s The scenario (controller PID).
+     * @return The outcome and its gradients.
+     */
+    public Result evaluate(Scenario s) {
+        if (s.controller != Scenario.ControllerType.PID) {
+            throw new IllegalArgumentException("Gain gradients need a PID scenario, got " + s.controller);
+        }
+        double[] g = s.getGains();
+        System.arraycopy(g, 0, gains, 0, GAINS);
+        x = s.x0;
+        y = SpacecraftConstants.INITIAL_ALTITUDE - s.altitude0;
+        altitude = s.altitude0;
+        vx = s.vx0;
+        vy = s.vy0;
+        angle = s.angle0;
+        angularVelocity = 0;
+        fuel = s.fuel0;
+        double[][] tangents = {dx, dy, dvx, dvy, dAngle, dAngularVelocity, dFuel, dAltitude};
+        for (double[] d : tangents) {
+            Arrays.fill(d, 0);
+        }
+        for (int l = 0; l < 5; l++) {
+            integral[l] = 0;
+            previousError[l] = 0;
+            Arrays.fill(dIntegral[l], 0);
+            Arrays.fill(dPreviousError[l], 0);
+        }
+
+        double dt = s.dt;
+        double time = 0;
+        long ticks = 0;
+        boolean landed = false;
+        double touchdownSpeed = 0;
+        double[] dSpeed = new double[GAINS];
+        while (!landed && time < s.maxTime) {
+            step(dt);
+            time += dt;
+            ticks++;
+            if (altitude <= 0) {
+                // Touchdown (Spacecraft.touchdown()): the impact speed, with the state of this tick.
+                landed = true;
+                touchdownSpeed = Math.sqrt(vx * vx + vy * vy);
+                for (int j = 0; j < GAINS; j++) {
+                    dSpeed[j] = touchdownSpeed > 0 ? (vx * dvx[j] + vy * dvy[j]) / touchdownSpeed : 0;
+                }
+            }
+        }
+        double[] dFuelUsed = new double[GAINS], dMiss = new double[GAINS];
+        double sign = Math.signum(x);
+        for (int j = 0; j < GAINS; j++) {
+            dFuelUsed[j] = -dFuel[j];
+            dMiss[j] = sign * dx[j];
+        }
+        return new Result(landed, ticks, touchdownSpeed, s.fuel0 - fuel, Math.abs(x), dSpeed, dFuelUsed, dMiss);
+    }
+
+    // One tick: LandingPIDController.computeCommands() followed by Spacecraft.update().
+    private void step(double dt) {
+        // --- Controller (LandingPIDController.update) ---
+        double desiredVertical = -pid(VERTICAL_POSITION, 0, null, altitude, dAltitude, dt, dDesiredVertical);
+        negate(dDesiredVertical);
+        double desiredHorizontal = -pid(HORIZONTAL_POSITION, 0, null, x, dx, dt, dDesiredHorizontal);
+        negate(dDesiredHorizontal);
+        double vertical = pid(VERTICAL_SPEED, desiredVertical, dDesiredVertical, vy, dvy, dt, dVertical);
+        double horizontal = pid(HORIZONTAL_SPEED, desiredHorizontal, dDesiredHorizontal, vx, dvx, dt, dHorizontal);
+
+        // desiredAngle = -toDegrees(atan2(x, altitude + ALTITUDE_EPSILON)).
+        double b = altitude + LandingPIDController.ALTITUDE_EPSILON;
+        double desiredAngle = -Math.toDegrees(Math.atan2(x, b));
+        double r2 = x * x + b * b;
+        double attitudeError = desiredAngle - angle;
+        for (int j = 0; j < GAINS; j++) {
+            double dDesiredAngle = -RAD_TO_DEG * (b * dx[j] - x * dAltitude[j]) / r2;
+            dAttitudeError[j] = dDesiredAngle - dAngle[j];
+        }
+        double attitude = pid(ATTITUDE, 0, null, attitudeError, dAttitudeError, dt, dAttitude);
+        double combined = horizontal + attitude;
+        for (int j = 0; j < GAINS; j++) {
+            dHorizontal[j] += dAttitude[j];
+        }
+        // Clamped commands do not change with the gains.
+        double maxVertical = LandingPIDController.MAX_VERTICAL_COMMAND;
+        double maxHorizontal = LandingPIDController.MAX_HORIZONTAL_COMMAND;
+        if (vertical > maxVertical || vertical < -maxVertical) {
+            Arrays.fill(dVertical, 0);
+        }
+        if (combined > maxHorizontal || combined < -maxHorizontal) {
+            Arrays.fill(dHorizontal, 0);
+        }
+        vertical = Math.max(-maxVertical, Math.min(maxVertical, vertical));
+        combined = Math.max(-maxHorizontal, Math.min(maxHorizontal, combined));
+
+        // --- Physics (Spacecraft.update) ---
+        double netForceX = 0, netForceY = 0;
+        double netTorque = 0;
+        double totalFuelBurn = 0;
+        double mass = SpacecraftConstants.WEIGHT_EMP + fuel;
+        double theta = Math.toRadians(angle);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        // Tangent bookkeeping: the local x force, the torque and the burn are linear in the two
+        // commands, so only their coefficients are accumulated here.
+        double localForce = 0;
+        double forceFromVertical = 0, forceFromHorizontal = 0;
+        double torqueFromHorizontal = 0;
+        double burnFromVertical = 0, burnFromHorizontal = 0;
+
+        double mainT = vertical;
+        if (Math.abs(mainT) > SpacecraftConstants.MIN_THRUST && fuel > 0) {
+            double burnRate = SpacecraftConstants.MAIN_BURN * (Math.abs(mainT) / SpacecraftConstants.MAIN_ENG_F);
+            totalFuelBurn += burnRate * dt;
+            double fLocalX = -mainT;
+            double fLocalY = 0;
+            netForceX += fLocalX * cos - fLocalY * sin;
+            netForceY += fLocalX * sin + fLocalY * cos;
+            localForce += fLocalX;
+            forceFromVertical = -1;
+            burnFromVertical = SpacecraftConstants.MAIN_BURN * Math.signum(mainT) / SpacecraftConstants.MAIN_ENG_F * dt;
+        }
+        for (int i = 0; i < SECONDARY_ORDER.length; i++) {
+            double t = LandingPIDController.secondaryThrust(SECONDARY_ORDER[i], combined);
+            if (Math.abs(t) > SpacecraftConstants.MIN_THRUST && fuel > 0) {
+                double burnRate = SpacecraftConstants.SECOND_BURN * (Math.abs(t) / SpacecraftConstants.SECOND_ENG_F);
+                totalFuelBurn += burnRate * dt;
+                double rY = SECONDARY_MOUNT_Y[i];
+                // Left engines fire for a positive command and right engines for a negative one;
+                // either way the force is -combined.
+                double fLocalX = SECONDARY_DIRECTION[i] * t;
+                double fLocalY = 0;
+                netForceX += fLocalX * cos - fLocalY * sin;
+                netForceY += fLocalX * sin + fLocalY * cos;
+                netTorque += -rY * fLocalX;
+                localForce += fLocalX;
+                forceFromHorizontal += -1;
+                torqueFromHorizontal += rY;
+                burnFromHorizontal += SpacecraftConstants.SECOND_BURN * Math.signum(combined)
+                        / SpacecraftConstants.SECOND_ENG_F * dt;
+            }
+        }
+
+        double ax = netForceX / mass;
+        double ay = netForceY / mass;
+        vx += ax * dt;
+        vy += ay * dt;
+        x += vx * dt;
+        y += vy * dt;
+        altitude = SpacecraftConstants.INITIAL_ALTITUDE - y - terrain.heightAt(x, 0);
+
+        double angularAcc = netTorque / SpacecraftConstants.MOMENT_OF_INERTIA;
+        angularVelocity += angularAcc * dt;
+        angularVelocity *= SpacecraftConstants.ANGULAR_DAMPING;
+        boolean snapped = Math.abs(angularVelocity) < SpacecraftConstants.ANGULAR_REST_SPEED;
+        if (snapped) {
+            angularVelocity = 0;
+        }
+        angle += angularVelocity * dt;
+
+        boolean burning = totalFuelBurn > 0 && fuel > 0;
+        boolean emptied = false;
+        if (burning) {
+            fuel -= totalFuelBurn;
+            if (fuel < 0) {
+                fuel = 0;
+                emptied = true;
+            }
+        }
+
+        // --- Tangents of the physics, in the same order (all from the state before the tick) ---
+        for (int j = 0; j < GAINS; j++) {
+            double dTheta = dAngle[j] * DEG_TO_RAD;
+            double dLocal = forceFromVertical * dVertical[j] + forceFromHorizontal * dHorizontal[j];
+            double dForceX = dLocal * cos - localForce * sin * dTheta;
+            double dForceY = dLocal * sin + localForce * cos * dTheta;
+            double dMass = dFuel[j];
+            double dax = (dForceX - ax * dMass) / mass;
+            double day = (dForceY - ay * dMass) / mass;
+            dvx[j] += dax * dt;
+            dvy[j] += day * dt;
+            dx[j] += dvx[j] * dt;
+            dy[j] += dvy[j] * dt;
+            dAltitude[j] = -dy[j];
+
+            double dAngularAcc = torqueFromHorizontal * dHorizontal[j] / SpacecraftConstants.MOMENT_OF_INERTIA;
+            dAngularVelocity[j] = snapped ? 0 : (dAngularVelocity[j] + dAngularAcc * dt) * SpacecraftConstants.ANGULAR_DAMPING;
+            dAngle[j] += dAngularVelocity[j] * dt;
+
+            if (emptied) {
+                dFuel[j] = 0;
+            } else if (burning) {
+                dFuel[j] -= burnFromVertical * dVertical[j] + burnFromHorizontal * dHorizontal[j];
+            }
+        }
+    }
+
+    /**
+     * One PIDController.update() of a loop, with its tangent.
+     *
+     * @param loop      The loop (its gains start at 3 * loop).
+     * @param setpoint  Setpoint value.
+     * @param dSetpoint Setpoint tangent (null for a constant setpoint).
+     * @param measured  Measured value.
+     * @param dMeasured Measured tangent.
+     * @param dt        Time step.
+     * @param dOut      Receives the output tangent.
+     * @return The output.
+     */
+    private double pid(int loop, double setpoint, double[] dSetpoint, double measured, double[] dMeasured,
+                       double dt, double[] dOut) {
+        int k = 3 * loop;
+        double kp = gains[k], ki = gains[k + 1], kd = gains[k + 2];
+        double error = setpoint - measured;
+        integral[loop] += error * dt;
+        double derivative = (error - previousError[loop]) / dt;
+        previousError[loop] = error;
+        double[] dI = dIntegral[loop], dPrev = dPreviousError[loop];
+        for (int j = 0; j < GAINS; j++) {
+            double de = (dSetpoint != null ? dSetpoint[j] : 0) - dMeasured[j];
+            dI[j] += de * dt;
+            double dd = (de - dPrev[j]) / dt;
+            dPrev[j] = de;
+            dOut[j] = kp * de + ki * dI[j] + kd * dd;
+        }
+        // Direct dependence on the loop's own gains.
+        dOut[k] += error;
+        dOut[k + 1] += integral[loop];
+        dOut[k + 2] += derivative;
+        return kp * error + ki * integral[loop] + kd * derivative;
+    }
+
+    private static void negate(double[] d) {
+        for (int j = 0; j < d.length; j++) {
+            d[j] = -d[j];
+        }
+    }
+
+    public static void main(String[] args) {
+        double vy0 = 100;
+        boolean check = false;
+        for (String a : args) {
+            if (a.equals("--check")) {
+                check = true;
+            } else {
+                vy0 = Double.parseDouble(a);
+            }
+        }
+        Scenario base = Scenario.defaults();
+        Scenario s = base.withInitialState(base.x0, base.altitude0, base.vx0, vy0, base.angle0);
+        GainGradient ad = new GainGradient();
+        // Warm up, then time one pass.
+        for (int i = 0; i < 3; i++) {
+            ad.evaluate(s);
+            s.run();
+        }
+        long start = System.nanoTime();
+        Result r = ad.evaluate(s);
+        double adMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        RunResult plain = s.run();
+        double runMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf(Locale.ROOT, "%s after %d ticks: touchdown %.4f m/s, fuel used %.4f L, miss %.3f m%n",
+                r.landed ? "landed" : "not landed", r.ticks, r.touchdownSpeed, r.fuelUsed, r.miss);
+        System.out.printf(Locale.ROOT, "gradient pass %.1f ms, plain flight %.1f ms%n", adMillis, runMillis);
+        System.out.printf(Locale.ROOT, "%-6s %14s %14s %14s%s%n", "gain", "d speed", "d fuel used", "d miss",
+                check ? "   central differences (speed, fuel used, miss)" : "");
+        double[] g = s.getGains();
+        for (int i = 0; i < GAINS; i++) {
+            System.out.printf(Locale.ROOT, "%-6s %14.6g %14.6g %14.6g", GAIN_NAMES[i],
+                    r.dTouchdownSpeed[i], r.dFuelUsed[i], r.dMiss[i]);
+            if (check) {
+                double h = 1e-6 * Math.max(Math.abs(g[i]), 1e-3);
+                double[] up = g.clone(), down = g.clone();
+                up[i] += h;
+                down[i] -= h;
+                RunResult a = s.withController(Scenario.ControllerType.PID, up).run();
+                RunResult b = s.withController(Scenario.ControllerType.PID, down).run();
+                System.out.printf(Locale.ROOT, "   %14.6g %14.6g %14.6g",
+                        (a.touchdownSpeed - b.touchdownSpeed) / (2 * h),
+                        (b.fuelLeft - a.fuelLeft) / (2 * h),
+                        (Math.abs(a.lateralMiss) - Math.abs(b.lateralMiss)) / (2 * h));
+            }
+            System.out.println();
+        }
+    }
+}
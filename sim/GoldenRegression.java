@@ -0,0 +1,367 @@
+package sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import archive.Channel;
+import archive.TrajectoryArchiveReader;
+import archive.TrajectoryArchiveWriter;
+import archive.TrajectoryRecorder;
+import constants.SpacecraftConstants;
+
+/**
+ * GoldenRegression.java
+ *
+ * Headless regression suite: flies a fixed set of reference descents with the LandingPIDController
+ * and the Telemetry Panel gains (Scenario.DEFAULT_GAINS) and compares every tick with a stored
+ * golden trajectory, channel by channel, within TOLERANCE_FACTOR times the channel's archive
+ * precision. Each case is also timed and its heap allocation per tick is measured, and the suite
+ * fails if throughput falls or allocation rises beyond the gates. The flight computed by
+ * GainGradient, which re-implements the controller and the physics, must also match each case's
+ * run exactly.
+ *
+ * Throughput is relative: every timed batch of a case is preceded by a batch of a fixed calibration
+ * loop that uses no simulation code, and the case's ticks/s is divided by the loop's steps/s. The
+ * gate compares the median of these ratios over all batches, so a machine that is slower or busier
+ * as a whole, or a single disturbed batch, does not fail the check. Repeated runs of the same build
+ * vary by about 10% in the median ratio, well inside the default gate.
+ *
+ * The golden directory holds golden.lmta (a TrajectoryArchive with one run per case) and
+ * golden.properties (the scenario key, tick count, relative throughput and bytes per tick of each
+ * case, and the gates). A case whose scenario key changed (e.g. after Spacecraft.MODEL_VERSION was
+ * increased) is reported as out of date. The relative throughput still depends somewhat on the
+ * processor and the JVM; if the gate fails on a new machine for an unchanged build, re-record there.
+ *
+ * Command line (exit status 1 if any check fails):
+ *   java sim.GoldenRegression [golden-dir]            check against the golden data
+ *   java sim.GoldenRegression --record [golden-dir]   (re)record the golden data and baselines
+ */
+public class GoldenRegression {
+    // Allowed deviation per channel, in multiples of its archive precision.
+    public static final double TOLERANCE_FACTOR = 2;
+    // Default gates (stored in golden.properties, where they can be edited).
+    public static final double DEFAULT_MIN_THROUGHPUT_RATIO = 0.6;
+    public static final double DEFAULT_MAX_ALLOCATION_INCREASE = 16;   // bytes per tick
+    private static final int TIMED_BATCHES = 11;
+    private static final long BATCH_NANOS = 100_000_000L;
+    private static final long CALIBRATION_NANOS = 50_000_000L;
+    private static final long WARM_UP_NANOS = 2_000_000_000L;
+
+    // State of the calibration loop, kept in fields so that the JIT cannot drop the work.
+    private static final String[] CALIBRATION_KEYS = {"A", "B", "C", "D", "E", "F", "G", "H", "I"};
+    private static final Map<String, Double> calibrationMap = new HashMap<>();
+    private static double calibrationSink;
+
+    /** A reference descent. */
+    public static final class Case {
+        public final String name;
+        public final Scenario scenario;
+
+        Case(String name, Scenario scenario) {
+            this.name = name;
+            this.scenario = scenario;
+        }
+    }
+
+    /** Measured throughput and allocation of one case. */
+    public static final class Performance {
+        // Median ticks/s over the batches (for display only; it depends on the machine).
+        public final double ticksPerSecond;
+        // Median of ticks/s divided by calibration steps/s over the batches.
+        public final double relativeThroughput;
+        public final double bytesPerTick;
+
+        Performance(double ticksPerSecond, double relativeThroughput, double bytesPerTick) {
+            this.ticksPerSecond = ticksPerSecond;
+            this.relativeThroughput = relativeThroughput;
+            this.bytesPerTick = bytesPerTick;
+        }
+    }
+
+    /** The reference descents: several initial conditions, all with the default PID gains. */
+    public static List<Case> cases() {
+        Scenario base = Scenario.defaults();
+        double alt = SpacecraftConstants.INITIAL_ALTITUDE;
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("nominal", base.withInitialState(0, alt, 0, 100, 0)));
+        cases.add(new Case("slow-entry", base.withInitialState(0, alt, 0, 40, 0)));
+        cases.add(new Case("lateral", base.withInitialState(500, alt, -20, 100, 0)));
+        cases.add(new Case("tilted", base.withInitialState(0, alt, 10, 80, 15)));
+        cases.add(new Case("low-fuel", base.withInitialState(0, alt, 0, 100, 0).withFuel(200)));
+        return cases;
+    }
+
+    /**
+     * Flies a case once, recording every tick.
+     *
+     * @param c        The case.
+     * @param recorder Receives the trajectory (cleared first).
+     * @return The outcome.
+     */
+    public static RunResult record(Case c, TrajectoryRecorder recorder) {
+        recorder.clear();
+        return c.scenario.run(recorder);
+    }
+
+    /**
+     * Times a case without recording, on the current thread. Each of several batches runs the
+     * calibration loop for CALIBRATION_NANOS and then flies the case repeatedly for at least
+     * BATCH_NANOS; the medians over the batches are returned.
+     *
+     * @param c The case.
+     * @return Throughput and heap allocation per tick.
+     */
+    public static Performance measure(Case c) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double[] rates = new double[TIMED_BATCHES];
+        double[] ratios = new double[TIMED_BATCHES];
+        double bestBytes = Double.MAX_VALUE;
+        for (int i = 0; i < TIMED_BATCHES; i++) {
+            double calibrationRate = calibrate(CALIBRATION_NANOS);
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long elapsed, ticks = 0;
+            do {
+                ticks += c.scenario.run().ticks;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < BATCH_NANOS);
+            bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            rates[i] = ticks / (elapsed / 1e9);
+            ratios[i] = rates[i] / calibrationRate;
+            bestBytes = Math.min(bestBytes, bytes / (double) ticks);
+        }
+        return new Performance(median(rates), median(ratios), bestBytes);
+    }
+
+    /**
+     * Runs the calibration loop: a damped oscillator stepped with trigonometry and nine boxed map
+     * updates per step, roughly the mix of one simulation tick. It uses no simulation code, so it
+     * measures the speed of the machine and the JVM, not of the simulator.
+     *
+     * @param nanos Minimum running time.
+     * @return Steps per second.
+     */
+    static double calibrate(long nanos) {
+        Map<String, Double> map = calibrationMap;
+        double x = 1, v = 0, a = 0.3;
+        long steps = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                for (int k = 0; k < CALIBRATION_KEYS.length; k++) {
+                    map.put(CALIBRATION_KEYS[k], x * k);
+                }
+                double f = 0;
+                for (String key : CALIBRATION_KEYS) {
+                    f += map.get(key);
+                }
+                double acc = -x - 0.1 * v + 1e-3 * f + Math.sin(a);
+                v += acc * 0.05;
+                x += v * 0.05;
+                a = Math.atan2(v, x + 2) + Math.sqrt(x * x + 1);
+            }
+            steps += 1000;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        calibrationSink += x;
+        return steps / (elapsed / 1e9);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    // Flies every case (and the calibration loop) for a while so the measurements see compiled code.
+    private static void warmUp(List<Case> cases) {
+        long end = System.nanoTime() + WARM_UP_NANOS;
+        while (System.nanoTime() < end) {
+            for (Case c : cases) {
+                c.scenario.run();
+            }
+            calibrate(CALIBRATION_NANOS / 10);
+        }
+    }
+
+    /**
+     * Compares a recorded trajectory with its golden copy.
+     *
+     * @param golden   Golden columns, [channel][tick] (see TrajectoryArchiveReader.readRun).
+     * @param recorder The new trajectory.
+     * @return null if they agree, otherwise a description of the largest deviation.
+     */
+    public static String compare(double[][] golden, TrajectoryRecorder recorder) {
+        int ticks = golden[0].length;
+        if (ticks != recorder.size()) {
+            return "tick count " + recorder.size() + " (golden " + ticks + ")";
+        }
+        String worst = null;
+        double worstRatio = 1;
+        for (Channel ch : Channel.values()) {
+            double tolerance = TOLERANCE_FACTOR * ch.defaultPrecision;
+            double[] g = golden[ch.ordinal()];
+            for (int t = 0; t < ticks; t++) {
+                double diff = Math.abs(recorder.get(ch, t) - g[t]);
+                if (diff > tolerance * worstRatio) {
+                    worstRatio = diff / tolerance;
+                    worst = String.format("%s differs by %.3g at tick %d (tolerance %.3g)", ch, diff, t, tolerance);
+                }
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Compares the outcome of a GainGradient pass with the plain run of the same scenario. Both fly
+     * the same equations in the same order, so any difference means they have drifted apart.
+     *
+     * @param g The gradient pass.
+     * @param s The scenario flown.
+     * @param r The outcome of s.run().
+     * @return null if they agree exactly, otherwise a description of the difference.
+     */
+    public static String compareGradientPass(GainGradient.Result g, Scenario s, RunResult r) {
+        if (g.landed != r.landed || g.ticks != r.ticks) {
+            return String.format("gradient pass %s after %d ticks, run %s after %d ticks",
+                    g.landed ? "landed" : "not landed", g.ticks, r.landed ? "landed" : "not landed", r.ticks);
+        }
+        if (g.touchdownSpeed != r.touchdownSpeed) {
+            return String.format("gradient pass touchdown speed %.17g, run %.17g", g.touchdownSpeed, r.touchdownSpeed);
+        }
+        if (g.fuelUsed != s.fuel0 - r.fuelLeft) {
+            return String.format("gradient pass fuel used %.17g, run %.17g", g.fuelUsed, s.fuel0 - r.fuelLeft);
+        }
+        if (g.miss != Math.abs(r.lateralMiss)) {
+            return String.format("gradient pass miss %.17g, run %.17g", g.miss, Math.abs(r.lateralMiss));
+        }
+        return null;
+    }
+
+    /**
+     * Records the golden trajectories and performance baselines.
+     *
+     * @param dir The golden directory (created if needed).
+     */
+    public static void recordGolden(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Properties props = new Properties();
+        props.setProperty("gate.minThroughputRatio", Double.toString(DEFAULT_MIN_THROUGHPUT_RATIO));
+        props.setProperty("gate.maxAllocationIncrease", Double.toString(DEFAULT_MAX_ALLOCATION_INCREASE));
+        TrajectoryRecorder recorder = new TrajectoryRecorder();
+        List<Case> cases = cases();
+        warmUp(cases);
+        try (TrajectoryArchiveWriter writer = new TrajectoryArchiveWriter(dir.resolve("golden.lmta"))) {
+            for (int i = 0; i < cases.size(); i++) {
+                Case c = cases.get(i);
+                RunResult r = record(c, recorder);
+                writer.append(i, recorder);
+                Performance p = measure(c);
+                props.setProperty(c.name + ".key", c.scenario.key());
+                props.setProperty(c.name + ".ticks", Long.toString(r.ticks));
+                props.setProperty(c.name + ".relativeThroughput", String.format("%.4f", p.relativeThroughput));
+                props.setProperty(c.name + ".bytesPerTick", String.format("%.1f", p.bytesPerTick));
+                System.out.printf("%-10s recorded: %s, %.0f ticks/s, relative throughput %.4f, %.1f B/tick%n",
+                        c.name, r, p.ticksPerSecond, p.relativeThroughput, p.bytesPerTick);
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(dir.resolve("golden.properties"))) {
+            props.store(out, "Golden trajectories and performance baselines (sim.GoldenRegression --record)\n"
+                    + "relativeThroughput is ticks/s divided by calibration-loop steps/s on the recording machine;\n"
+                    + "if the throughput gate fails on another machine for an unchanged build, re-record there.");
+        }
+    }
+
+    /**
+     * Checks every case against the golden data and prints one line per case.
+     *
+     * @param dir The golden directory.
+     * @return The number of failed cases.
+     */
+    public static int check(Path dir) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve("golden.properties"))) {
+            props.load(in);
+        }
+        double minRatio = Double.parseDouble(props.getProperty("gate.minThroughputRatio",
+                Double.toString(DEFAULT_MIN_THROUGHPUT_RATIO)));
+        double maxIncrease = Double.parseDouble(props.getProperty("gate.maxAllocationIncrease",
+                Double.toString(DEFAULT_MAX_ALLOCATION_INCREASE)));
+        TrajectoryRecorder recorder = new TrajectoryRecorder();
+        GainGradient gradient = new GainGradient();
+        List<Case> cases = cases();
+        warmUp(cases);
+        int failed = 0;
+        try (TrajectoryArchiveReader reader = new TrajectoryArchiveReader(dir.resolve("golden.lmta"))) {
+            for (int i = 0; i < cases.size(); i++) {
+                Case c = cases.get(i);
+                List<String> problems = new ArrayList<>();
+                double[][] golden = reader.readRun(i);
+                if (golden == null || props.getProperty(c.name + ".ticks") == null) {
+                    problems.add("no golden data");
+                } else if (!c.scenario.key().equals(props.getProperty(c.name + ".key"))) {
+                    problems.add("scenario or model version changed; re-record");
+                } else {
+                    RunResult r = record(c, recorder);
+                    String diff = compare(golden, recorder);
+                    if (diff != null) {
+                        problems.add(diff);
+                    }
+                    diff = compareGradientPass(gradient.evaluate(c.scenario), c.scenario, r);
+                    if (diff != null) {
+                        problems.add(diff);
+                    }
+                }
+                Performance p = measure(c);
+                String baseline = props.getProperty(c.name + ".relativeThroughput");
+                double baseRatio = baseline != null ? Double.parseDouble(baseline) : 0;
+                double baseBytes = Double.parseDouble(props.getProperty(c.name + ".bytesPerTick", "Infinity"));
+                if (baseline == null) {
+                    problems.add("no relative throughput baseline; re-record");
+                } else if (p.relativeThroughput < minRatio * baseRatio) {
+                    problems.add(String.format("relative throughput %.4f below %.0f%% of %.4f",
+                            p.relativeThroughput, 100 * minRatio, baseRatio));
+                }
+                if (p.bytesPerTick > baseBytes + maxIncrease) {
+                    problems.add(String.format("allocation %.1f B/tick above %.1f + %.1f",
+                            p.bytesPerTick, baseBytes, maxIncrease));
+                }
+                System.out.printf("%-10s %s  %.0f ticks/s, relative %.4f (baseline %.4f), %.1f B/tick (baseline %.1f)%s%n",
+                        c.name, problems.isEmpty() ? "PASS" : "FAIL", p.ticksPerSecond, p.relativeThroughput, baseRatio,
+                        p.bytesPerTick, baseBytes, problems.isEmpty() ? "" : "\n           " + String.join("\n           ", problems));
+                if (!problems.isEmpty()) {
+                    failed++;
+                }
+            }
+        }
+        return failed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean recordMode = args.length > 0 && args[0].equals("--record");
+        int dirArg = recordMode ? 1 : 0;
+        Path dir = Paths.get(args.length > dirArg ? args[dirArg] : "golden");
+        if (recordMode) {
+            recordGolden(dir);
+            return;
+        }
+        int failed = check(dir);
+        System.out.println(failed == 0 ? "all cases passed" : failed + " case(s) failed");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+
+/**
+ * JobServer.java
+ *
+ * Headless simulation server: accepts jobs on a loopback TCP port and streams the results back as
+ * the runs finish, so analysis scripts can submit thousands of small jobs to one warmed-up JVM
+ * instead of starting a JVM per job.
+ *
+ * The protocol is line based. A request is a command followed by key=value parameters:
+ *   RUN   id=&lt;job&gt; [priority=&lt;n&gt;] [scenario parameters]
+ *   SWEEP id=&lt;job&gt; param=&lt;name&gt; from=&lt;v&gt; to=&lt;v&gt; steps=&lt;n&gt; [priority=&lt;n&gt;] [scenario parameters]
+ *   MC    id=&lt;job&gt; runs=&lt;n&gt; [seed=&lt;s&gt;] [priority=&lt;n&gt;] [scenario parameters]
+ *   STATS
+ *   QUIT
+ * Scenario parameters (defaults from Scenario.defaults()): x0, altitude0, vx0, vy0, angle0, fuel0,
+ * controller (NONE, PID, PID_EKF), gains (15 comma-separated values), dt, maxTime, sensorSeed.
+ * A sweep varies one of the scenario parameters, or gain0 ... gain14, linearly over steps runs.
+ * Monte Carlo runs disperse the initial conditions like BatchRunner.monteCarlo(), each run from its
+ * own seed derived from seed and the run index. SWEEP steps and MC runs must be between 1 and
+ * MAX_RUNS_PER_JOB.
+ *
+ * Replies (one line each; runs of a job finish in any order, and jobs interleave):
+ *   ACCEPTED &lt;job&gt; runs=&lt;n&gt;
+ *   RESULT &lt;job&gt; &lt;index&gt; landed=&lt;0|1&gt; speed=.. time=.. fuel=.. miss=.. tilt=.. ticks=..
+ *   DONE &lt;job&gt;
+ *   ERROR &lt;job|-&gt; &lt;message&gt;
+ *
+ * Every run is a task in one bounded priority queue (higher priority first, then first come first
+ * served). A job's tasks are created one at a time as the queue makes room, and a run's scenario
+ * is only built by the worker that flies it, so memory does not grow with the size of a job.
+ * While the queue is full, reading from the submitting connection stops, which pushes back on the
+ * client. Each worker thread owns a Spacecraft, a PID controller and a FlightSimulator and reuses
+ * them for every run (see Scenario.prepare()). Tasks of a closed connection are skipped.
+ *
+ * Command line:
+ *   java sim.JobServer [port] [threads] [queue-capacity]
+ */
+public class JobServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7878;
+    // Most runs a single SWEEP or MC job may ask for.
+    public static final int MAX_RUNS_PER_JOB = 10_000_000;
+
+    // One client connection; replies from several workers are serialized on it.
+    private static final class Client {
+        final Socket socket;
+        final Writer out;
+        volatile boolean closed;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        synchronized void send(String line) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                closed = true;
+            }
+        }
+    }
+
+    // A submitted job: its runs are queued as separate tasks, and each run's scenario is only built
+    // by the worker that flies it.
+    private static final class Job {
+        final String id;
+        final Client client;
+        final int priority;
+        final int runs;
+        final IntFunction<Scenario> scenarios;
+        final AtomicInteger remaining;
+
+        Job(String id, Client client, int priority, int runs, IntFunction<Scenario> scenarios) {
+            this.id = id;
+            this.client = client;
+            this.priority = priority;
+            this.runs = runs;
+            this.scenarios = scenarios;
+            this.remaining = new AtomicInteger(runs);
+        }
+    }
+
+    private static final class Task implements Comparable<Task> {
+        final Job job;
+        final int index;
+        final long order;
+
+        Task(Job job, int index, long order) {
+            this.job = job;
+            this.index = index;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (job.priority != o.job.priority) {
+                return Integer.compare(o.job.priority, job.priority);
+            }
+            return Long.compare(order, o.order);
+        }
+    }
+
+    // Priority queue with a capacity: put() blocks while full, take() while empty.
+    private static final class TaskQueue {
+        private final PriorityQueue<Task> queue = new PriorityQueue<>();
+        private final int capacity;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final Condition notEmpty = lock.newCondition();
+
+        TaskQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(Task t) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (queue.size() >= capacity) {
+                    notFull.await();
+                }
+                queue.add(t);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Task take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (queue.isEmpty()) {
+                    notEmpty.await();
+                }
+                Task t = queue.poll();
+                notFull.signal();
+                return t;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final TaskQueue queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong order = new AtomicLong();
+    private final AtomicLong runsCompleted = new AtomicLong();
+    private final AtomicLong ticksFlown = new AtomicLong();
+    private final AtomicInteger clients = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * Starts the server: binds the loopback port and starts the worker threads.
+     *
+     * @param port          TCP port (0 for any free port).
+     * @param threads       Number of worker threads.
+     * @param queueCapacity Maximum number of queued runs.
+     * @throws IOException If the port cannot be bound.
+     */
+    public JobServer(int port, int threads, int queueCapacity) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        queue = new TaskQueue(queueCapacity);
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "job-worker-" + i);
+            t.setDaemon(true);
+            workers.add(t);
+            t.start();
+        }
+        Thread acceptor = new Thread(this::accept, "job-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread t = new Thread(() -> serve(socket), "job-client");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Job server: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Reads the requests of one connection.
+    private void serve(Socket socket) {
+        clients.incrementAndGet();
+        Client client = null;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+            client = new Client(s);
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (!handle(client, line)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Connection closed by the client.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (client != null) {
+                client.closed = true;
+            }
+            clients.decrementAndGet();
+        }
+    }
+
+    // Handles one request line; returns false to close the connection.
+    private boolean handle(Client client, String line) throws InterruptedException {
+        String[] words = line.split("\\s+");
+        String command = words[0].toUpperCase(Locale.ROOT);
+        Map<String, String> params = new HashMap<>();
+        for (int i = 1; i < words.length; i++) {
+            int eq = words[i].indexOf('=');
+            if (eq <= 0) {
+                client.send("ERROR - expected key=value, got " + words[i]);
+                return true;
+            }
+            params.put(words[i].substring(0, eq), words[i].substring(eq + 1));
+        }
+        if (command.equals("QUIT")) {
+            return false;
+        }
+        if (command.equals("STATS")) {
+            client.send(String.format(Locale.ROOT, "STATS queued=%d completed=%d ticks=%d clients=%d workers=%d",
+                    queue.size(), runsCompleted.get(), ticksFlown.get(), clients.get(), workers.size()));
+            return true;
+        }
+        String id = params.getOrDefault("id", "-");
+        Job job;
+        try {
+            int priority = Integer.parseInt(params.getOrDefault("priority", "0"));
+            job = job(id, client, priority, command, params);
+        } catch (IllegalArgumentException e) {
+            client.send("ERROR " + id + " " + e.getMessage());
+            return true;
+        }
+        client.send("ACCEPTED " + id + " runs=" + job.runs);
+        if (job.runs == 0) {
+            client.send("DONE " + id);
+        }
+        // Tasks are tiny and created one at a time, so a large job only waits for queue room.
+        for (int i = 0; i < job.runs && !client.closed; i++) {
+            queue.put(new Task(job, i, order.getAndIncrement()));
+        }
+        return true;
+    }
+
+    // Parameters every job accepts, and the extra ones of each command.
+    private static final List<String> SCENARIO_KEYS = Arrays.asList("id", "priority", "controller", "gains",
+            "x0", "altitude0", "vx0", "vy0", "angle0", "fuel0", "dt", "maxTime", "sensorSeed");
+    private static final List<String> SWEEP_KEYS = Arrays.asList("param", "from", "to", "steps");
+    private static final List<String> MC_KEYS = Arrays.asList("runs", "seed");
+
+    // Parses a request into a job; its scenarios are generated per run index.
+    private static Job job(String id, Client client, int priority, String command, Map<String, String> params) {
+        List<String> extra = command.equals("SWEEP") ? SWEEP_KEYS
+                : command.equals("MC") ? MC_KEYS : Collections.<String>emptyList();
+        for (String key : params.keySet()) {
+            if (!SCENARIO_KEYS.contains(key) && !extra.contains(key)) {
+                throw new IllegalArgumentException("unknown parameter " + key);
+            }
+        }
+        Scenario base = parseScenario(params);
+        switch (command) {
+            case "RUN":
+                return new Job(id, client, priority, 1, i -> base);
+            case "SWEEP": {
+                String param = required(params, "param");
+                double from = Double.parseDouble(required(params, "from"));
+                double to = Double.parseDouble(required(params, "to"));
+                int steps = runCount(params, "steps");
+                // Fails here, before ACCEPTED, for an unknown parameter.
+                withParameter(base, param, from);
+                return new Job(id, client, priority, steps, i ->
+                        withParameter(base, param, steps == 1 ? from : from + (to - from) * i / (steps - 1)));
+            }
+            case "MC": {
+                int runs = runCount(params, "runs");
+                long seed = Long.parseLong(params.getOrDefault("seed", "1"));
+                // Each run disperses from its own seed, so no run depends on the ones before it.
+                return new Job(id, client, priority, runs, i ->
+                        base.dispersed(new Random(seed * 0x9E3779B97F4A7C15L + i), 100, 5, 2));
+            }
+            default:
+                throw new IllegalArgumentException("unknown command " + command);
+        }
+    }
+
+    private static int runCount(Map<String, String> params, String key) {
+        long n = Long.parseLong(required(params, key));
+        if (n < 1 || n > MAX_RUNS_PER_JOB) {
+            throw new IllegalArgumentException(key + " must be between 1 and " + MAX_RUNS_PER_JOB);
+        }
+        return (int) n;
+    }
+
+    private static String required(Map<String, String> params, String key) {
+        String v = params.get(key);
+        if (v == null) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return v;
+    }
+
+    // Builds a scenario from the request parameters (Scenario.defaults() for the missing ones).
+    private static Scenario parseScenario(Map<String, String> params) {
+        Scenario s = Scenario.defaults();
+        if (params.containsKey("controller") || params.containsKey("gains")) {
+            double[] gains = s.getGains();
+            if (params.containsKey("gains")) {
+                String[] g = params.get("gains").split(",");
+                if (g.length != gains.length) {
+                    throw new IllegalArgumentException("gains needs " + gains.length + " values");
+                }
+                for (int i = 0; i < g.length; i++) {
+                    gains[i] = Double.parseDouble(g[i]);
+                }
+            }
+            Scenario.ControllerType type = Scenario.ControllerType.valueOf(
+                    params.getOrDefault("controller", s.controller.name()).toUpperCase(Locale.ROOT));
+            s = s.withController(type, gains);
+        }
+        for (String key : new String[]{"x0", "altitude0", "vx0", "vy0", "angle0", "fuel0", "dt", "maxTime", "sensorSeed"}) {
+            if (params.containsKey(key)) {
+                s = withParameter(s, key, Double.parseDouble(params.get(key)));
+            }
+        }
+        return s;
+    }
+
+    // Returns the scenario with one parameter (or gain<i>) replaced.
+    private static Scenario withParameter(Scenario s, String name, double v) {
+        switch (name) {
+            case "x0": return s.withInitialState(v, s.altitude0, s.vx0, s.vy0, s.angle0);
+            case "altitude0": return s.withInitialState(s.x0, v, s.vx0, s.vy0, s.angle0);
+            case "vx0": return s.withInitialState(s.x0, s.altitude0, v, s.vy0, s.angle0);
+            case "vy0": return s.withInitialState(s.x0, s.altitude0, s.vx0, v, s.angle0);
+            case "angle0": return s.withInitialState(s.x0, s.altitude0, s.vx0, s.vy0, v);
+            case "fuel0": return s.withFuel(v);
+            case "dt": return s.withTiming(v, s.maxTime);
+            case "maxTime": return s.withTiming(s.dt, v);
+            case "sensorSeed": return s.withSeed((long) v);
+            default:
+                if (name.startsWith("gain")) {
+                    int i = Integer.parseInt(name.substring(4));
+                    double[] gains = s.getGains();
+                    if (i < 0 || i >= gains.length) {
+                        throw new IllegalArgumentException("no gain " + i);
+                    }
+                    gains[i] = v;
+                    return s.withController(s.controller, gains);
+                }
+                throw new IllegalArgumentException("unknown parameter " + name);
+        }
+    }
+
+    // Worker loop: one reusable spacecraft, controller and simulator per thread.
+    private void work() {
+        FlightSimulator sim = new FlightSimulator(new Spacecraft());
+        LandingPIDController pid = LandingPIDController.fromGains(Scenario.DEFAULT_GAINS);
+        while (running) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Job job = task.job;
+            if (job.client.closed) {
+                continue;
+            }
+            try {
+                Scenario scenario = job.scenarios.apply(task.index);
+                scenario.prepare(sim, pid);
+                Spacecraft sc = sim.getSpacecraft();
+                RunResult r = Scenario.fly(sim, scenario.maxTime, Math.abs(sc.angle), 0, null);
+                runsCompleted.incrementAndGet();
+                ticksFlown.addAndGet(r.ticks);
+                job.client.send(String.format(Locale.ROOT,
+                        "RESULT %s %d landed=%d speed=%.6f time=%.6f fuel=%.6f miss=%.6f tilt=%.6f ticks=%d",
+                        job.id, task.index, r.landed ? 1 : 0, r.touchdownSpeed, r.flightTime, r.fuelLeft,
+                        r.lateralMiss, r.maxTilt, r.ticks));
+            } catch (RuntimeException e) {
+                job.client.send("ERROR " + job.id + " run " + task.index + ": " + e);
+            }
+            if (job.remaining.decrementAndGet() == 0) {
+                job.client.send("DONE " + job.id);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        JobServer server = new JobServer(port, threads, capacity);
+        System.out.printf("job server on 127.0.0.1:%d, %d workers, queue of %d runs%n",
+                server.getPort(), threads, capacity);
+        Thread.currentThread().join();
+    }
+}
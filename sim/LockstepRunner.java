@@ -0,0 +1,45 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import controllers.SharedMemoryChannel;
+import controllers.SharedMemoryController;
+
+/**
+ * LockstepRunner.java
+ *
+ * Flies the default scenario headless with an external controller in lockstep: every tick the
+ * state is published on the shared-memory channel and the simulation waits for the controller's
+ * answer before stepping. Without a display the loop runs as fast as the controller answers, so
+ * flight software under test sees every tick exactly once and nothing waits on the Swing thread.
+ * The GUI only uses the channel free-running.
+ *
+ * Usage: java sim.LockstepRunner &lt;channel-file&gt; [timeoutMs]
+ * Then start the controller, e.g. java controllers.ExternalPIDClient &lt;channel-file&gt;.
+ * The timeout (default 10000 ms) bounds the wait per tick, including the first one, which lasts
+ * until the controller has connected.
+ */
+public class LockstepRunner {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java sim.LockstepRunner <channel-file> [timeoutMs]");
+            System.exit(2);
+        }
+        long timeoutMs = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        Scenario scenario = Scenario.defaults().withController(Scenario.ControllerType.NONE, Scenario.DEFAULT_GAINS);
+        try (SharedMemoryChannel channel = SharedMemoryChannel.create(Paths.get(args[0]), 1024)) {
+            FlightSimulator sim = scenario.createSimulator();
+            SharedMemoryController external = new SharedMemoryController(channel, sim.getSpacecraft(),
+                    true, timeoutMs * 1_000_000L);
+            sim.setController(external);
+            System.out.println("Waiting for a controller on " + args[0]);
+            long start = System.nanoTime();
+            RunResult result = Scenario.fly(sim, scenario.maxTime, Math.abs(sim.getSpacecraft().angle), 0, null);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(result);
+            System.out.printf("%d ticks in %.2f s (%.0f ticks/s), %d lockstep timeouts, %d state overruns%n",
+                    result.ticks, seconds, result.ticks / seconds,
+                    external.getLockstepTimeouts(), external.getStateOverruns());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import controllers.MlpPolicy;
+import controllers.PolicyController;
+import models.Spacecraft;
+
+/**
+ * PolicyEnsemble.java
+ *
+ * Flies many scenarios with one learned MlpPolicy in lockstep. Every tick the states of all
+ * landers still flying are gathered into one input matrix, the policy is evaluated for the whole
+ * batch at once, and each lander is stepped with its row of the output. This replaces one small
+ * matrix-vector product per lander and tick with a single matrix-matrix product.
+ *
+ * The spacecraft, simulators and arrays are created once for the ensemble capacity and reused for
+ * every group of scenarios, so flying allocates nothing per tick apart from what the spacecraft
+ * itself records. The results are identical to flying each scenario with a PolicyController.
+ * The controller type and gains of the scenarios are ignored: the policy flies all of them.
+ *
+ * Command line (Monte Carlo around the default scenario, compared with one controller per lander):
+ *   java sim.PolicyEnsemble &lt;weights-file&gt; [runs] [seed] [ensemble-size]
+ */
+public class PolicyEnsemble {
+    private final MlpPolicy policy;
+    private final MlpPolicy.Workspace workspace;
+    private final FlightSimulator[] sims;
+    private final double[] inputs, outputs;
+    // Per lander of the current group: scenario time limit, largest tilt, ticks flown.
+    private final double[] maxTime, maxTilt;
+    private final long[] ticks;
+    // Landers still flying, and the row of the batch each one was given this tick.
+    private final int[] active;
+
+    /**
+     * @param policy   The policy flying every lander.
+     * @param capacity Number of landers flown together.
+     */
+    public PolicyEnsemble(MlpPolicy policy, int capacity) {
+        this.policy = policy;
+        this.workspace = policy.newWorkspace(capacity);
+        this.sims = new FlightSimulator[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sims[i] = new FlightSimulator(new Spacecraft());
+        }
+        this.inputs = new double[capacity * MlpPolicy.INPUTS];
+        this.outputs = new double[capacity * MlpPolicy.OUTPUTS];
+        this.maxTime = new double[capacity];
+        this.maxTilt = new double[capacity];
+        this.ticks = new long[capacity];
+        this.active = new int[capacity];
+    }
+
+    /**
+     * Flies all scenarios, capacity at a time.
+     *
+     * @param scenarios The scenarios.
+     * @return The results, in the same order.
+     */
+    public List<RunResult> flyAll(List<Scenario> scenarios) {
+        List<RunResult> results = new ArrayList<>(scenarios.size());
+        for (int from = 0; from < scenarios.size(); from += sims.length) {
+            flyGroup(scenarios.subList(from, Math.min(scenarios.size(), from + sims.length)), results);
+        }
+        return results;
+    }
+
+    // Flies up to capacity scenarios together and appends their results.
+    private void flyGroup(List<Scenario> group, List<RunResult> results) {
+        int n = group.size();
+        for (int i = 0; i < n; i++) {
+            Scenario s = group.get(i);
+            Spacecraft sc = sims[i].getSpacecraft();
+            s.initialize(sc);
+            for (String eng : SpacecraftConstants.ENGINES) {
+                sims[i].getEngineThrust().put(eng, 0.0);
+            }
+            maxTime[i] = s.maxTime;
+            maxTilt[i] = Math.abs(sc.angle);
+            ticks[i] = 0;
+            active[i] = i;
+        }
+        int flying = n;
+        while (flying > 0) {
+            // Drop the landers that are done, then gather the others into the input matrix.
+            int rows = 0;
+            for (int a = 0; a < flying; a++) {
+                int i = active[a];
+                Spacecraft sc = sims[i].getSpacecraft();
+                if (sc.isLanded() || sc.getTime() >= maxTime[i]) {
+                    continue;
+                }
+                int in = rows * MlpPolicy.INPUTS;
+                inputs[in] = sc.getAltitude();
+                inputs[in + 1] = sc.getVerticalSpeed();
+                inputs[in + 2] = sc.x;
+                inputs[in + 3] = sc.getHorizontalSpeed();
+                inputs[in + 4] = sc.getAngle();
+                active[rows++] = i;
+            }
+            flying = rows;
+            policy.evaluate(inputs, outputs, rows, workspace);
+            for (int r = 0; r < rows; r++) {
+                int i = active[r];
+                FlightSimulator sim = sims[i];
+                LandingPIDController.applyCommands(outputs[r * MlpPolicy.OUTPUTS],
+                        outputs[r * MlpPolicy.OUTPUTS + 1], sim.getEngineThrust());
+                sim.step();
+                Spacecraft sc = sim.getSpacecraft();
+                maxTilt[i] = Math.max(maxTilt[i], Math.abs(sc.angle));
+                ticks[i]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Spacecraft sc = sims[i].getSpacecraft();
+            results.add(new RunResult(sc.isLanded(), sc.getTouchdownSpeed(), sc.getTime(),
+                    sc.getFuel(), sc.x, maxTilt[i], ticks[i]));
+        }
+    }
+
+    public int getCapacity() { return sims.length; }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java sim.PolicyEnsemble <weights-file> [runs] [seed] [ensemble-size]");
+            System.exit(2);
+        }
+        MlpPolicy policy = MlpPolicy.load(Paths.get(args[0]));
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        List<Scenario> scenarios = BatchRunner.monteCarlo(Scenario.defaults(), runs, seed);
+
+        long start = System.nanoTime();
+        List<RunResult> batched = new PolicyEnsemble(policy, size).flyAll(scenarios);
+        double batchedSeconds = (System.nanoTime() - start) / 1e9;
+
+        // The same flights with one controller per lander.
+        start = System.nanoTime();
+        FlightSimulator sim = new FlightSimulator(new Spacecraft());
+        PolicyController controller = new PolicyController(policy);
+        int mismatches = 0;
+        for (int i = 0; i < runs; i++) {
+            Scenario s = scenarios.get(i);
+            s.initialize(sim.getSpacecraft());
+            for (String eng : SpacecraftConstants.ENGINES) {
+                sim.getEngineThrust().put(eng, 0.0);
+            }
+            sim.setController(controller);
+            RunResult r = Scenario.fly(sim, s.maxTime, Math.abs(sim.getSpacecraft().angle), 0, null);
+            RunResult b = batched.get(i);
+            if (r.ticks != b.ticks || r.touchdownSpeed != b.touchdownSpeed || r.lateralMiss != b.lateralMiss) {
+                mismatches++;
+            }
+        }
+        double singleSeconds = (System.nanoTime() - start) / 1e9;
+
+        int safe = 0, crashed = 0, timeout = 0;
+        for (RunResult r : batched) {
+            if (r.isSafe()) safe++;
+            else if (r.landed) crashed++;
+            else timeout++;
+        }
+        System.out.printf("%d runs: %d safe, %d crashed, %d timed out%n", runs, safe, crashed, timeout);
+        System.out.printf("ensemble of %d: %.2f s, one controller per lander: %.2f s, %d mismatches%n",
+                size, batchedSeconds, singleSeconds, mismatches);
+    }
+}
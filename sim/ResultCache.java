@@ -0,0 +1,150 @@
+package sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * ResultCache.java
+ *
+ * A persistent, content-addressed cache of run results on local disk.
+ * Each result is stored in its own file named after the Scenario key, so identical scenarios
+ * from any earlier session or process are found again. Files are written to a temporary name
+ * and atomically renamed, so concurrent writers never expose partial entries.
+ *
+ * The cache is bounded in bytes: a read updates the file's modification time, and when the
+ * total size exceeds the limit the least recently used files are deleted.
+ */
+public class ResultCache {
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".run";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens (or creates) a cache directory.
+     *
+     * @param directory The cache directory.
+     * @param maxBytes  Size limit of all entries together.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                if (f.getFileName().toString().endsWith(SUFFIX)) {
+                    total += Files.size(f);
+                }
+            }
+        }
+        totalBytes.set(total);
+    }
+
+    /**
+     * Looks up a result.
+     *
+     * @param key The scenario key.
+     * @return The cached result, or null if there is none.
+     */
+    public RunResult get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                misses.incrementAndGet();
+                return null;
+            }
+            RunResult result = RunResult.read(in);
+            // Mark as recently used.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return result;
+        } catch (IOException e) {
+            // A missing, damaged or concurrently evicted entry is simply a miss.
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result, evicting least recently used entries if the cache grows beyond its limit.
+     *
+     * @param key    The scenario key.
+     * @param result The result to store.
+     */
+    public void put(String key, RunResult result) {
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                result.write(out);
+            }
+            long size = Files.size(tmp);
+            boolean existed = Files.exists(file);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (!existed && totalBytes.addAndGet(size) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Deletes the least recently used entries until the cache is below 90% of its limit.
+    private synchronized void evict() throws IOException {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).forEach(entries::add);
+        }
+        entries.sort(Comparator.comparing(ResultCache::lastModified));
+        long target = maxBytes * 9 / 10;
+        for (Path f : entries) {
+            if (totalBytes.get() <= target) {
+                break;
+            }
+            try {
+                long size = Files.size(f);
+                if (Files.deleteIfExists(f)) {
+                    totalBytes.addAndGet(-size);
+                }
+            } catch (NoSuchFileException e) {
+                // Already removed by another process.
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path f) {
+        try {
+            return Files.getLastModifiedTime(f);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getTotalBytes() { return totalBytes.get(); }
+}
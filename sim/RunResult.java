@@ -0,0 +1,60 @@
+package sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import constants.SpacecraftConstants;
+
+/**
+ * RunResult.java
+ *
+ * Outcome of one headless flight (see Scenario.run()).
+ */
+public final class RunResult {
+    public final boolean landed;
+    public final double touchdownSpeed;  // m/s (0 if not landed)
+    public final double flightTime;      // s
+    public final double fuelLeft;        // liters
+    public final double lateralMiss;     // final horizontal position (m); the target is x = 0
+    public final double maxTilt;         // largest |angle| during the flight (deg)
+    public final long ticks;             // physics steps flown
+
+    public RunResult(boolean landed, double touchdownSpeed, double flightTime, double fuelLeft,
+                     double lateralMiss, double maxTilt, long ticks) {
+        this.landed = landed;
+        this.touchdownSpeed = touchdownSpeed;
+        this.flightTime = flightTime;
+        this.fuelLeft = fuelLeft;
+        this.lateralMiss = lateralMiss;
+        this.maxTilt = maxTilt;
+        this.ticks = ticks;
+    }
+
+    /** True if the spacecraft landed at or below the safe landing speed. */
+    public boolean isSafe() {
+        return landed && touchdownSpeed <= SpacecraftConstants.SAFE_LANDING_SPEED;
+    }
+
+    // Binary form used by the ResultCache.
+    void write(DataOutputStream out) throws IOException {
+        out.writeBoolean(landed);
+        out.writeDouble(touchdownSpeed);
+        out.writeDouble(flightTime);
+        out.writeDouble(fuelLeft);
+        out.writeDouble(lateralMiss);
+        out.writeDouble(maxTilt);
+        out.writeLong(ticks);
+    }
+
+    static RunResult read(DataInputStream in) throws IOException {
+        return new RunResult(in.readBoolean(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble(), in.readLong());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s touchdown=%.3f m/s time=%.2f s fuel=%.2f L miss=%.1f m maxTilt=%.2f deg",
+                landed ? (isSafe() ? "SAFE" : "CRASH") : "TIMEOUT",
+                touchdownSpeed, flightTime, fuelLeft, lateralMiss, maxTilt);
+    }
+}
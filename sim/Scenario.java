@@ -0,0 +1,275 @@
+package sim;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import archive.TrajectoryRecorder;
+import constants.SpacecraftConstants;
+import controllers.EstimatingController;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+
+/**
+ * Scenario.java
+ *
+ * Everything that determines the outcome of one headless flight: vehicle constants, controller type
+ * and gains, initial conditions, integrator, time step and time limit. Scenarios are immutable;
+ * the with...() methods return modified copies.
+ *
+ * key() is a stable content hash of all of these plus Spacecraft.MODEL_VERSION and
+ * LandingPIDController.CONTROLLER_VERSION (and, for PID_EKF, the sensor and filter configuration and
+ * EstimatingController.ESTIMATOR_VERSION), used to look up earlier results in the ResultCache.
+ * Headless runs use flat terrain.
+ */
+public final class Scenario {
+    public enum ControllerType { NONE, PID, PID_EKF }
+
+    // Only integrator implemented by Spacecraft.update (velocity first, then position).
+    public static final String INTEGRATOR = "semi-implicit-euler";
+
+    // Sensor and filter configuration of PID_EKF scenarios (see EstimatingController.withDefaultSensors).
+    private static final double[] EKF_CONFIGURATION = EstimatingController.defaultConfiguration();
+
+    // Gains used by the Telemetry Panel.
+    public static final double[] DEFAULT_GAINS = {
+            0.01, 0.0001, 0.001,
+            0.5, 0.01, 0.1,
+            0.01, 0.0001, 0.001,
+            0.5, 0.01, 0.1,
+            0.5, 0.001, 0.05
+    };
+
+    public final double x0, altitude0, vx0, vy0, angle0, fuel0;
+    public final ControllerType controller;
+    private final double[] gains;
+    public final double dt;
+    public final double maxTime;
+    public final long seed;   // Sensor noise seed (PID_EKF only)
+
+    private Scenario(double x0, double altitude0, double vx0, double vy0, double angle0, double fuel0,
+                     ControllerType controller, double[] gains, double dt, double maxTime, long seed) {
+        this.x0 = x0;
+        this.altitude0 = altitude0;
+        this.vx0 = vx0;
+        this.vy0 = vy0;
+        this.angle0 = angle0;
+        this.fuel0 = fuel0;
+        this.controller = controller;
+        this.gains = gains.clone();
+        this.dt = dt;
+        this.maxTime = maxTime;
+        this.seed = seed;
+    }
+
+    /** The default flight: initial conditions of Spacecraft, default PID gains, 1000 s limit. */
+    public static Scenario defaults() {
+        return new Scenario(0, SpacecraftConstants.INITIAL_ALTITUDE, 0, 0, 0, SpacecraftConstants.INITIAL_FUEL,
+                ControllerType.PID, DEFAULT_GAINS, SpacecraftConstants.DT, 1000, 0);
+    }
+
+    public Scenario withInitialState(double x0, double altitude0, double vx0, double vy0, double angle0) {
+        return new Scenario(x0, altitude0, vx0, vy0, angle0, fuel0, controller, gains, dt, maxTime, seed);
+    }
+
+    public Scenario withFuel(double fuel0) {
+        return new Scenario(x0, altitude0, vx0, vy0, angle0, fuel0, controller, gains, dt, maxTime, seed);
+    }
+
+    public Scenario withController(ControllerType controller, double[] gains) {
+        return new Scenario(x0, altitude0, vx0, vy0, angle0, fuel0, controller, gains, dt, maxTime, seed);
+    }
+
+    public Scenario withTiming(double dt, double maxTime) {
+        return new Scenario(x0, altitude0, vx0, vy0, angle0, fuel0, controller, gains, dt, maxTime, seed);
+    }
+
+    public Scenario withSeed(long seed) {
+        return new Scenario(x0, altitude0, vx0, vy0, angle0, fuel0, controller, gains, dt, maxTime, seed);
+    }
+
+    /**
+     * Returns a copy with randomly perturbed initial conditions (Monte Carlo dispersion).
+     *
+     * @param r          Random source.
+     * @param posSigma   Standard deviation of the horizontal position and altitude (m).
+     * @param speedSigma Standard deviation of both speed components (m/s).
+     * @param angleSigma Standard deviation of the angle (deg).
+     * @return The perturbed scenario (its seed is also drawn from r).
+     */
+    public Scenario dispersed(Random r, double posSigma, double speedSigma, double angleSigma) {
+        return new Scenario(
+                x0 + posSigma * r.nextGaussian(), altitude0 + posSigma * r.nextGaussian(),
+                vx0 + speedSigma * r.nextGaussian(), vy0 + speedSigma * r.nextGaussian(),
+                angle0 + angleSigma * r.nextGaussian(), fuel0,
+                controller, gains, dt, maxTime, r.nextLong());
+    }
+
+    public double[] getGains() {
+        return gains.clone();
+    }
+
+    /**
+     * Builds a simulator at the initial conditions of this scenario.
+     *
+     * @return The simulator, ready to step.
+     */
+    public FlightSimulator createSimulator() {
+        Spacecraft sc = new Spacecraft();
+        setInitialState(sc);
+        FlightSimulator sim = new FlightSimulator(sc);
+        if (controller != ControllerType.NONE) {
+            LandingPIDController pid = LandingPIDController.fromGains(gains);
+            sim.setController(controller == ControllerType.PID_EKF
+                    ? EstimatingController.withDefaultSensors(pid, sc, seed) : pid);
+        }
+        return sim;
+    }
+
+    /**
+     * Prepares a reusable simulator for this scenario, so that flying it gives the same result as
+     * a simulator from createSimulator(). The spacecraft (on flat terrain) and the PID controller
+     * are reused; only a PID_EKF scenario creates a new estimator around the PID.
+     *
+     * @param sim A simulator with all nine engines in its command map.
+     * @param pid The PID controller to reuse.
+     */
+    public void prepare(FlightSimulator sim, LandingPIDController pid) {
+        Spacecraft sc = sim.getSpacecraft();
+        initialize(sc);
+        for (String eng : SpacecraftConstants.ENGINES) {
+            sim.getEngineThrust().put(eng, 0.0);
+        }
+        sim.setFilter(null);
+        if (controller == ControllerType.NONE) {
+            sim.setController(null);
+            return;
+        }
+        pid.setGains(gains);
+        pid.reset();
+        sim.setController(controller == ControllerType.PID_EKF
+                ? EstimatingController.withDefaultSensors(pid, sc, seed) : pid);
+    }
+
+    /**
+     * Resets a reusable spacecraft (on flat terrain) to the initial conditions of this scenario.
+     *
+     * @param sc The spacecraft.
+     */
+    public void initialize(Spacecraft sc) {
+        sc.reset();
+        setInitialState(sc);
+    }
+
+    private void setInitialState(Spacecraft sc) {
+        sc.x = x0;
+        sc.y = SpacecraftConstants.INITIAL_ALTITUDE - altitude0;
+        sc.altitude = altitude0;
+        sc.vx = vx0;
+        sc.vy = vy0;
+        sc.angle = angle0;
+        sc.fuel = fuel0;
+        sc.dt = dt;
+    }
+
+    /**
+     * Flies the scenario until touchdown or the time limit.
+     *
+     * @return The outcome.
+     */
+    public RunResult run() {
+        return run(null);
+    }
+
+    /**
+     * Flies the scenario until touchdown or the time limit, recording every tick.
+     *
+     * @param recorder Receives the state and commands after each step, or null.
+     * @return The outcome.
+     */
+    public RunResult run(TrajectoryRecorder recorder) {
+        FlightSimulator sim = createSimulator();
+        return fly(sim, maxTime, Math.abs(sim.getSpacecraft().angle), 0, recorder);
+    }
+
+    /**
+     * Steps a simulator until touchdown or maxTime and summarizes the flight.
+     *
+     * @param sim      The simulator (possibly restored from a snapshot).
+     * @param maxTime  Time limit (s).
+     * @param maxTilt  Largest |angle| of the flight so far (deg).
+     * @param ticks    Ticks flown so far.
+     * @param recorder Receives the state and commands after each step, or null.
+     * @return The outcome.
+     */
+    static RunResult fly(FlightSimulator sim, double maxTime, double maxTilt, long ticks, TrajectoryRecorder recorder) {
+        Spacecraft sc = sim.getSpacecraft();
+        while (!sc.isLanded() && sc.getTime() < maxTime) {
+            sim.step();
+            maxTilt = Math.max(maxTilt, Math.abs(sc.angle));
+            ticks++;
+            if (recorder != null) {
+                recorder.record(sc, sim.getEngineThrust());
+            }
+        }
+        return new RunResult(sc.isLanded(), sc.getTouchdownSpeed(), sc.getTime(),
+                sc.getFuel(), sc.x, maxTilt, ticks);
+    }
+
+    /**
+     * Returns the content hash identifying this scenario (hex SHA-256).
+     * Doubles are hashed by their exact bit patterns.
+     */
+    public String key() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("model=").append(Spacecraft.MODEL_VERSION);
+        sb.append(";controllerVersion=").append(LandingPIDController.CONTROLLER_VERSION);
+        sb.append(";integrator=").append(INTEGRATOR);
+        sb.append(";vehicle=");
+        appendVehicle(sb);
+        sb.append(";controller=").append(controller);
+        sb.append(";gains=");
+        appendBits(sb, gains);
+        sb.append(";initial=");
+        appendBits(sb, x0, altitude0, vx0, vy0, angle0, fuel0);
+        sb.append(";dt=");
+        appendBits(sb, dt);
+        sb.append(";maxTime=");
+        appendBits(sb, maxTime);
+        if (controller == ControllerType.PID_EKF) {
+            sb.append(";estimatorVersion=").append(EstimatingController.ESTIMATOR_VERSION);
+            sb.append(";estimator=");
+            appendBits(sb, EKF_CONFIGURATION);
+            sb.append(";seed=").append(seed);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Every SpacecraftConstants value that Spacecraft.update or the PID engine mapping reads.
+    // Add new ones here, so that changing them invalidates cached results.
+    private static void appendVehicle(StringBuilder sb) {
+        sb.append(String.join(",", SpacecraftConstants.ENGINES)).append(',');
+        appendBits(sb, SpacecraftConstants.WEIGHT_EMP, SpacecraftConstants.MAIN_ENG_F,
+                SpacecraftConstants.SECOND_ENG_F, SpacecraftConstants.MAIN_BURN,
+                SpacecraftConstants.SECOND_BURN, SpacecraftConstants.INITIAL_ALTITUDE,
+                SpacecraftConstants.ENGINE_ARM_X, SpacecraftConstants.ENGINE_ARM_Y,
+                SpacecraftConstants.MOMENT_OF_INERTIA, SpacecraftConstants.ANGULAR_DAMPING,
+                SpacecraftConstants.ANGULAR_REST_SPEED, SpacecraftConstants.MIN_THRUST);
+    }
+
+    private static void appendBits(StringBuilder sb, double... values) {
+        for (double v : values) {
+            sb.append(Long.toHexString(Double.doubleToLongBits(v))).append(',');
+        }
+    }
+}
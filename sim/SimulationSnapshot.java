@@ -0,0 +1,87 @@
+package sim;
+
+import java.util.HashMap;
+import java.util.Map;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+import models.Trajectory;
+import terrain.TerrainMap;
+
+/**
+ * SimulationSnapshot.java
+ *
+ * An immutable checkpoint of the complete simulation state at one tick:
+ * the spacecraft kinematics and fuel, the gains and integral/previousError terms of all five
+ * LandingPIDController loops, and the engine commands. The numeric state is held in a few
+ * small primitive arrays; the path history is shared copy-on-write with the running simulation,
+ * so taking a snapshot costs the same whatever the flight length.
+ *
+ * restore() builds a new, independent FlightSimulator from the snapshot; any number of
+ * simulators can be restored from one snapshot, also concurrently.
+ */
+public final class SimulationSnapshot {
+    private final double[] spacecraftState = new double[Spacecraft.STATE_SIZE];
+    private final double[] gains;       // null when no PID controller was active
+    private final double[] loopState;   // null when no PID controller was active
+    private final double[] thrust = new double[SpacecraftConstants.ENGINES.length];
+    private final Trajectory path;
+    private final TerrainMap terrain;
+
+    private SimulationSnapshot(Spacecraft sc, LandingPIDController pid, Map<String, Double> engineThrust) {
+        sc.saveState(spacecraftState);
+        if (pid != null) {
+            gains = new double[15];
+            loopState = new double[10];
+            pid.copyGains(gains);
+            pid.copyLoopState(loopState);
+        } else {
+            gains = null;
+            loopState = null;
+        }
+        for (int i = 0; i < thrust.length; i++) {
+            thrust[i] = engineThrust.getOrDefault(SpacecraftConstants.ENGINES[i], 0.0);
+        }
+        path = sc.getTrajectory().fork();
+        terrain = sc.getTerrain();
+    }
+
+    /**
+     * Captures the current simulation state. Call from the thread that runs the simulation.
+     *
+     * @param sc           The spacecraft.
+     * @param pid          The active PID controller, or null if the spacecraft is flown manually.
+     * @param engineThrust The current engine commands.
+     * @return The snapshot.
+     */
+    public static SimulationSnapshot capture(Spacecraft sc, LandingPIDController pid, Map<String, Double> engineThrust) {
+        return new SimulationSnapshot(sc, pid, engineThrust);
+    }
+
+    /**
+     * Creates an independent simulator continuing from this snapshot.
+     *
+     * @param withController True to restore the PID controller (if one was captured).
+     * @return The restored simulator.
+     */
+    public FlightSimulator restore(boolean withController) {
+        Spacecraft sc = new Spacecraft();
+        sc.setTerrain(terrain);
+        sc.loadState(spacecraftState);
+        sc.setPath(path.fork());
+        Map<String, Double> engineThrust = new HashMap<>();
+        for (int i = 0; i < thrust.length; i++) {
+            engineThrust.put(SpacecraftConstants.ENGINES[i], thrust[i]);
+        }
+        FlightSimulator sim = new FlightSimulator(sc, engineThrust);
+        if (withController && gains != null) {
+            LandingPIDController pid = LandingPIDController.fromGains(gains);
+            pid.restoreLoopState(loopState);
+            sim.setController(pid);
+        }
+        return sim;
+    }
+
+    public boolean hasController() { return gains != null; }
+    public double getTime() { return spacecraftState[10]; }
+}
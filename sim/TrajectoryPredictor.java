@@ -0,0 +1,288 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+import terrain.TerrainMap;
+
+/**
+ * TrajectoryPredictor.java
+ *
+ * Forecasts where the running flight ends if the current commands (or the current PID controller)
+ * keep running, on a background worker thread. With the PID, engines under manual override keep
+ * their manual command, as the CommandBus arbitrates them in the real flight.
+ *
+ * The simulation thread calls update() every tick. It only copies the state (a few small arrays)
+ * when a new forecast is due: at once when the inputs changed (the caller passes a counter that
+ * changes with the commands or the controller), otherwise at most every refresh interval. An input
+ * change cancels the forecast in progress, since it no longer describes the flight.
+ *
+ * The worker flies a private copy of the spacecraft in stages of doubling length (5 s, 10 s,
+ * 20 s, ... of flight time) and publishes a Prediction after each stage, so a short forecast is
+ * available almost immediately and is extended while there is time. getPrediction() returns the
+ * latest one without locking; the caller never waits for the worker. Each prediction carries the
+ * generation of its request: publishing is a compare-and-set that never replaces a newer one, and
+ * getPrediction() ignores predictions from before the last clear(), even if the worker publishes
+ * one after clear() has run.
+ */
+public class TrajectoryPredictor implements AutoCloseable {
+    // Flight time of the first stage (s); each further stage doubles the horizon.
+    public static final double FIRST_HORIZON = 5;
+    // Forecast points are kept every POINT_INTERVAL seconds of flight.
+    public static final double POINT_INTERVAL = 0.5;
+    // Ticks between cancellation checks.
+    private static final int CHECK_TICKS = 256;
+
+    /** An immutable forecast. */
+    public static final class Prediction {
+        public final long sequence;         // increases with every published prediction
+        final long generation;              // of the request it was computed for
+        public final double fromTime;       // flight time of the state it starts from (s)
+        public final double horizon;        // flight time reached (s)
+        public final boolean landed;        // true if it ends with a touchdown
+        public final double touchdownSpeed; // m/s (0 if not landed)
+        public final double touchdownX;     // m (final x if not landed)
+        public final boolean complete;      // no further refinement will follow
+        private final double[] xs, ys;      // forecast path (world coordinates)
+
+        Prediction(long sequence, long generation, double fromTime, Spacecraft sc, double[] xs, double[] ys,
+                   int points, boolean complete) {
+            this.sequence = sequence;
+            this.generation = generation;
+            this.fromTime = fromTime;
+            this.horizon = sc.getTime();
+            this.landed = sc.isLanded();
+            this.touchdownSpeed = sc.getTouchdownSpeed();
+            this.touchdownX = sc.x;
+            this.complete = complete;
+            this.xs = Arrays.copyOf(xs, points);
+            this.ys = Arrays.copyOf(ys, points);
+        }
+
+        public boolean isSafe() {
+            return landed && touchdownSpeed <= SpacecraftConstants.SAFE_LANDING_SPEED;
+        }
+
+        public int size() { return xs.length; }
+        public double getX(int i) { return xs[i]; }
+        public double getY(int i) { return ys[i]; }
+    }
+
+    // A copy of the simulation state to forecast from.
+    private static final class Request {
+        final double[] state = new double[Spacecraft.STATE_SIZE];
+        final double[] thrust = new double[SpacecraftConstants.ENGINES.length];
+        final double[] gains;
+        final double[] loopState;
+        final double[] overrides;   // manual commands of overridden engines, NaN elsewhere; null if none
+        final TerrainMap terrain;
+        final long generation;
+
+        Request(Spacecraft sc, LandingPIDController pid, Map<String, Double> commands, double[] overrides,
+                long generation) {
+            sc.saveState(state);
+            for (int i = 0; i < thrust.length; i++) {
+                thrust[i] = commands.getOrDefault(SpacecraftConstants.ENGINES[i], 0.0);
+            }
+            if (pid != null) {
+                gains = new double[15];
+                loopState = new double[10];
+                pid.copyGains(gains);
+                pid.copyLoopState(loopState);
+            } else {
+                gains = null;
+                loopState = null;
+            }
+            this.overrides = pid != null && overrides != null ? overrides.clone() : null;
+            this.terrain = sc.getTerrain();
+            this.generation = generation;
+        }
+    }
+
+    private final double maxHorizon;
+    private final long refreshNanos;
+    private final Thread worker;
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    // Requests older than this generation are cancelled.
+    private volatile long validFrom;
+    // Predictions older than this generation are not shown (set by clear()).
+    private volatile long clearedAt;
+    private final AtomicReference<Prediction> prediction = new AtomicReference<>();
+    private volatile boolean running = true;
+    // Worker thread only.
+    private long sequence;
+    private double[] xs = new double[256], ys = new double[256];
+
+    // Simulation thread only.
+    private long lastInputs = Long.MIN_VALUE;
+    private long lastRequestNanos;
+    private long generation;
+
+    /**
+     * @param maxHorizon    Longest forecast (s of flight time from the current state).
+     * @param refreshMillis Minimum time between forecasts while the inputs do not change.
+     */
+    public TrajectoryPredictor(double maxHorizon, long refreshMillis) {
+        this.maxHorizon = maxHorizon;
+        this.refreshNanos = refreshMillis * 1_000_000L;
+        worker = new Thread(this::work, "trajectory-predictor");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Called by the simulation thread after each step. Copies the state if a new forecast is due.
+     *
+     * @param sc        The spacecraft.
+     * @param pid       The PID controller flying it, or null to hold the current commands.
+     * @param commands  The engine commands of the last step.
+     * @param overrides With a PID: the manual command per engine (SpacecraftConstants.ENGINES
+     *                  order) that replaces the PID's, NaN for engines the PID commands; or null.
+     *                  Copied when a forecast is due.
+     * @param inputs    A counter that changes whenever the commands, the overrides or the
+     *                  controller change other than by the controller itself.
+     */
+    public void update(Spacecraft sc, LandingPIDController pid, Map<String, Double> commands, double[] overrides,
+                       long inputs) {
+        long now = System.nanoTime();
+        boolean changed = inputs != lastInputs;
+        if (!changed && now - lastRequestNanos < refreshNanos) {
+            return;
+        }
+        generation++;
+        if (changed) {
+            // The forecast in progress describes the old inputs.
+            validFrom = generation;
+        }
+        lastInputs = inputs;
+        lastRequestNanos = now;
+        pending.set(new Request(sc, pid, commands, overrides, generation));
+        LockSupport.unpark(worker);
+    }
+
+    /** Returns the latest forecast (null before the first one and after clear()). Never blocks. */
+    public Prediction getPrediction() {
+        Prediction p = prediction.get();
+        return p != null && p.generation >= clearedAt ? p : null;
+    }
+
+    /** Drops the current forecast, e.g. when the flight is restarted. */
+    public void clear() {
+        clearedAt = validFrom = ++generation;
+        lastInputs = Long.MIN_VALUE;
+        pending.set(null);
+        prediction.set(null);
+    }
+
+    private void work() {
+        while (running) {
+            Request r = pending.getAndSet(null);
+            if (r == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            forecast(r);
+        }
+    }
+
+    // Flies the request in stages of doubling horizon and publishes after each one.
+    private void forecast(Request r) {
+        Spacecraft sc = new Spacecraft();
+        sc.setTerrain(r.terrain);
+        sc.loadState(r.state);
+        FlightSimulator sim = new FlightSimulator(sc);
+        for (int i = 0; i < r.thrust.length; i++) {
+            sim.getEngineThrust().put(SpacecraftConstants.ENGINES[i], r.thrust[i]);
+        }
+        if (r.gains != null) {
+            LandingPIDController pid = LandingPIDController.fromGains(r.gains);
+            pid.restoreLoopState(r.loopState);
+            sim.setController(pid);
+            if (r.overrides != null) {
+                sim.setFilter(overrideFilter(r.overrides));
+            }
+        }
+        double start = sc.getTime();
+        double nextPoint = start;
+        int points = 0;
+        long ticks = 0;
+        for (double horizon = FIRST_HORIZON; ; horizon = Math.min(2 * horizon, maxHorizon)) {
+            double end = start + horizon;
+            while (!sc.isLanded() && sc.getTime() < end) {
+                sim.step();
+                if (sc.getTime() >= nextPoint) {
+                    if (points == xs.length) {
+                        xs = Arrays.copyOf(xs, 2 * points);
+                        ys = Arrays.copyOf(ys, 2 * points);
+                    }
+                    xs[points] = sc.x;
+                    ys[points] = sc.y;
+                    points++;
+                    nextPoint += POINT_INTERVAL;
+                }
+                if (++ticks % CHECK_TICKS == 0) {
+                    if (isCancelled(r)) {
+                        return;
+                    }
+                    // The forecast does not need the path the spacecraft records.
+                    sc.getTrajectory().clear();
+                }
+            }
+            if (isCancelled(r)) {
+                return;
+            }
+            boolean complete = sc.isLanded() || horizon >= maxHorizon;
+            if (sc.isLanded() && (points == 0 || xs[points - 1] != sc.x || ys[points - 1] != sc.y)) {
+                if (points == xs.length) {
+                    xs = Arrays.copyOf(xs, points + 1);
+                    ys = Arrays.copyOf(ys, points + 1);
+                }
+                xs[points] = sc.x;
+                ys[points] = sc.y;
+                points++;
+            }
+            if (!publish(new Prediction(++sequence, r.generation, start, sc, xs, ys, points, complete)) || complete) {
+                return;
+            }
+        }
+    }
+
+    // Replaces the PID's command of each overridden engine by the manual one.
+    private static CommandFilter overrideFilter(double[] overrides) {
+        return (sc, engineThrust) -> {
+            for (int i = 0; i < overrides.length; i++) {
+                if (!Double.isNaN(overrides[i])) {
+                    engineThrust.put(SpacecraftConstants.ENGINES[i], overrides[i]);
+                }
+            }
+        };
+    }
+
+    // Publishes a prediction unless its request was cancelled or a newer one is already published.
+    private boolean publish(Prediction p) {
+        while (true) {
+            Prediction old = prediction.get();
+            if (!running || p.generation < validFrom || (old != null && old.generation > p.generation)) {
+                return false;
+            }
+            if (prediction.compareAndSet(old, p)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isCancelled(Request r) {
+        return !running || r.generation < validFrom;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+}
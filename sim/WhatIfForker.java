@@ -0,0 +1,149 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import constants.SpacecraftConstants;
+import models.Spacecraft;
+
+/**
+ * WhatIfForker.java
+ *
+ * Answers "what happens if ..." questions from any moment of a flight.
+ * Several branches are restored from one SimulationSnapshot and flown in parallel, each with its
+ * own scripted change to the commands (abort now, abort later, engine failure, ...), until they
+ * land or reach the time horizon.
+ */
+public class WhatIfForker implements AutoCloseable {
+
+    /** One alternative future: a name, whether the PID keeps flying, and a command change. */
+    public static class Branch {
+        public final String name;
+        public final boolean keepController;
+        public final CommandFilter filter;
+
+        public Branch(String name, boolean keepController, CommandFilter filter) {
+            this.name = name;
+            this.keepController = keepController;
+            this.filter = filter;
+        }
+    }
+
+    /** Outcome of one branch. */
+    public static class BranchResult {
+        public final String name;
+        public final boolean landed;
+        public final double touchdownSpeed;  // m/s (0 if not landed)
+        public final double flightTime;      // s since the start of the flight
+        public final double fuel;            // liters left
+        public final double x;               // final horizontal position (m)
+        public final double altitude;        // final altitude (m)
+        public final Spacecraft spacecraft;  // final state, including the path
+
+        BranchResult(String name, Spacecraft sc) {
+            this.name = name;
+            this.landed = sc.isLanded();
+            this.touchdownSpeed = sc.getTouchdownSpeed();
+            this.flightTime = sc.getTime();
+            this.fuel = sc.getFuel();
+            this.x = sc.x;
+            this.altitude = sc.getAltitude();
+            this.spacecraft = sc;
+        }
+
+        public boolean isSafe() {
+            return landed && touchdownSpeed <= SpacecraftConstants.SAFE_LANDING_SPEED;
+        }
+    }
+
+    private final ExecutorService pool;
+
+    /**
+     * @param threads Number of worker threads.
+     */
+    public WhatIfForker(int threads) {
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "what-if");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Creates a forker with one thread per available core. */
+    public WhatIfForker() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Flies all branches from the snapshot in parallel and waits for them.
+     *
+     * @param from     The checkpoint to branch from.
+     * @param branches The alternatives to fly.
+     * @param horizon  Flight time (s) after the snapshot at which a branch is stopped.
+     * @return One result per branch, in the same order.
+     */
+    public List<BranchResult> run(SimulationSnapshot from, List<Branch> branches, double horizon) {
+        List<Future<BranchResult>> futures = new ArrayList<>();
+        double maxTime = from.getTime() + horizon;
+        for (Branch branch : branches) {
+            futures.add(pool.submit(() -> {
+                FlightSimulator sim = from.restore(branch.keepController);
+                sim.setFilter(branch.filter);
+                sim.runUntilLanded(maxTime);
+                return new BranchResult(branch.name, sim.getSpacecraft());
+            }));
+        }
+        List<BranchResult> results = new ArrayList<>();
+        try {
+            for (Future<BranchResult> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for what-if branches", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("What-if branch failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * A command change that sets fixed commands from a given time on.
+     *
+     * @param startTime Flight time (s) from which the commands apply.
+     * @param commands  Engine commands to apply (engines not listed keep their current command).
+     * @return The filter.
+     */
+    public static CommandFilter commandsFrom(double startTime, Map<String, Double> commands) {
+        return (sc, engineThrust) -> {
+            if (sc.getTime() >= startTime) {
+                engineThrust.putAll(commands);
+            }
+        };
+    }
+
+    /**
+     * A command change that shuts all engines down from a given time on.
+     *
+     * @param startTime Flight time (s) from which all engines are off.
+     * @return The filter.
+     */
+    public static CommandFilter enginesOffFrom(double startTime) {
+        return (sc, engineThrust) -> {
+            if (sc.getTime() >= startTime) {
+                for (String eng : SpacecraftConstants.ENGINES) {
+                    engineThrust.put(eng, 0.0);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,124 @@
+package stats;
+
+import java.util.Locale;
+import sim.RunResult;
+
+/**
+ * OutcomeStats.java
+ *
+ * Streaming summary of many flights (Monte Carlo, batch runs): the number of safe, crashed and
+ * timed-out runs, and for each outcome metric a RunningStats (mean, standard deviation, extremes)
+ * and a QuantileSketch (p50, p95, p99.9). The memory used is the same for ten runs and for ten
+ * million, and nothing is allocated per run.
+ *
+ * Each worker thread fills its own instance; merge() combines them when the runs are done, so the
+ * workers never contend on shared counters.
+ */
+public final class OutcomeStats {
+    /** The metrics summarized for every run. */
+    public enum Metric {
+        TOUCHDOWN_SPEED("touchdown speed", "m/s"),  // landed runs only
+        FUEL_LEFT("fuel left", "L"),
+        FLIGHT_TIME("flight time", "s"),
+        LATERAL_MISS("lateral miss", "m"),          // |final x|
+        MAX_TILT("max tilt", "deg");
+
+        public final String label;
+        public final String unit;
+
+        Metric(String label, String unit) {
+            this.label = label;
+            this.unit = unit;
+        }
+    }
+
+    // Quantiles printed by toString().
+    public static final double[] REPORTED_QUANTILES = {0.5, 0.95, 0.999};
+
+    private static final Metric[] METRICS = Metric.values();
+    private final RunningStats[] moments = new RunningStats[METRICS.length];
+    private final QuantileSketch[] sketches = new QuantileSketch[METRICS.length];
+    private long safe, crashed, timedOut;
+
+    public OutcomeStats() {
+        for (int i = 0; i < METRICS.length; i++) {
+            moments[i] = new RunningStats();
+            sketches[i] = new QuantileSketch();
+        }
+    }
+
+    /**
+     * Adds the outcome of one flight.
+     *
+     * @param r The outcome.
+     */
+    public void add(RunResult r) {
+        if (r.isSafe()) safe++;
+        else if (r.landed) crashed++;
+        else timedOut++;
+        if (r.landed) {
+            add(Metric.TOUCHDOWN_SPEED, r.touchdownSpeed);
+        }
+        add(Metric.FUEL_LEFT, r.fuelLeft);
+        add(Metric.FLIGHT_TIME, r.flightTime);
+        add(Metric.LATERAL_MISS, Math.abs(r.lateralMiss));
+        add(Metric.MAX_TILT, r.maxTilt);
+    }
+
+    private void add(Metric m, double x) {
+        moments[m.ordinal()].add(x);
+        sketches[m.ordinal()].add(x);
+    }
+
+    /**
+     * Adds all runs summarized by another instance (e.g. another worker's).
+     *
+     * @param o The statistics to merge in.
+     */
+    public void merge(OutcomeStats o) {
+        safe += o.safe;
+        crashed += o.crashed;
+        timedOut += o.timedOut;
+        for (int i = 0; i < METRICS.length; i++) {
+            moments[i].merge(o.moments[i]);
+            sketches[i].merge(o.sketches[i]);
+        }
+    }
+
+    public long getRuns() { return safe + crashed + timedOut; }
+    public long getSafe() { return safe; }
+    public long getCrashed() { return crashed; }
+    public long getTimedOut() { return timedOut; }
+    public RunningStats getMoments(Metric m) { return moments[m.ordinal()]; }
+
+    /**
+     * Estimates a quantile of one metric.
+     *
+     * @param m The metric.
+     * @param q The quantile in [0, 1].
+     * @return The estimate (NaN without values).
+     */
+    public double quantile(Metric m, double q) {
+        return sketches[m.ordinal()].quantile(q);
+    }
+
+    /** A table with one row per metric. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%d runs: %d safe, %d crashed, %d timed out%n",
+                getRuns(), safe, crashed, timedOut));
+        sb.append(String.format(Locale.ROOT, "%-22s %9s %10s %10s %10s %10s %10s %10s %10s%n",
+                "metric", "n", "mean", "stddev", "min", "p50", "p95", "p99.9", "max"));
+        for (Metric m : METRICS) {
+            RunningStats s = moments[m.ordinal()];
+            sb.append(String.format(Locale.ROOT, "%-22s %9d %10.3f %10.3f %10.3f",
+                    m.label + " (" + m.unit + ")", s.getCount(), s.getMean(), s.getStdDev(), s.getMin()));
+            for (double q : REPORTED_QUANTILES) {
+                sb.append(String.format(Locale.ROOT, " %10.3f", quantile(m, q)));
+            }
+            sb.append(String.format(Locale.ROOT, " %10.3f%n", s.getMax()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,265 @@
+package stats;
+
+/**
+ * QuantileSketch.java
+ *
+ * A merging t-digest (Dunning and Ertl): estimates quantiles of a stream of values in constant
+ * memory. The values are summarized by weighted centroids. The log-odds scale function
+ * k(q) = compression / Z * log(q / (1 - q)) lets a centroid hold about Z / compression * q(1 - q) of
+ * the weight, so centroids are large in the middle of the distribution and tiny near both ends,
+ * and extreme quantiles such as p99.9 stay accurate. Z = 4 log(n / compression) + 24 keeps the
+ * number of centroids below the compression for any n.
+ *
+ * New values are collected in a buffer; when it is full the buffer and the centroids are sorted
+ * together and merged in one pass. All arrays are allocated in the constructor, so adding values
+ * never allocates. merge() adds the centroids of another digest, so each worker thread can fill
+ * its own digest and the digests are combined at the end.
+ * Not thread-safe.
+ */
+public final class QuantileSketch {
+    public static final double DEFAULT_COMPRESSION = 200;
+
+    private final double compression;
+    // Merged centroids, sorted by mean.
+    private final double[] mean, weight;
+    private int centroids;
+    private double totalWeight;
+    // Unmerged values; room is left at the end to sort the centroids in with them.
+    private final double[] bufMean, bufWeight;
+    private final int bufferCapacity;
+    private int buffered;
+    private double bufferedWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression Accuracy parameter (delta): larger is more accurate and uses more memory.
+     */
+    public QuantileSketch(double compression) {
+        if (!(compression >= 10)) {
+            throw new IllegalArgumentException("Compression must be at least 10");
+        }
+        this.compression = compression;
+        int maxCentroids = (int) Math.ceil(compression) + 10;
+        this.mean = new double[maxCentroids];
+        this.weight = new double[maxCentroids];
+        this.bufferCapacity = (int) (5 * compression);
+        this.bufMean = new double[bufferCapacity + maxCentroids];
+        this.bufWeight = new double[bufferCapacity + maxCentroids];
+    }
+
+    /**
+     * Adds one value.
+     *
+     * @param x The value (NaN values are ignored).
+     */
+    public void add(double x) {
+        add(x, 1);
+    }
+
+    private void add(double x, double w) {
+        if (Double.isNaN(x)) {
+            return;
+        }
+        if (buffered == bufferCapacity) {
+            compress();
+        }
+        bufMean[buffered] = x;
+        bufWeight[buffered] = w;
+        buffered++;
+        bufferedWeight += w;
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * Adds all values summarized by another digest. The other one is only compressed.
+     *
+     * @param o The digest to merge in.
+     */
+    public void merge(QuantileSketch o) {
+        o.compress();
+        for (int i = 0; i < o.centroids; i++) {
+            add(o.mean[i], o.weight[i]);
+        }
+        if (o.min < min) min = o.min;
+        if (o.max > max) max = o.max;
+    }
+
+    // Merges the buffer into the centroids.
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = buffered;
+        System.arraycopy(mean, 0, bufMean, n, centroids);
+        System.arraycopy(weight, 0, bufWeight, n, centroids);
+        n += centroids;
+        sort(bufMean, bufWeight, 0, n - 1);
+        double total = totalWeight + bufferedWeight;
+
+        // Greedy pass: grow the current centroid while its right edge stays within one unit of the
+        // scale function from its left edge.
+        double z = 4 * Math.log(Math.max(1, total / compression)) + 24;
+        int c = 0;
+        mean[0] = bufMean[0];
+        weight[0] = bufWeight[0];
+        double before = 0;  // Weight left of the current centroid
+        double limit = total * qLimit(0, z);
+        for (int i = 1; i < n; i++) {
+            double w = bufWeight[i];
+            if (before + weight[c] + w <= limit || c == mean.length - 1) {
+                weight[c] += w;
+                mean[c] += (bufMean[i] - mean[c]) * w / weight[c];
+            } else {
+                before += weight[c];
+                limit = total * qLimit(before / total, z);
+                c++;
+                mean[c] = bufMean[i];
+                weight[c] = w;
+            }
+        }
+        centroids = c + 1;
+        totalWeight = total;
+        buffered = 0;
+        bufferedWeight = 0;
+    }
+
+    // Largest right edge (as a quantile) of a centroid whose left edge is at quantile q:
+    // the inverse of k(q) + 1. The first and last centroids are therefore single values.
+    private double qLimit(double q, double z) {
+        if (q <= 0) {
+            return 0;
+        }
+        if (q >= 1) {
+            return 1;
+        }
+        return 1 / (1 + Math.exp(-(Math.log(q / (1 - q)) + z / compression)));
+    }
+
+    /**
+     * Estimates a quantile.
+     *
+     * @param q The quantile in [0, 1] (e.g. 0.999 for p99.9).
+     * @return The estimate, or NaN without values.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        double n = totalWeight;
+        double target = q * n;
+        if (centroids == 1) {
+            return min + q * (max - min);
+        }
+        // Left tail: between the minimum (rank 0.5) and the center of the first centroid.
+        double w0 = weight[0];
+        if (target < w0 / 2) {
+            if (w0 == 1 || target < 0.5) {
+                return min;
+            }
+            return min + (target - 0.5) / (w0 / 2 - 0.5) * (mean[0] - min);
+        }
+        // Right tail: between the center of the last centroid and the maximum.
+        double wl = weight[centroids - 1];
+        if (n - target < wl / 2) {
+            if (wl == 1 || n - target < 0.5) {
+                return max;
+            }
+            return max - (n - target - 0.5) / (wl / 2 - 0.5) * (max - mean[centroids - 1]);
+        }
+        // Interpolate between the centers of the two centroids around the target rank. A centroid of
+        // weight 1 is an exact value and covers half a rank on either side of its center.
+        double center = w0 / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double dw = (weight[i] + weight[i + 1]) / 2;
+            if (center + dw > target) {
+                double leftUnit = 0, rightUnit = 0;
+                if (weight[i] == 1) {
+                    if (target - center < 0.5) {
+                        return mean[i];
+                    }
+                    leftUnit = 0.5;
+                }
+                if (weight[i + 1] == 1) {
+                    if (center + dw - target <= 0.5) {
+                        return mean[i + 1];
+                    }
+                    rightUnit = 0.5;
+                }
+                double z1 = target - center - leftUnit;
+                double z2 = center + dw - target - rightUnit;
+                return (mean[i] * z2 + mean[i + 1] * z1) / (z1 + z2);
+            }
+            center += dw;
+        }
+        return mean[centroids - 1];
+    }
+
+    // Sorts keys[lo..hi] ascending, moving values along (quicksort, insertion sort for short ranges).
+    private static void sort(double[] keys, double[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            // Median of three as the pivot.
+            if (keys[mid] < keys[lo]) swap(keys, values, mid, lo);
+            if (keys[hi] < keys[lo]) swap(keys, values, hi, lo);
+            if (keys[hi] < keys[mid]) swap(keys, values, hi, mid);
+            double pivot = keys[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller part, loop on the larger one.
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            double k = keys[i], v = values[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            values[j + 1] = v;
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        double v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+
+    // Number of values added (including merged digests).
+    public long getCount() { return (long) (totalWeight + bufferedWeight); }
+    public double getMin() { return getCount() > 0 ? min : Double.NaN; }
+    public double getMax() { return getCount() > 0 ? max : Double.NaN; }
+    public double getCompression() { return compression; }
+}
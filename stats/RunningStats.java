@@ -0,0 +1,72 @@
+package stats;
+
+/**
+ * RunningStats.java
+ *
+ * Count, mean, variance, minimum and maximum of a stream of values in constant memory.
+ * The mean and variance use Welford's update, which stays accurate where the textbook
+ * sum-of-squares formula cancels catastrophically (large means, small spreads).
+ *
+ * Two instances filled independently (e.g. by two worker threads) can be combined with merge(),
+ * which gives the same statistics as one instance fed both streams, up to rounding.
+ * Not thread-safe: use one instance per thread and merge at the end.
+ */
+public final class RunningStats {
+    private long count;
+    private double mean;
+    private double m2;   // Sum of squared deviations from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds one value.
+     *
+     * @param x The value (NaN values are ignored).
+     */
+    public void add(double x) {
+        if (Double.isNaN(x)) {
+            return;
+        }
+        count++;
+        double d = x - mean;
+        mean += d / count;
+        m2 += d * (x - mean);
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * Adds all values of another instance (Chan's parallel update). The other one is unchanged.
+     *
+     * @param o The statistics to merge in.
+     */
+    public void merge(RunningStats o) {
+        if (o.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = o.count;
+            mean = o.mean;
+            m2 = o.m2;
+            min = o.min;
+            max = o.max;
+            return;
+        }
+        long n = count + o.count;
+        double d = o.mean - mean;
+        mean += d * o.count / n;
+        m2 += o.m2 + d * d * ((double) count * o.count / n);
+        count = n;
+        min = Math.min(min, o.min);
+        max = Math.max(max, o.max);
+    }
+
+    public long getCount() { return count; }
+    // Mean, sample variance and standard deviation (NaN without values, or with one for the variance).
+    public double getMean() { return count > 0 ? mean : Double.NaN; }
+    public double getVariance() { return count > 1 ? m2 / (count - 1) : Double.NaN; }
+    public double getStdDev() { return Math.sqrt(getVariance()); }
+    // Extremes (NaN without values).
+    public double getMin() { return count > 0 ? min : Double.NaN; }
+    public double getMax() { return count > 0 ? max : Double.NaN; }
+}
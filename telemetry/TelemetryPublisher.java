@@ -0,0 +1,280 @@
+package telemetry;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import constants.SpacecraftConstants;
+import controllers.LandingPIDController;
+import models.Spacecraft;
+
+/**
+ * TelemetryPublisher.java
+ *
+ * Streams simulation telemetry to external tools (ground station, plotting) over a loopback socket.
+ *
+ * The simulation thread calls record() once per physics tick and flush() once per frame. Ticks are
+ * packed into preallocated direct buffers ("batches"); flush() hands the batch to a background sender
+ * thread through a bounded queue and never blocks. If the sender falls behind and no free batch is
+ * available, ticks are dropped and counted instead of stalling the simulation.
+ *
+ * Transports:
+ *   - UDP: each batch is sent as one datagram to 127.0.0.1:port.
+ *   - TCP: the publisher listens on 127.0.0.1:port and streams batches to one connected client.
+ *     Batches produced while no client is connected are counted as unsent.
+ *
+ * Wire format (big-endian). Each batch is a 32-byte header followed by tickCount records:
+ *   Header:  int magic ("LMST"), short version, short tickCount, long batchSeq,
+ *            long droppedTicks (cumulative), int recordBytes, int reserved.
+ *   Record (160 bytes):
+ *            long tick,
+ *            double time, x, y, vx, vy, altitude, angle, angularVelocity, fuel,
+ *            float thrust[9] (in SpacecraftConstants.ENGINES order),
+ *            float pid[10] ((integral, previousError) for the five LandingPIDController loops),
+ *            int flags (bit 0: landed, bit 1: PID controller active).
+ */
+public class TelemetryPublisher implements AutoCloseable {
+    public static final int MAGIC = 0x4C4D5354; // "LMST"
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 32;
+    public static final int RECORD_BYTES = 160;
+    public static final int MAX_TICKS_PER_BATCH = 64;
+    private static final int POOL_SIZE = 8;
+
+    public enum Transport { UDP, TCP }
+
+    /** A reusable header + payload pair sent with a single gathering write. */
+    private static class Batch {
+        final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES);
+        final ByteBuffer payload = ByteBuffer.allocateDirect(RECORD_BYTES * MAX_TICKS_PER_BATCH);
+        final ByteBuffer[] gather = {header, payload};
+        int ticks;
+
+        void clear() {
+            header.clear();
+            payload.clear();
+            ticks = 0;
+        }
+    }
+
+    private final Transport transport;
+    private final InetSocketAddress address;
+    private final ArrayBlockingQueue<Batch> free = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final ArrayBlockingQueue<Batch> ready = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    // Owned by the simulation thread.
+    private Batch current;
+    private long tick;
+    private long batchSeq;
+    private final double[] loopState = new double[10];
+    private volatile LandingPIDController controller;
+
+    // Counters (written by both threads, read by anyone).
+    private final AtomicLong sentBatches = new AtomicLong();
+    private final AtomicLong sentTicks = new AtomicLong();
+    private final AtomicLong droppedTicks = new AtomicLong();
+    private final AtomicLong unsentTicks = new AtomicLong();
+
+    // Owned by the sender thread.
+    private DatagramChannel udp;
+    private ServerSocketChannel server;
+    private SocketChannel client;
+
+    /**
+     * Opens the socket and starts the sender thread.
+     *
+     * @param transport UDP or TCP.
+     * @param port      Loopback port to send to (UDP) or listen on (TCP).
+     * @throws IOException If the socket cannot be opened.
+     */
+    public TelemetryPublisher(Transport transport, int port) throws IOException {
+        this.transport = transport;
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            free.add(new Batch());
+        }
+        if (transport == Transport.UDP) {
+            udp = DatagramChannel.open();
+            udp.connect(address);
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(address);
+            server.configureBlocking(false);
+        }
+        sender = new Thread(this::sendLoop, "telemetry-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Sets the PID controller whose internal state is included in each record.
+     *
+     * @param pid The active controller, or null when no controller is active.
+     */
+    public void setController(LandingPIDController pid) {
+        this.controller = pid;
+    }
+
+    /**
+     * Appends one tick to the current batch. Called from the simulation thread; never blocks.
+     *
+     * @param sc           The spacecraft after its update.
+     * @param engineThrust The thrust commands applied in this tick.
+     */
+    public void record(Spacecraft sc, Map<String, Double> engineThrust) {
+        long t = tick++;
+        if (current != null && current.ticks == MAX_TICKS_PER_BATCH) {
+            flush();
+        }
+        if (current == null) {
+            current = free.poll();
+            if (current == null) {
+                // Every batch is waiting on the sender: the consumer is too slow.
+                droppedTicks.incrementAndGet();
+                return;
+            }
+        }
+        ByteBuffer b = current.payload;
+        b.putLong(t);
+        b.putDouble(sc.getTime());
+        b.putDouble(sc.x);
+        b.putDouble(sc.y);
+        b.putDouble(sc.vx);
+        b.putDouble(sc.vy);
+        b.putDouble(sc.altitude);
+        b.putDouble(sc.angle);
+        b.putDouble(sc.angularVelocity);
+        b.putDouble(sc.fuel);
+        for (String eng : SpacecraftConstants.ENGINES) {
+            Double thrust = engineThrust.get(eng);
+            b.putFloat(thrust == null ? 0f : thrust.floatValue());
+        }
+        LandingPIDController pid = controller;
+        if (pid != null) {
+            pid.copyLoopState(loopState);
+        }
+        for (double v : loopState) {
+            b.putFloat(pid != null ? (float) v : 0f);
+        }
+        int flags = (sc.isLanded() ? 1 : 0) | (pid != null ? 2 : 0);
+        b.putInt(flags);
+        current.ticks++;
+    }
+
+    /**
+     * Hands the ticks recorded so far to the sender thread. Called once per frame; never blocks.
+     */
+    public void flush() {
+        if (current == null || current.ticks == 0) {
+            return;
+        }
+        ByteBuffer h = current.header;
+        h.putInt(MAGIC);
+        h.putShort(VERSION);
+        h.putShort((short) current.ticks);
+        h.putLong(batchSeq++);
+        h.putLong(droppedTicks.get());
+        h.putInt(RECORD_BYTES);
+        h.putInt(0);
+        h.flip();
+        current.payload.flip();
+        if (!ready.offer(current)) {
+            droppedTicks.addAndGet(current.ticks);
+            current.clear();
+            return;
+        }
+        current = null;
+    }
+
+    private void sendLoop() {
+        while (running) {
+            Batch batch;
+            try {
+                batch = ready.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch == null) {
+                continue;
+            }
+            if (send(batch)) {
+                sentBatches.incrementAndGet();
+                sentTicks.addAndGet(batch.ticks);
+            } else {
+                unsentTicks.addAndGet(batch.ticks);
+            }
+            batch.clear();
+            free.add(batch);
+        }
+    }
+
+    // Writes one batch; returns false if there was nobody to send it to.
+    private boolean send(Batch batch) {
+        try {
+            if (transport == Transport.UDP) {
+                udp.write(batch.gather);
+                return true;
+            }
+            if (client == null) {
+                client = server.accept();
+                if (client == null) {
+                    return false;
+                }
+                client.configureBlocking(true);
+            }
+            while (batch.payload.hasRemaining()) {
+                client.write(batch.gather);
+            }
+            return true;
+        } catch (IOException e) {
+            // Receiver went away (UDP port unreachable or TCP client disconnected).
+            closeClient();
+            return false;
+        }
+    }
+
+    private void closeClient() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+            client = null;
+        }
+    }
+
+    // Counters.
+    public long getSentBatches() { return sentBatches.get(); }
+    public long getSentTicks() { return sentTicks.get(); }
+    public long getDroppedTicks() { return droppedTicks.get(); }
+    public long getUnsentTicks() { return unsentTicks.get(); }
+
+    /**
+     * Stops the sender thread and closes the socket.
+     */
+    @Override
+    public void close() {
+        running = false;
+        sender.interrupt();
+        try {
+            sender.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeClient();
+        try {
+            if (udp != null) udp.close();
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
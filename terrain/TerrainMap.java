@@ -0,0 +1,106 @@
+package terrain;
+
+import java.nio.file.Path;
+
+/**
+ * TerrainMap.java
+ *
+ * Answers "how high is the ground here?" for the simulation.
+ * Heights come from a tiled DEM read through a shared TileCache and are bilinearly
+ * interpolated between the four surrounding samples. Sample (i, j) of the global grid
+ * lies at east = i * spacing, north = j * spacing, relative to the landing target.
+ *
+ * A single TerrainMap is meant to be shared by every Spacecraft in the process, so all
+ * landers read from one cache. Without a DEM directory the map is flat (height 0), which
+ * reproduces the original flat-surface behavior.
+ */
+public class TerrainMap {
+    private final TileCache cache;
+    private final int samples;
+    private final double spacing;
+
+    private static final TerrainMap FLAT = new TerrainMap(null, 1);
+
+    /**
+     * @param cache   Tile cache to read from (null for a flat surface).
+     * @param spacing Distance between neighbouring samples (meters).
+     */
+    public TerrainMap(TileCache cache, double spacing) {
+        this.cache = cache;
+        this.samples = cache == null ? 1 : cache.getSamples();
+        this.spacing = spacing;
+    }
+
+    /**
+     * Opens a DEM directory.
+     *
+     * @param directory Directory with the tile files.
+     * @param samples   Samples along each side of a tile.
+     * @param spacing   Distance between samples (meters).
+     * @param maxTiles  Maximum number of tiles mapped at once.
+     * @return A terrain map backed by a new tile cache.
+     */
+    public static TerrainMap open(Path directory, int samples, double spacing, int maxTiles) {
+        return new TerrainMap(new TileCache(directory, samples, maxTiles), spacing);
+    }
+
+    /** Returns the shared flat terrain (height 0 everywhere). */
+    public static TerrainMap flat() {
+        return FLAT;
+    }
+
+    /**
+     * Returns the interpolated ground height.
+     *
+     * @param east  East coordinate (meters, simulation x).
+     * @param north North coordinate (meters; 0 for the planar simulation).
+     * @return Height above the landing datum (meters).
+     */
+    public double heightAt(double east, double north) {
+        if (cache == null) {
+            return 0;
+        }
+        double gx = east / spacing;
+        double gy = north / spacing;
+        int i = (int) Math.floor(gx);
+        int j = (int) Math.floor(gy);
+        double fx = gx - i;
+        double fy = gy - j;
+
+        int col = Math.floorMod(i, samples);
+        int row = Math.floorMod(j, samples);
+        double h00, h10, h01, h11;
+        if (col + 1 < samples && row + 1 < samples) {
+            // Fast path: all four samples are in the same tile.
+            TerrainTile tile = cache.get(Math.floorDiv(i, samples), Math.floorDiv(j, samples));
+            if (tile == null) {
+                return 0;
+            }
+            h00 = tile.sample(col, row);
+            h10 = tile.sample(col + 1, row);
+            h01 = tile.sample(col, row + 1);
+            h11 = tile.sample(col + 1, row + 1);
+        } else {
+            // The cell straddles a tile border.
+            h00 = sample(i, j);
+            h10 = sample(i + 1, j);
+            h01 = sample(i, j + 1);
+            h11 = sample(i + 1, j + 1);
+        }
+        double h0 = h00 + (h10 - h00) * fx;
+        double h1 = h01 + (h11 - h01) * fx;
+        return h0 + (h1 - h0) * fy;
+    }
+
+    // Reads one sample of the global grid (0 outside coverage).
+    private double sample(int i, int j) {
+        TerrainTile tile = cache.get(Math.floorDiv(i, samples), Math.floorDiv(j, samples));
+        if (tile == null) {
+            return 0;
+        }
+        return tile.sample(Math.floorMod(i, samples), Math.floorMod(j, samples));
+    }
+
+    public boolean isFlat() { return cache == null; }
+    public TileCache getCache() { return cache; }
+}
@@ -0,0 +1,72 @@
+package terrain;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TerrainTile.java
+ *
+ * One square tile of the digital elevation model (DEM).
+ * A tile file is a raw raster of little-endian 32-bit floats (heights in meters above the
+ * landing datum), stored row by row: sample (col, row) is at index row * samples + col.
+ *
+ * The file is memory-mapped read-only, so heights are paged in by the operating system
+ * on demand and never copied onto the Java heap. Reads use absolute indexing only, which
+ * does not touch the buffer position, so one tile can be shared by many threads.
+ */
+public class TerrainTile {
+    private final int tileX, tileY;
+    private final int samples;
+    private final FloatBuffer heights;
+
+    private TerrainTile(int tileX, int tileY, int samples, FloatBuffer heights) {
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.samples = samples;
+        this.heights = heights;
+    }
+
+    /**
+     * Memory-maps a tile file.
+     *
+     * @param file    The tile file.
+     * @param tileX   Tile column index in the tile grid.
+     * @param tileY   Tile row index in the tile grid.
+     * @param samples Number of samples along each side of the tile.
+     * @return The mapped tile.
+     * @throws IOException If the file cannot be opened or has the wrong size.
+     */
+    public static TerrainTile map(Path file, int tileX, int tileY, int samples) throws IOException {
+        long expected = (long) samples * samples * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != expected) {
+                throw new IOException("Tile " + file + " has " + channel.size()
+                        + " bytes, expected " + expected);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return new TerrainTile(tileX, tileY, samples, mapped.asFloatBuffer());
+        }
+    }
+
+    /**
+     * Returns the height of one sample of this tile.
+     *
+     * @param col Column inside the tile [0, samples).
+     * @param row Row inside the tile [0, samples).
+     * @return Height in meters.
+     */
+    public float sample(int col, int row) {
+        return heights.get(row * samples + col);
+    }
+
+    public int getTileX() { return tileX; }
+    public int getTileY() { return tileY; }
+    public int getSamples() { return samples; }
+}
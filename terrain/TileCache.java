@@ -0,0 +1,182 @@
+package terrain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TileCache.java
+ *
+ * A bounded, thread-safe cache of memory-mapped terrain tiles with approximate LRU eviction.
+ * At most maxTiles mappings are kept alive; when a new tile is loaded beyond that, the one
+ * used least recently is dropped. Dropped mappings are released by the garbage collector
+ * (Java has no explicit unmap), so the bound limits address space rather than heap usage.
+ *
+ * Reads take no lock. A small direct-mapped table of recently used tiles, indexed by a hash of
+ * the grid index, answers most queries without touching the map or boxing a key; the rest go
+ * through a ConcurrentHashMap. A tile is mapped under its own entry's lock, so one slow load
+ * only holds up the callers that need that same tile. Recency is a stamp taken from the miss
+ * counter, which is enough to tell the tiles in use from the ones the landers have left.
+ *
+ * Tiles that have no file on disk are remembered as missing, so areas outside the DEM
+ * coverage do not hit the file system on every query.
+ */
+public class TileCache {
+    // One tile slot: created on the first miss and filled by the first caller to lock it.
+    private static final class Entry {
+        final int tileX, tileY;
+        volatile boolean loaded;
+        volatile TerrainTile tile;   // null for a tile without a file
+        volatile long lastUsed;
+        volatile boolean evicted;
+
+        Entry(int tileX, int tileY) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+    }
+
+    private final Path directory;
+    private final int samples;
+    private final int maxTiles;
+    private final ConcurrentHashMap<Long, Entry> tiles = new ConcurrentHashMap<>();
+    // Recently used entries by hash of the grid index (size a power of two).
+    private final AtomicReferenceArray<Entry> recent;
+    private final Object evictLock = new Object();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Incremented on every miss; stamped on entries as their recency.
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * @param directory Directory holding files named tile_&lt;tx&gt;_&lt;ty&gt;.dem.
+     * @param samples   Number of samples along each side of a tile.
+     * @param maxTiles  Maximum number of tiles kept mapped at once.
+     */
+    public TileCache(Path directory, int samples, int maxTiles) {
+        if (maxTiles < 1) {
+            throw new IllegalArgumentException("maxTiles must be at least 1");
+        }
+        this.directory = directory;
+        this.samples = samples;
+        this.maxTiles = maxTiles;
+        int slots = 16;
+        while (slots < 2 * maxTiles && slots < (1 << 16)) {
+            slots <<= 1;
+        }
+        this.recent = new AtomicReferenceArray<>(slots);
+    }
+
+    /**
+     * Returns the tile at the given grid index, mapping it if needed.
+     *
+     * @param tileX Tile column index.
+     * @param tileY Tile row index.
+     * @return The tile, or null if there is no file for it.
+     */
+    public TerrainTile get(int tileX, int tileY) {
+        int slot = slot(tileX, tileY);
+        Entry e = recent.get(slot);
+        if (e != null && e.tileX == tileX && e.tileY == tileY && !e.evicted) {
+            hits.increment();
+            touch(e);
+            return e.tile;
+        }
+        return getSlow(tileX, tileY, slot);
+    }
+
+    private TerrainTile getSlow(int tileX, int tileY, int slot) {
+        Long key = key(tileX, tileY);
+        Entry e = tiles.get(key);
+        if (e == null) {
+            Entry created = new Entry(tileX, tileY);
+            e = tiles.putIfAbsent(key, created);
+            if (e == null) {
+                e = created;
+                misses.increment();
+                clock.incrementAndGet();
+                evictIfNeeded(created);
+            }
+        }
+        if (e.loaded) {
+            hits.increment();
+        } else {
+            load(e, key);
+        }
+        touch(e);
+        recent.set(slot, e);
+        return e.tile;
+    }
+
+    // Maps the entry's file once; other callers for the same tile wait on the entry only.
+    private void load(Entry e, Long key) {
+        synchronized (e) {
+            if (e.loaded) {
+                return;
+            }
+            Path file = directory.resolve("tile_" + e.tileX + "_" + e.tileY + ".dem");
+            if (Files.exists(file)) {
+                try {
+                    e.tile = TerrainTile.map(file, e.tileX, e.tileY, samples);
+                } catch (IOException ex) {
+                    // Forget the entry so that a later query tries again.
+                    tiles.remove(key, e);
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            e.loaded = true;
+        }
+    }
+
+    // Stamps the entry as used now; skips the write when the stamp is already current, so
+    // threads reading the same tile do not keep invalidating each other's cache line.
+    private void touch(Entry e) {
+        long now = clock.get();
+        if (e.lastUsed != now) {
+            e.lastUsed = now;
+        }
+    }
+
+    // Drops the least recently used entries other than the one just added until the bound holds.
+    private void evictIfNeeded(Entry added) {
+        if (tiles.size() <= maxTiles) {
+            return;
+        }
+        synchronized (evictLock) {
+            while (tiles.size() > maxTiles) {
+                Entry oldest = null;
+                for (Entry e : tiles.values()) {
+                    if (e != added && (oldest == null || e.lastUsed < oldest.lastUsed)) {
+                        oldest = e;
+                    }
+                }
+                if (oldest == null) {
+                    return;
+                }
+                oldest.evicted = true;
+                tiles.remove(key(oldest.tileX, oldest.tileY), oldest);
+                int slot = slot(oldest.tileX, oldest.tileY);
+                recent.compareAndSet(slot, oldest, null);
+            }
+        }
+    }
+
+    private int slot(int tileX, int tileY) {
+        int h = tileX * 0x9E3779B1 + tileY * 0x85EBCA77;
+        return (h ^ (h >>> 16)) & (recent.length() - 1);
+    }
+
+    private static Long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xffffffffL);
+    }
+
+    public int getSamples() { return samples; }
+    public int size() { return tiles.size(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+}